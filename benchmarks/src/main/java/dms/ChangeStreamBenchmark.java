@@ -0,0 +1,67 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: ChangeStreamBenchmark
+ * Purpose: Update throughput with 0, 1 and 4 asynchronous ChangeStream subscribers.
+ * The 0-subscriber case is the baseline (nothing is published); the others show what
+ * publishing costs the writer while subscribers drain concurrently. Events each
+ * subscriber delivered and lost (OVERWRITE policy) are printed at the end of a trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ChangeStreamBenchmark {
+    @Param({"0", "1", "4"})
+    public int subscribers;
+
+    private CharacterManager manager;
+    private Character[] updates;
+    private final List<ChangeStream.Subscription> subs = new ArrayList<>();
+    private int next;
+
+    /** Per-subscriber sink, so handlers do some work that cannot be optimized away. */
+    static final class Sink {
+        long bounty;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = SyntheticData.manager(100_000, StorageEngine.HEAP);
+        SplittableRandom rnd = new SplittableRandom(SyntheticData.SEED);
+        updates = new Character[4096];
+        for (int i = 0; i < updates.length; i++) {
+            Character c = manager.findById(1 + rnd.nextInt(100_000)).orElseThrow();
+            c.setBountyCents(rnd.nextInt(1_000_000));
+            updates[i] = c;
+        }
+        for (int i = 0; i < subscribers; i++) {
+            Sink sink = new Sink();
+            subs.add(manager.subscribe(ChangeStream.Policy.OVERWRITE, e -> sink.bounty += e.getBountyCentsAfter()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (ChangeStream.Subscription s : subs) {
+            System.out.printf("%nsubscriber: delivered=%d lost=%d lag=%d%n", s.getDelivered(), s.getLost(), s.getLag());
+            s.close();
+        }
+        subs.clear();
+    }
+
+    @Benchmark
+    public boolean update() {
+        return manager.update(updates[next++ & (updates.length - 1)]);
+    }
+}
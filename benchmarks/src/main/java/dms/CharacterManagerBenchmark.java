@@ -0,0 +1,61 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: CharacterManagerBenchmark
+ * Purpose: Point operations on a pre-loaded manager - findById, findByHandle, and an
+ * add + remove pair (so the dataset size stays constant across iterations).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharacterManagerBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"HEAP", "COLUMNAR"})
+    public StorageEngine engine;
+
+    private CharacterManager manager;
+    private int[] ids;
+    private String[] handles;
+    private Character extra;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = SyntheticData.manager(size, engine);
+        SplittableRandom rnd = new SplittableRandom(SyntheticData.SEED);
+        ids = new int[4096];
+        handles = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + rnd.nextInt(size);
+            handles[i] = manager.findById(ids[i]).get().getHandle().toUpperCase();
+        }
+        extra = SyntheticData.character(size + 1, rnd);
+    }
+
+    @Benchmark
+    public Optional<Character> findById() {
+        return manager.findById(ids[next++ & (ids.length - 1)]);
+    }
+
+    @Benchmark
+    public Optional<Character> findByHandle() {
+        return manager.findByHandle(handles[next++ & (handles.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean addThenRemove() {
+        manager.add(extra);
+        return manager.remove(extra.getId());
+    }
+}
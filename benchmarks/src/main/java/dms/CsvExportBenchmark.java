@@ -0,0 +1,75 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: CsvExportBenchmark
+ * Purpose: Cost of exporting the whole store with CharacterManager.toCsv and of a
+ * Top-1000 report with ReportGenerator.toCsv, against the streaming writeCsv path into a
+ * channel that discards its input (run with -prof gc to compare allocation rates).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvExportBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private final ReportGenerator reporter = new ReportGenerator();
+    private CharacterManager manager;
+    private final CountingChannel sink = new CountingChannel();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = SyntheticData.manager(size, StorageEngine.HEAP);
+    }
+
+    @Benchmark
+    public String managerToCsv() {
+        return manager.toCsv();
+    }
+
+    @Benchmark
+    public String reportToCsv() {
+        return reporter.toCsv(reporter.topN(1000, manager));
+    }
+
+    @Benchmark
+    public long managerWriteCsv() throws IOException {
+        manager.writeCsv(sink);
+        return sink.bytes;
+    }
+
+    @Benchmark
+    public long reportWriteCsv() throws IOException {
+        reporter.writeCsv(reporter.topN(1000, manager), sink);
+        return sink.bytes;
+    }
+
+    /** Swallows everything written to it, counting the bytes. */
+    static final class CountingChannel implements WritableByteChannel {
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() { return true; }
+
+        @Override
+        public void close() { }
+    }
+}
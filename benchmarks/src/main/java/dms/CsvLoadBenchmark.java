@@ -0,0 +1,57 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: CsvLoadBenchmark
+ * Purpose: End-to-end CSV import into an empty CharacterManager - the old Main.loadCsv path
+ * (readAllLines + fromCsv + add per row) against CsvLoader (streamed, parallel, addAll).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvLoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = SyntheticData.csvFile(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CharacterManager legacyLoad() throws IOException {
+        CharacterManager manager = new CharacterManager();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) continue;
+            Character c = Character.fromCsv(line);
+            if (c != null) manager.add(c);
+        }
+        return manager;
+    }
+
+    @Benchmark
+    public LoadResult bulkLoad() throws IOException {
+        return new CsvLoader().load(file, new CharacterManager());
+    }
+
+    @Benchmark
+    public LoadResult bulkLoadColumnar() throws IOException {
+        return new CsvLoader().load(file, new CharacterManager(StorageEngine.COLUMNAR));
+    }
+}
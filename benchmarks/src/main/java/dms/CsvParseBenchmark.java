@@ -0,0 +1,54 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: CsvParseBenchmark
+ * Purpose: Per-row parse cost of the legacy Character.fromCsv (split/trim/parseInt)
+ * against the byte-level tokenizer used by CsvLoader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvParseBenchmark {
+    private static final int ROWS = 10_000;
+
+    private String[] lines;
+    private byte[][] bytes;
+    private final int[] bounds = new int[16];
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> csv = SyntheticData.csvLines(ROWS);
+        lines = csv.toArray(new String[0]);
+        bytes = new byte[ROWS][];
+        for (int i = 0; i < ROWS; i++) bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Character fromCsv() {
+        int i = next++ % ROWS;
+        return Character.fromCsv(lines[i]);
+    }
+
+    @Benchmark
+    public Character tokenizer() {
+        int i = next++ % ROWS;
+        return CsvLoader.parseLine(bytes[i], 0, bytes[i].length, bounds);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tokenizerChunk(Blackhole bh) {
+        for (byte[] b : bytes) bh.consume(CsvLoader.parseLine(b, 0, b.length, bounds));
+    }
+}
@@ -0,0 +1,70 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark: DurabilityBenchmark
+ * Purpose: Cost of durability on a mixed add/update/remove workload over 10,000 ids:
+ * - sync=NONE: in-memory manager (baseline)
+ * - sync=1: fsync every mutation
+ * - sync=64 / 1024: group commit of that many mutations (plus a 10 ms background fsync)
+ * The journal lives in a temporary directory, compacted at 64 MiB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurabilityBenchmark {
+    private static final int IDS = 10_000;
+
+    @Param({"NONE", "1", "64", "1024"})
+    public String sync;
+
+    private Path dir;
+    private CharacterManager manager;
+    private Character[] records;
+    private final SplittableRandom rnd = new SplittableRandom(SyntheticData.SEED);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if (sync.equals("NONE")) {
+            manager = new CharacterManager();
+        } else {
+            dir = Files.createTempDirectory("dms-durability");
+            int ops = Integer.parseInt(sync);
+            manager = CharacterManager.open(dir, StorageEngine.HEAP,
+                    new JournalConfig(ops, ops == 1 ? 0 : 10, 64L << 20));
+        }
+        records = new Character[IDS + 1];
+        for (int id = 1; id <= IDS; id++) records[id] = SyntheticData.character(id, rnd);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        manager.close();
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public boolean mutate() {
+        int id = 1 + rnd.nextInt(IDS);
+        return switch (rnd.nextInt(3)) {
+            case 0 -> manager.add(records[id]);
+            case 1 -> manager.update(records[id]);
+            default -> manager.remove(id);
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package dms;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Class: HeapFootprint
+ * Purpose: Retained-heap report for a generated dataset (default 1,000,000 characters).
+ * Measures what occupation and handle-key Strings cost when every record has its own
+ * copy - as split/trim and the old handle index produced them - against the shared
+ * dictionary, the total size of a loaded CharacterManager for each engine, and what
+ * the stat history costs per recorded change.
+ * Usage: java -cp benchmarks/target/benchmarks.jar dms.HeapFootprint [n]
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class HeapFootprint {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private static final int HOT_SHARE = 10;
+    private static final int CHANGES_PER_HOT = 40;
+
+    private HeapFootprint() { }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<String> lines = SyntheticData.csvLines(n);
+
+        Supplier<Object> copies = () -> {
+            List<String> occ = new ArrayList<>(n);
+            for (String line : lines) occ.add(new String(line.split(",")[3].trim()));
+            return occ;
+        };
+        measure(copies); // warm-up: the first round leaves a few MB of JVM state behind
+        long perRecordOcc = measure(copies);
+        StringDictionary occupations = new StringDictionary();
+        for (String line : lines) occupations.encode(line.split(",")[3].trim());
+        long dictOcc = measure(() -> {
+            List<String> occ = new ArrayList<>(n);
+            for (String line : lines) occ.add(occupations.intern(line.split(",")[3].trim()));
+            return occ;
+        });
+        long perRecordKeys = measure(() -> {
+            List<String> keys = new ArrayList<>(n);
+            for (String line : lines) keys.add(new String(line.split(",")[1].trim()));
+            return keys;
+        });
+        long sharedKeys = measure(() -> {
+            List<String> keys = new ArrayList<>(n);
+            for (String line : lines) {
+                String handle = line.split(",")[1].trim();
+                keys.add(CharacterManager.handleKey(handle) == handle ? null : handle); // null: shares the handle
+            }
+            return keys;
+        });
+        long parsed = measure(() -> {
+            List<Character> list = new ArrayList<>(n);
+            for (String line : lines) list.add(Character.fromCsv(line));
+            return list;
+        });
+        long heap = measure(() -> managerOf(lines, StorageEngine.HEAP));
+        long columnar = measure(() -> managerOf(lines, StorageEngine.COLUMNAR));
+
+        // Stat history: one character in HOT_SHARE keeps escalating, CHANGES_PER_HOT times.
+        long[] now = {System.currentTimeMillis()};
+        CharacterManager m = managerOf(lines, StorageEngine.HEAP, () -> now[0]);
+        Random rnd = new Random(42);
+        for (int round = 0; round < CHANGES_PER_HOT; round++) {
+            for (int id = 1; id <= n; id += HOT_SHARE) {
+                now[0] += rnd.nextInt(1_000);
+                Character c = m.findById(id).orElseThrow();
+                c.setWantedLevel(Math.min(5, c.getWantedLevel() + 1));
+                c.setBountyCents(c.getBountyCents() + 100 * (1 + rnd.nextInt(500)));
+                m.update(c);
+            }
+        }
+        StatHistory history = m.statHistory();
+
+        System.out.printf("%,d characters, %d distinct occupations%n", n, occupations.size());
+        System.out.printf("%-46s %10s%n", "retained heap", "MB");
+        row("occupation Strings, one per record", perRecordOcc);
+        row("occupation references into the dictionary", dictOcc);
+        row("  saved by the dictionary", perRecordOcc - dictOcc);
+        row("handle-key Strings, one per record", perRecordKeys);
+        row("handle keys shared with already-folded handles", sharedKeys);
+        row("  saved per handle index", perRecordKeys - sharedKeys);
+        row("List<Character> from Character.fromCsv", parsed);
+        row("CharacterManager (HEAP engine)", heap);
+        row("CharacterManager (COLUMNAR engine)", columnar);
+        row(String.format("stat history blocks, %,d changes", history.changes()), history.blockBytes());
+        System.out.printf("%-46s %10.1f%n", "  encoded bytes per change", (double) history.encodedBytes() / history.changes());
+        System.out.printf("%-46s %10.1f%n", "  block bytes per change", (double) history.blockBytes() / history.changes());
+    }
+
+    private static CharacterManager managerOf(List<String> lines, StorageEngine engine) {
+        return managerOf(lines, engine, System::currentTimeMillis);
+    }
+
+    private static CharacterManager managerOf(List<String> lines, StorageEngine engine, LongSupplier clock) {
+        CharacterManager m = new CharacterManager(engine, clock);
+        List<Character> batch = new ArrayList<>(lines.size());
+        for (String line : lines) batch.add(Character.fromCsv(line));
+        m.addAll(batch);
+        return m;
+    }
+
+    private static void row(String label, long bytes) {
+        System.out.printf("%-46s %10.1f%n", label, bytes / (1024.0 * 1024.0));
+    }
+
+    /** Heap still in use after building the value, minus what was in use before. */
+    private static long measure(Supplier<Object> build) {
+        long before = usedAfterGc();
+        Object value = build.get();
+        long after = usedAfterGc();
+        Reference.reachabilityFence(value);
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,65 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: MetricsOverheadBenchmark
+ * Purpose: Cost of OperationMetrics on the cheapest operations:
+ * - metrics=OFF: disabled (baseline)
+ * - metrics=SAMPLED: the default, every call counted and 1 in 64 timed
+ * - metrics=EVERY: every call timed (setSampleEvery(1))
+ * findByIdThreads4 runs the lookup from four threads at once, where every timed call
+ * contends on the shared histogram buckets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    @Param({"OFF", "SAMPLED", "EVERY"})
+    public String metrics;
+
+    private CharacterManager manager;
+    private int[] ids;
+    private Character extra;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = SyntheticData.manager(100_000, StorageEngine.HEAP);
+        manager.metrics().setEnabled(!metrics.equals("OFF"));
+        if (metrics.equals("EVERY")) manager.metrics().setSampleEvery(1);
+        SplittableRandom rnd = new SplittableRandom(SyntheticData.SEED);
+        ids = new int[4096];
+        for (int i = 0; i < ids.length; i++) ids[i] = 1 + rnd.nextInt(100_000);
+        extra = SyntheticData.character(100_001, rnd);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Optional<Character> findById(Cursor c) {
+        return manager.findById(ids[c.next++ & (ids.length - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Character> findByIdThreads4(Cursor c) {
+        return manager.findById(ids[c.next++ & (ids.length - 1)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addThenRemove() {
+        manager.add(extra);
+        return manager.remove(extra.getId());
+    }
+}
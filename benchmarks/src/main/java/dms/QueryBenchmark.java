@@ -0,0 +1,48 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark: QueryBenchmark
+ * Purpose: "active EU characters with wantedLevel >= 4 and reputation < 0" answered by a
+ * full scan of getAll() against the secondary-index query API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"HEAP", "COLUMNAR"})
+    public StorageEngine engine;
+
+    private CharacterManager manager;
+    private final CharacterQuery query =
+            new CharacterQuery().server(Server.EU).active(true).minWantedLevel(4).maxReputation(-1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = SyntheticData.manager(size, engine);
+    }
+
+    @Benchmark
+    public List<Character> scan() {
+        return manager.getAll().stream()
+                .filter(c -> c.isActive() && c.getServer() == Server.EU && c.getWantedLevel() >= 4
+                        && c.getReputation() < 0)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Character> indexed() {
+        return manager.query(query);
+    }
+}
@@ -0,0 +1,65 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: ReaderScalingBenchmark
+ * Purpose: Point-lookup throughput while one writer keeps adding, updating and removing,
+ * to show how optimistic reads scale with reader threads. The "mixed" group runs one
+ * writer and four readers by default; vary the readers with -tg 1,N (e.g. -tg 1,1 / 1,2
+ * / 1,8) and compare the lookup score. Half the lookups are by id, half by handle.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderScalingBenchmark {
+    private static final int IDS = 50_000;
+
+    @Param({"HEAP", "COLUMNAR"})
+    public StorageEngine engine;
+
+    private CharacterManager manager;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = new CharacterManager(engine);
+        for (int id = 1; id <= IDS; id++) manager.add(mk(id, id % 7, true));
+    }
+
+    private static Character mk(int id, int wl, boolean active) {
+        return new Character(id, "Player" + id, Server.values()[id % 3], "Occ", wl, wl * 1000, -wl, active);
+    }
+
+    @State(Scope.Thread)
+    public static class Rng {
+        final SplittableRandom rnd = new SplittableRandom(Thread.currentThread().threadId());
+        long n;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean writer(Rng r) {
+        int id = 1 + r.rnd.nextInt(IDS);
+        return switch (r.rnd.nextInt(4)) {
+            case 0 -> manager.remove(id);
+            case 1 -> manager.add(mk(id, r.rnd.nextInt(7), r.rnd.nextBoolean()));
+            default -> manager.update(mk(id, r.rnd.nextInt(7), r.rnd.nextBoolean()));
+        };
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public Optional<Character> lookup(Rng r) {
+        int id = 1 + r.rnd.nextInt(IDS);
+        return (r.n++ & 1) == 0 ? manager.findById(id) : manager.findByHandle("player" + id);
+    }
+}
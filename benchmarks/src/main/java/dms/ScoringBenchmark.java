@@ -0,0 +1,86 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: ScoringBenchmark
+ * Purpose: Cost of scoring every row of primitive columns, as a column scan or leaderboard
+ * rebuild does:
+ * - hardcoded: ReportGenerator.score per row (always the built-in formula; baseline)
+ * - compiledRow: a parsed ScoringFormula per row (its lambda tree)
+ * - compiledBatch: the same formula over Batch.SIZE rows at a time (its array kernels)
+ * formula=DEFAULT is the built-in score; CUSTOM is a longer one using every operator kind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+    private static final String CUSTOM =
+            "wantedLevel * 150 + bountyCents / 50 + max(0, -reputation) + active * 10 - abs(reputation % 7)";
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"DEFAULT", "CUSTOM"})
+    public String formula;
+
+    private ScoringFormula compiled;
+    private ScoringFormula.Batch batch;
+    private int[] wantedLevel, bountyCents, reputation, active;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        compiled = formula.equals("DEFAULT") ? ScoringFormula.DEFAULT : ScoringFormula.parse(CUSTOM);
+        batch = compiled.newBatch();
+        List<Character> list = SyntheticData.characters(size);
+        wantedLevel = new int[size];
+        bountyCents = new int[size];
+        reputation = new int[size];
+        active = new int[size];
+        for (int i = 0; i < size; i++) {
+            Character c = list.get(i);
+            wantedLevel[i] = c.getWantedLevel();
+            bountyCents[i] = c.getBountyCents();
+            reputation[i] = c.getReputation();
+            active[i] = c.isActive() ? 1 : 0;
+        }
+    }
+
+    @Benchmark
+    public long hardcoded() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) sum += ReportGenerator.score(wantedLevel[i], bountyCents[i], reputation[i]);
+        return sum;
+    }
+
+    @Benchmark
+    public long compiledRow() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += compiled.score(wantedLevel[i], bountyCents[i], reputation[i], active[i] != 0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long compiledBatch() {
+        long sum = 0;
+        for (int base = 0; base < size; base += ScoringFormula.Batch.SIZE) {
+            int n = Math.min(ScoringFormula.Batch.SIZE, size - base);
+            System.arraycopy(wantedLevel, base, batch.wantedLevel, 0, n);
+            System.arraycopy(bountyCents, base, batch.bountyCents, 0, n);
+            System.arraycopy(reputation, base, batch.reputation, 0, n);
+            System.arraycopy(active, base, batch.active, 0, n);
+            batch.setSize(n);
+            int[] scores = compiled.scores(batch);
+            for (int i = 0; i < n; i++) sum += scores[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,104 @@
+package dms;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class: ServerLoad
+ * Purpose: Load generator for the TCP service mode (DmsServer). Closed-loop clients, one
+ * virtual thread and connection each, send a mixed workload (90% GET, 10% UPDATE) for a
+ * fixed time; requests/sec and p99 latency are printed as the number of clients grows
+ * (1, 4, 16, ... up to maxClients).
+ * Usage: java -cp benchmarks/target/benchmarks.jar dms.ServerLoad [maxClients] [characters] [millis]
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class ServerLoad {
+    private ServerLoad() { }
+
+    public static void main(String[] args) throws Exception {
+        int maxClients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int ids = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+
+        CharacterManager manager = new CharacterManager();
+        for (int id = 1; id <= ids; id++) {
+            manager.add(new Character(id, "Player" + id, Server.values()[id % 3], "Occ", id % 7, id, 0, true));
+        }
+        try (DmsServer server = DmsServer.start(manager, 0)) {
+            System.out.printf("%,d characters, %d ms per run, %d cores%n",
+                    ids, millis, Runtime.getRuntime().availableProcessors());
+            System.out.printf("%-8s %14s %10s%n", "clients", "requests/s", "p99(us)");
+            for (int clients = 1; clients <= maxClients; clients *= 4) {
+                long[] latencies = run(server.getPort(), clients, ids, millis);
+                Arrays.sort(latencies);
+                long p99 = latencies.length == 0 ? 0 : latencies[(int) (latencies.length * 0.99)];
+                System.out.printf("%-8d %,14d %10d%n", clients, latencies.length * 1000L / millis, p99 / 1000);
+            }
+        }
+    }
+
+    /** Closed-loop clients for millis; returns every request latency in ns. */
+    private static long[] run(int port, int clients, int ids, long millis) throws Exception {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < clients; t++) {
+                int seed = t;
+                results.add(pool.submit(() -> client(port, seed, ids, deadline)));
+            }
+            long[] all = new long[0];
+            for (Future<long[]> f : results) {
+                long[] part = f.get();
+                int at = all.length;
+                all = Arrays.copyOf(all, at + part.length);
+                System.arraycopy(part, 0, all, at, part.length);
+            }
+            return all;
+        }
+    }
+
+    private static long[] client(int port, int seed, int ids, long deadline) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        long[] lat = new long[1024];
+        int n = 0;
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            while (System.nanoTime() < deadline) {
+                int id = 1 + rnd.nextInt(ids);
+                String req = rnd.nextInt(10) == 0
+                        ? "UPDATE " + id + ",Player" + id + "," + Server.values()[id % 3] + ",Occ,"
+                                + rnd.nextInt(7) + "," + id + ",0,true"
+                        : "GET " + id;
+                long start = System.nanoTime();
+                out.write(req);
+                out.write('\n');
+                out.flush();
+                String status = in.readLine();
+                if (status == null || !status.startsWith("OK")) throw new IOException(req + " -> " + status);
+                if (status.startsWith("OK ")) {
+                    for (int rows = Integer.parseInt(status.substring(3)); rows > 0; rows--) in.readLine();
+                }
+                long took = System.nanoTime() - start;
+                if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                lat[n++] = took;
+            }
+        }
+        return Arrays.copyOf(lat, n);
+    }
+}
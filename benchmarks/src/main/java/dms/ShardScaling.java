@@ -0,0 +1,87 @@
+package dms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class: ShardScaling
+ * Purpose: Throughput of a sharded deployment as shards are added. For 1..maxShards
+ * shard JVMs (LocalShards) it loads the same characters through a ShardRouter, then runs
+ * closed-loop clients for a fixed time with a mixed workload (80% findById, 15% update,
+ * 5% Top-10) and prints operations per second. Growth needs as many free cores as shards.
+ * Usage: java -cp benchmarks/target/benchmarks.jar dms.ShardScaling [maxShards] [characters] [clients] [seconds]
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class ShardScaling {
+    private ShardScaling() { }
+
+    public static void main(String[] args) throws Exception {
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        List<Character> characters = SyntheticData.characters(n);
+
+        System.out.printf("%,d characters, %d clients, %d s per run, %d cores%n",
+                n, clients, seconds, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %14s%n", "shards", "ops/s");
+        for (int shards = 1; shards <= maxShards; shards++) {
+            try (LocalShards local = LocalShards.start(shards, "-Xmx512m");
+                 ShardRouter router = local.router()) {
+                run(clients, i -> {
+                    for (int k = i; k < n; k += clients) router.add(characters.get(k));
+                });
+                LongAdder ops = new LongAdder();
+                long end = System.nanoTime() + seconds * 1_000_000_000L;
+                run(clients, i -> {
+                    SplittableRandom rnd = new SplittableRandom(i);
+                    while (System.nanoTime() < end) {
+                        int op = rnd.nextInt(100);
+                        Character c = characters.get(rnd.nextInt(n));
+                        if (op < 80) {
+                            router.findById(c.getId());
+                        } else if (op < 95) {
+                            Character u = c.copy();
+                            u.setWantedLevel(rnd.nextInt(6));
+                            router.update(u);
+                        } else {
+                            router.topN(10, null);
+                        }
+                        ops.increment();
+                    }
+                });
+                System.out.printf("%-8d %,14.0f%n", shards, ops.sum() / (double) seconds);
+            }
+        }
+    }
+
+    private interface Client {
+        void run(int index) throws IOException;
+    }
+
+    /** Run clients copies of body on virtual threads and wait for all of them. */
+    private static void run(int clients, Client body) throws Exception {
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                int index = i;
+                done.add(pool.submit(() -> {
+                    try {
+                        body.run(index);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        }
+    }
+}
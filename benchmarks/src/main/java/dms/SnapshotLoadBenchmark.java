@@ -0,0 +1,56 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: SnapshotLoadBenchmark
+ * Purpose: What a restart from a binary snapshot costs, split into its two O(n) halves:
+ * - read: map, verify and decode the file into Characters (SnapshotFile.read)
+ * - load: read plus re-inserting every record through the store and its indexes
+ *   (CharacterManager.loadSnapshot), per engine
+ * Compare with CsvLoadBenchmark.bulkLoad for the same size from CSV.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotLoadBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("dms-bench", ".snap");
+        SyntheticData.manager(size, StorageEngine.HEAP).saveSnapshot(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Character> read() throws IOException {
+        return SnapshotFile.read(file);
+    }
+
+    @Benchmark
+    public int loadHeap() throws IOException {
+        return new CharacterManager().loadSnapshot(file);
+    }
+
+    @Benchmark
+    public int loadColumnar() throws IOException {
+        return new CharacterManager(StorageEngine.COLUMNAR).loadSnapshot(file);
+    }
+}
@@ -0,0 +1,89 @@
+package dms;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Class: SyntheticData
+ * Purpose: Seeded generator of realistic character datasets for the benchmarks, so every run
+ * (and every future storage engine) is measured against exactly the same data.
+ * Ids are 1..n, handles are unique, occupations come from a small fixed vocabulary.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class SyntheticData {
+    public static final long SEED = 20251020L;
+
+    static final String[] OCCUPATIONS = {
+            "Chef", "Thief", "Mechanic", "Driver", "Sniper", "Dealer", "Hacker", "Hitman", "Spy", "Thug",
+            "Medic", "Engineer", "Detective", "Hunter", "Guard", "Assassin", "Scout", "Streamer", "Troll",
+            "Catfish", "Gangster", "Pilot", "Lawyer", "Banker", "Smuggler", "Courier", "Bouncer", "Fixer"
+    };
+    private static final String[] SYLLABLES = {
+            "doof", "nita", "lou", "ma", "zek", "ia", "ri", "co", "jen", "ny", "tom", "mi", "key", "lex",
+            "ray", "sa", "ra", "ju", "ne", "har", "per", "bla", "ke", "ivy", "duke", "ti", "na", "ken"
+    };
+    private static final Server[] SERVERS = Server.values();
+
+    private SyntheticData() { }
+
+    public static List<Character> characters(int n) {
+        return characters(n, SEED);
+    }
+
+    public static List<Character> characters(int n, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        List<Character> out = new ArrayList<>(n);
+        for (int id = 1; id <= n; id++) out.add(character(id, rnd));
+        return out;
+    }
+
+    /** One random character with the given id (handles stay unique because they embed the id). */
+    public static Character character(int id, SplittableRandom rnd) {
+        String handle = SYLLABLES[rnd.nextInt(SYLLABLES.length)]
+                + SYLLABLES[rnd.nextInt(SYLLABLES.length)] + "_" + id;
+        // Skewed distributions: most characters are low-threat, a few are very wanted.
+        int wl = Math.min(6, (int) Math.floor(-Math.log(1 - rnd.nextDouble()) * 1.5));
+        int bounty = (int) Math.min(50_000_000L, (long) (Math.pow(rnd.nextDouble(), 4) * 5_000_000));
+        int rep = rnd.nextInt(201) - 100;
+        return new Character(id, handle, SERVERS[rnd.nextInt(SERVERS.length)],
+                OCCUPATIONS[rnd.nextInt(OCCUPATIONS.length)], wl, bounty, rep, rnd.nextInt(10) < 8);
+    }
+
+    /** CSV lines in the format read by Character.fromCsv and CsvLoader. */
+    public static List<String> csvLines(int n) {
+        List<String> out = new ArrayList<>(n);
+        for (Character c : characters(n)) out.add(toCsvLine(c));
+        return out;
+    }
+
+    /** Write an n-row CSV to a temp file (deleted on exit). */
+    public static Path csvFile(int n) throws IOException {
+        Path file = Files.createTempFile("dms-bench-" + n + "-", ".csv");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Character c : characters(n)) {
+                w.write(toCsvLine(c));
+                w.newLine();
+            }
+        }
+        return file;
+    }
+
+    public static CharacterManager manager(int n, StorageEngine engine) {
+        CharacterManager m = new CharacterManager(engine);
+        m.addAll(characters(n));
+        return m;
+    }
+
+    static String toCsvLine(Character c) {
+        return c.getId() + "," + c.getHandle() + "," + c.getServer() + "," + c.getOccupation() + ","
+                + c.getWantedLevel() + "," + c.getBountyCents() + "," + c.getReputation() + "," + c.isActive();
+    }
+}
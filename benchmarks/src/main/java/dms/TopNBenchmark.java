@@ -0,0 +1,61 @@
+package dms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark: TopNBenchmark
+ * Purpose: Most Wanted report cost at several N and dataset sizes:
+ * - fullSort: the original rescore + sort-everything implementation (baseline)
+ * - boundedHeap: ReportGenerator.topN over a list
+ * - leaderboard: ReportGenerator.topN over the manager (live leaderboard / column scan)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopNBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"10", "100", "1000"})
+    public int n;
+
+    @Param({"HEAP", "COLUMNAR"})
+    public StorageEngine engine;
+
+    private final ReportGenerator reporter = new ReportGenerator();
+    private CharacterManager manager;
+    private List<Character> list;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = SyntheticData.manager(size, engine);
+        list = manager.getAll();
+    }
+
+    @Benchmark
+    public List<ThreatEntry> fullSort() {
+        return list.stream()
+                .map(c -> new ThreatEntry(c, ReportGenerator.score(c)))
+                .sorted(Comparator.comparingInt(ThreatEntry::getThreatScore).reversed())
+                .limit(n)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<ThreatEntry> boundedHeap() {
+        return reporter.topN(n, list);
+    }
+
+    @Benchmark
+    public List<ThreatEntry> leaderboard() {
+        return reporter.topN(n, manager);
+    }
+}
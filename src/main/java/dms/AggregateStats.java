@@ -0,0 +1,50 @@
+package dms;
+
+import java.util.Arrays;
+
+/**
+ * Class: AggregateStats
+ * Purpose: Point-in-time dashboard figures for one Server (or all of them): character
+ * counts, active vs inactive, total outstanding bounty, average reputation and the
+ * wantedLevel histogram. Produced in O(1) from the running totals that
+ * CharacterManager keeps up to date on every mutation.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class AggregateStats {
+    private final Server server;
+    private final long count;
+    private final long active;
+    private final long totalBountyCents;
+    private final long reputationSum;
+    private final long[] wantedLevels;
+
+    AggregateStats(Server server, long count, long active, long totalBountyCents, long reputationSum,
+                   long[] wantedLevels) {
+        this.server = server;
+        this.count = count;
+        this.active = active;
+        this.totalBountyCents = totalBountyCents;
+        this.reputationSum = reputationSum;
+        this.wantedLevels = wantedLevels;
+    }
+
+    /** The server these figures cover, or null for all servers. */
+    public Server getServer() { return server; }
+    public long getCount() { return count; }
+    public long getActive() { return active; }
+    public long getInactive() { return count - active; }
+    public long getTotalBountyCents() { return totalBountyCents; }
+    public long getReputationSum() { return reputationSum; }
+    public double getAverageReputation() { return count == 0 ? 0 : (double) reputationSum / count; }
+
+    /** Characters at wantedLevel 0..6; the last slot counts every level above 6. */
+    public long[] getWantedLevelCounts() { return wantedLevels.clone(); }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d active=%d inactive=%d bounty=%d avgRep=%.2f wanted=%s",
+                server == null ? "ALL" : server, count, active, getInactive(), totalBountyCents,
+                getAverageReputation(), Arrays.toString(wantedLevels));
+    }
+}
@@ -0,0 +1,54 @@
+package dms;
+
+/**
+ * Class: BatchResult
+ * Purpose: Outcome of CharacterManager.apply(MutationBatch): one Outcome per operation,
+ * in batch order, and whether the batch was committed. In an all-or-nothing batch with
+ * any failure, the operations marked OK were valid but were not applied either.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class BatchResult {
+    public enum Outcome {
+        OK,
+        /** Failed Character validation. */
+        INVALID,
+        /** Add of an id that already exists. */
+        DUPLICATE_ID,
+        /** Add of a handle that another character already has. */
+        DUPLICATE_HANDLE,
+        /** Update or remove of an id that does not exist. */
+        NOT_FOUND,
+        /** Update to a handle that belongs to another character. */
+        HANDLE_TAKEN
+    }
+
+    private final Outcome[] outcomes;
+    private int failed;
+    private boolean committed;
+
+    BatchResult(int size) {
+        outcomes = new Outcome[size];
+    }
+
+    void set(int i, Outcome o) {
+        outcomes[i] = o;
+        if (o != Outcome.OK) failed++;
+    }
+
+    void committed(boolean c) { committed = c; }
+
+    public Outcome get(int i) { return outcomes[i]; }
+    public int size() { return outcomes.length; }
+    public int getFailed() { return failed; }
+    public boolean isCommitted() { return committed; }
+
+    /** Number of operations that changed the store. */
+    public int getApplied() { return committed ? outcomes.length - failed : 0; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d applied, %d failed of %d", committed ? "committed" : "rolled back",
+                getApplied(), failed, outcomes.length);
+    }
+}
@@ -0,0 +1,130 @@
+package dms;
+
+/**
+ * Class: ChangeEvent
+ * Purpose: One committed change as delivered by a ChangeStream subscription: its type,
+ * sequence number, character id and the field values before and after. Events are
+ * mutable flyweights - the ring buffer preallocates its slots and each subscription
+ * copies into one event of its own - so a handler must copy out anything it keeps
+ * (before() and after() build fresh Character objects).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class ChangeEvent {
+    public enum Type {
+        ADD, UPDATE, REMOVE,
+        /** The manager was emptied (e.g. a snapshot load replaces everything). */
+        CLEAR,
+        /**
+         * The subscriber fell a whole ring behind and getLost() events were skipped;
+         * anything derived from the stream should be rebuilt from getAll().
+         */
+        OVERFLOW
+    }
+
+    /** Field values of one side of the change. */
+    private static final class Image {
+        boolean present;
+        String handle;
+        Server server;
+        String occupation;
+        int wantedLevel;
+        int bountyCents;
+        int reputation;
+        boolean active;
+
+        void set(Character c) {
+            present = c != null;
+            if (c == null) {
+                handle = occupation = null;
+                server = null;
+                return;
+            }
+            handle = c.getHandle();
+            server = c.getServer();
+            occupation = c.getOccupation();
+            wantedLevel = c.getWantedLevel();
+            bountyCents = c.getBountyCents();
+            reputation = c.getReputation();
+            active = c.isActive();
+        }
+
+        void copy(Image o) {
+            present = o.present;
+            handle = o.handle;
+            server = o.server;
+            occupation = o.occupation;
+            wantedLevel = o.wantedLevel;
+            bountyCents = o.bountyCents;
+            reputation = o.reputation;
+            active = o.active;
+        }
+
+        Character toCharacter(int id) {
+            return present ? new Character(id, handle, server, occupation, wantedLevel, bountyCents, reputation, active)
+                    : null;
+        }
+    }
+
+    private long sequence;
+    private Type type;
+    private int id;
+    private long lost;
+    private final Image before = new Image();
+    private final Image after = new Image();
+
+    ChangeEvent() {}
+
+    void set(long sequence, Type type, int id, Character before, Character after) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.lost = 0;
+        this.before.set(before);
+        this.after.set(after);
+    }
+
+    void copy(ChangeEvent o) {
+        sequence = o.sequence;
+        type = o.type;
+        id = o.id;
+        lost = o.lost;
+        before.copy(o.before);
+        after.copy(o.after);
+    }
+
+    void overflow(long sequence, long lost) {
+        set(sequence, Type.OVERFLOW, 0, null, null);
+        this.lost = lost;
+    }
+
+    /** Position in the stream: 1 for the first change published, then consecutive. */
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    /** Id of the changed character; 0 for CLEAR and OVERFLOW. */
+    public int getId() { return id; }
+    /** For OVERFLOW: how many events were skipped. */
+    public long getLost() { return lost; }
+
+    /** The character before the change; null for ADD, CLEAR and OVERFLOW. */
+    public Character before() { return before.toCharacter(id); }
+
+    /** The character after the change; null for REMOVE, CLEAR and OVERFLOW. */
+    public Character after() { return after.toCharacter(id); }
+
+    public int getBountyCentsBefore() { return before.bountyCents; }
+    public int getBountyCentsAfter() { return after.bountyCents; }
+    public int getWantedLevelBefore() { return before.wantedLevel; }
+    public int getWantedLevelAfter() { return after.wantedLevel; }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case ADD -> String.format("#%d ADD %s", sequence, after());
+            case UPDATE -> String.format("#%d UPDATE %s -> %s", sequence, before(), after());
+            case REMOVE -> String.format("#%d REMOVE %s", sequence, before());
+            case CLEAR -> String.format("#%d CLEAR", sequence);
+            case OVERFLOW -> String.format("#%d OVERFLOW lost=%d", sequence, lost);
+        };
+    }
+}
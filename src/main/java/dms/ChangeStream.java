@@ -0,0 +1,225 @@
+package dms;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Class: ChangeStream
+ * Purpose: Change-data-capture for one CharacterManager. Every add, update, remove and
+ * clear is published, inside the manager's write lock, into a preallocated ring of
+ * ChangeEvent slots; any number of subscriptions read it at their own pace through
+ * their own cursors. Publishing never blocks and never allocates: the single writer
+ * claims the next sequence, overwrites that slot in place and publishes it. With no
+ * subscribers nothing is published at all, and the ring is only allocated by the first
+ * subscribe.
+ *
+ * The ring is the only buffer, so backpressure is the subscriber's own: a subscriber
+ * drains in batches and can watch getLag(). One that falls a whole ring behind has
+ * had unread slots overwritten, and its Policy decides what happens:
+ *   OVERWRITE   skip to the oldest intact event and deliver an OVERFLOW event first
+ *   DISCONNECT  deliver an OVERFLOW event and end the subscription
+ * Readers copy a slot and then check (seqlock style) that the writer has not started
+ * to reuse it, so a torn copy is never delivered.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class ChangeStream implements CharacterIndex {
+    public enum Policy { OVERWRITE, DISCONNECT }
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    /** Events handed to a handler per pass of a subscription thread. */
+    private static final int BATCH = 256;
+    private static final Subscription[] NONE = new Subscription[0];
+
+    private final int capacity;
+    private ChangeEvent[] ring;
+    /** Sequence the writer is writing (or last wrote); slot reuse is detected from this. */
+    private volatile long claimed;
+    /** Last fully written sequence. */
+    private volatile long published;
+    private volatile Subscription[] subscribers = NONE;
+
+    ChangeStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** capacity is rounded up to a power of two. */
+    ChangeStream(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    }
+
+    public int getCapacity() { return capacity; }
+
+    /** Sequence of the latest published event (0 before the first). */
+    public long getPublished() { return published; }
+
+    public int getSubscriberCount() { return subscribers.length; }
+
+    // --------------------- PUBLISHING (write lock held) ---------------------
+
+    @Override
+    public void added(int row, Character c) { publish(ChangeEvent.Type.ADD, c.getId(), null, c); }
+
+    @Override
+    public void updated(int row, Character before, Character after) {
+        publish(ChangeEvent.Type.UPDATE, after.getId(), before, after);
+    }
+
+    @Override
+    public void removed(int row, Character before) { publish(ChangeEvent.Type.REMOVE, before.getId(), before, null); }
+
+    @Override
+    public void cleared() { publish(ChangeEvent.Type.CLEAR, 0, null, null); }
+
+    private void publish(ChangeEvent.Type type, int id, Character before, Character after) {
+        Subscription[] subs = subscribers;
+        if (subs.length == 0) return;
+        long seq = published + 1;
+        claimed = seq;
+        VarHandle.storeStoreFence(); // readers must see the claim before any slot write
+        ring[(int) seq & (capacity - 1)].set(seq, type, id, before, after);
+        published = seq;
+        for (Subscription s : subs) {
+            if (s.parked) LockSupport.unpark(s.thread);
+        }
+    }
+
+    // --------------------- SUBSCRIBING ---------------------
+
+    /**
+     * A subscription that sees every change published after this call; the caller drains
+     * it with poll. CharacterManager calls this under its write lock, so the starting
+     * point is exact.
+     */
+    synchronized Subscription subscribe(Policy policy) {
+        if (ring == null) {
+            ChangeEvent[] r = new ChangeEvent[capacity];
+            for (int i = 0; i < r.length; i++) r[i] = new ChangeEvent();
+            ring = r;
+        }
+        Subscription s = new Subscription(this, policy, published + 1);
+        Subscription[] subs = Arrays.copyOf(subscribers, subscribers.length + 1);
+        subs[subs.length - 1] = s;
+        subscribers = subs;
+        return s;
+    }
+
+    /** Like subscribe(policy), with a virtual thread feeding every event to handler. */
+    synchronized Subscription subscribe(Policy policy, Consumer<ChangeEvent> handler) {
+        Subscription s = subscribe(policy);
+        s.thread = Thread.ofVirtual().name("dms-changes-" + subscribers.length).unstarted(() -> s.run(handler));
+        s.thread.start();
+        return s;
+    }
+
+    private synchronized void unsubscribe(Subscription s) {
+        Subscription[] subs = subscribers;
+        for (int i = 0; i < subs.length; i++) {
+            if (subs[i] != s) continue;
+            Subscription[] rest = new Subscription[subs.length - 1];
+            System.arraycopy(subs, 0, rest, 0, i);
+            System.arraycopy(subs, i + 1, rest, i, rest.length - i);
+            subscribers = rest;
+            return;
+        }
+    }
+
+    /**
+     * One reader's cursor into the stream. Either drained by the caller with poll (from
+     * one thread at a time) or, when created with a handler, by its own virtual thread.
+     */
+    public static final class Subscription implements AutoCloseable {
+        private final ChangeStream stream;
+        private final Policy policy;
+        private final ChangeEvent event = new ChangeEvent();
+        private volatile long next;
+        private long delivered;
+        private long lost;
+        private volatile boolean closed;
+        private volatile boolean parked;
+        private volatile Throwable failure;
+        private Thread thread;
+
+        private Subscription(ChangeStream stream, Policy policy, long next) {
+            this.stream = stream;
+            this.policy = policy;
+            this.next = next;
+        }
+
+        public Policy getPolicy() { return policy; }
+        /** Events published but not yet delivered to this subscription. */
+        public long getLag() { return Math.max(0, stream.published - next + 1); }
+        public long getDelivered() { return delivered; }
+        /** Events skipped because this subscription fell a whole ring behind. */
+        public long getLost() { return lost; }
+        /** True once closed, disconnected by its policy or stopped by a failing handler. */
+        public boolean isClosed() { return closed; }
+        /** What the handler threw, if that is why the subscription stopped. */
+        public Throwable getFailure() { return failure; }
+
+        /**
+         * Hand up to max pending events to handler, oldest first; returns how many were
+         * delivered (an OVERFLOW event counts as one). Returns 0 when closed.
+         */
+        public int poll(Consumer<ChangeEvent> handler, int max) {
+            ChangeEvent[] ring = stream.ring;
+            int mask = stream.capacity - 1;
+            int n = 0;
+            long head = stream.published;
+            while (n < max && next <= head && !closed) {
+                event.copy(ring[(int) next & mask]);
+                VarHandle.loadLoadFence(); // finish the copy before checking it was not overwritten
+                long claimed = stream.claimed;
+                if (claimed - next >= stream.capacity) {
+                    // Lapped: the slot (and maybe the copy) belongs to a newer event.
+                    long resume = claimed - stream.capacity + 1;
+                    lost += resume - next;
+                    event.overflow(next, resume - next);
+                    next = resume;
+                    if (policy == Policy.DISCONNECT) close();
+                }
+                handler.accept(event);
+                if (event.getType() != ChangeEvent.Type.OVERFLOW) next++;
+                delivered++;
+                n++;
+                head = stream.published;
+            }
+            return n;
+        }
+
+        private void run(Consumer<ChangeEvent> handler) {
+            try {
+                while (!closed) {
+                    if (poll(handler, BATCH) > 0) continue;
+                    parked = true;
+                    // published is re-read after parked is set, so a wake-up cannot be missed;
+                    // the timeout only bounds how long close() waits.
+                    if (!closed && stream.published < next) LockSupport.parkNanos(this, 10_000_000L);
+                    parked = false;
+                }
+            } catch (Throwable t) {
+                failure = t;
+                close();
+            }
+        }
+
+        /** Stop receiving events; waits for the subscription thread (if any) to finish. */
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            stream.unsubscribe(this);
+            Thread t = thread;
+            if (t != null && t != Thread.currentThread()) {
+                LockSupport.unpark(t);
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -43,6 +43,17 @@ public class Character {
         return errors;
     }
 
+    /** Same rules as validate() without building the error list (used by bulk imports). */
+    public boolean isValid() {
+        return id > 0 && handle != null && !handle.isBlank() && server != null
+                && wantedLevel >= 0 && bountyCents >= 0;
+    }
+
+    /** Field-for-field copy; CharacterManager hands these out so callers never share its records. */
+    public Character copy() {
+        return new Character(id, handle, server, occupation, wantedLevel, bountyCents, reputation, active);
+    }
+
     public static Character fromCsv(String line) {
         try {
             String[] p = line.split(",");
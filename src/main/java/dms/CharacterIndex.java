@@ -0,0 +1,20 @@
+package dms;
+
+/**
+ * Interface: CharacterIndex
+ * Purpose: Derived structure that CharacterManager keeps in step with its store. Every
+ * callback runs inside the manager's write lock, right after the store changed, with the
+ * row the record occupies. Records passed in must not be kept or mutated.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+interface CharacterIndex {
+    void added(int row, Character c);
+
+    void updated(int row, Character before, Character after);
+
+    void removed(int row, Character before);
+
+    /** The store was emptied. */
+    void cleared();
+}
@@ -2,60 +2,896 @@ package dms;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 /**
  * Class: CharacterManager
  * Purpose: Central controller for managing Character CRUD operations and searches.
+ * Records live in a CharacterStore (HEAP objects by default, or COLUMNAR primitive
+ * columns) that keeps hash indexes by id and case-folded handle, so lookups and
+ * duplicate checks are O(1). The heap engine also keeps a ThreatLeaderboard in score
+ * order for Top-N, rank and page-of-ranks reports in O(log n); the columnar engine
+ * answers them with a column scan. Threat scores come from a pluggable ScoringFormula.
+ * SecondaryIndexes (server/active/wantedLevel bitmaps, bounty/reputation ranges)
+ * answer composite CharacterQuery filters without scanning every record, and a
+ * HandleSearchIndex (sorted keys + trigrams) answers partial and misspelled handles.
+ * ServerAggregates keeps per-server running totals for the dashboard figures.
+ * Every committed change is also published to a ChangeStream that subscribers read
+ * asynchronously, instead of polling getAll() and diffing. StatHistory keeps every
+ * wantedLevel/bounty/reputation change, delta-encoded, for trend and top-movers queries.
+ *
+ * Thread safety: every mutation runs under the write side of a StampedLock, so each
+ * add/update/remove - and each MutationBatch passed to apply - is atomic. Point lookups
+ * first try an optimistic (lock-free) read and only fall back to the read lock if a
+ * writer got in the way; scans take the read lock.
+ * Callers always receive copies, never the stored records. Long reads (CSV export,
+ * snapshot files) use an O(1) CharacterSnapshot instead, so they never block writers.
+ *
+ * Every public operation is timed into metrics() (exposable over JMX); see
+ * OperationMetrics.
+ *
+ * Durability: a manager opened with open(dir, ...) writes every mutation to a
+ * MutationJournal inside the same write lock, checkpoints into a snapshot as the
+ * journal grows, and recovers snapshot + journal tail on the next open.
  * Author: Zekia Beyene
  * Date: October 2025
  */
-public class CharacterManager {
-    private final List<Character> characters = new ArrayList<>();
+public class CharacterManager implements Closeable {
+    private final CharacterStore store;
+    private final ThreatLeaderboard leaderboard;
+    private final SecondaryIndexes secondary = new SecondaryIndexes();
+    private final HandleSearchIndex handleSearch;
+    private final ServerAggregates aggregates = new ServerAggregates();
+    private final ChangeStream changes = new ChangeStream();
+    private final RowFingerprints fingerprints = new RowFingerprints();
+    private final StatHistory history;
+    /**
+     * Copy-on-write view behind snapshot(). The heap engine keeps it always; the columnar
+     * engine builds it on demand and drops it at the first write after its last snapshot
+     * closes, so it does not hold an object per row for good.
+     */
+    private RowVersions versions;
+    private final boolean columnar;
+    private volatile ScoringFormula formula = ScoringFormula.DEFAULT;
+    /** Everything kept in step with the store on each mutation. */
+    private final List<CharacterIndex> indexes = new ArrayList<>();
+    private final StampedLock lock = new StampedLock();
+    private final OperationMetrics metrics;
+    private MutationJournal journal;
+    private Path dataDir;
+
+    public CharacterManager() {
+        this(StorageEngine.HEAP);
+    }
+
+    public CharacterManager(StorageEngine engine) {
+        this(engine, System::currentTimeMillis);
+    }
+
+    /** clock (epoch millis) stamps the stat history. */
+    CharacterManager(StorageEngine engine, LongSupplier clock) {
+        columnar = engine == StorageEngine.COLUMNAR;
+        if (columnar) {
+            store = new ColumnarCharacterStore();
+            leaderboard = null;
+        } else {
+            store = new HeapCharacterStore();
+            leaderboard = new ThreatLeaderboard();
+            indexes.add(leaderboard);
+            versions = new RowVersions();
+        }
+        handleSearch = new HandleSearchIndex(store);
+        indexes.add(secondary);
+        indexes.add(handleSearch);
+        indexes.add(aggregates);
+        indexes.add(changes);
+        indexes.add(fingerprints);
+        history = new StatHistory(clock);
+        indexes.add(history);
+        // The size gauge reads the store directly (a racy int read is fine for a gauge), so
+        // no reference to this escapes the constructor.
+        metrics = new OperationMetrics(store::size);
+    }
+
+    /** Open (or create) a durable store in dir with the default engine and journal settings. */
+    public static CharacterManager open(Path dir) throws IOException {
+        return open(dir, StorageEngine.HEAP, JournalConfig.defaults());
+    }
+
+    /**
+     * Open (or create) a durable store in dir: load its snapshot, replay the journal tail that
+     * follows it, then journal every further mutation.
+     */
+    public static CharacterManager open(Path dir, StorageEngine engine, JournalConfig config) throws IOException {
+        Files.createDirectories(dir);
+        CharacterManager m = new CharacterManager(engine);
+        Path snapshot = dir.resolve(MutationJournal.SNAPSHOT);
+        int first = 1;
+        if (Files.exists(snapshot)) {
+            first = Math.max(1, SnapshotFile.journalGeneration(snapshot));
+            m.loadSnapshot(snapshot);
+        }
+
+        int current = first;
+        long validLength = 0;
+        // The snapshot's rename must be on disk before the journals it replaces are deleted.
+        if (first > 1) SnapshotFile.syncDirectory(dir);
+        for (int gen : MutationJournal.generations(dir)) {
+            if (gen < first) {
+                Files.deleteIfExists(MutationJournal.file(dir, gen)); // left over from a checkpoint
+                continue;
+            }
+            validLength = MutationJournal.replay(MutationJournal.file(dir, gen), m);
+            current = gen;
+        }
+        m.history.cleared(); // replayed updates carry no time of their own
+        m.journal = new MutationJournal(dir, current, validLength, config);
+        m.dataDir = dir;
+        return m;
+    }
 
     public boolean add(Character c) {
-        if (!c.validate().isEmpty()) return false;
-        if (findById(c.getId()).isPresent() || findByHandle(c.getHandle()).isPresent())
-            return false;
-        characters.add(c);
-        return true;
+        long start = metrics.start();
+        if (!c.validate().isEmpty()) return metrics.stop(OperationMetrics.Operation.ADD, start, false);
+        long stamp = lock.writeLock();
+        try {
+            if (store.rowOf(c.getId()) >= 0 || store.rowOfHandle(c.getHandle()) >= 0)
+                return false;
+            journal(MutationJournal.ADD, c);
+            insertLocked(c);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+            metrics.record(OperationMetrics.Operation.ADD, start);
+        }
+    }
+
+    /**
+     * Bulk insert: validates and de-duplicates each row in a single pass (first occurrence wins)
+     * and reports counts instead of a per-row result. The whole batch is applied atomically
+     * (journaled as one BATCH record).
+     */
+    public LoadResult addAll(Collection<Character> batch) {
+        long start = metrics.start();
+        long stamp = lock.writeLock();
+        try {
+            LoadResult result = insertAll(batch);
+            metrics.rejected(result.getRejected());
+            return result;
+        } finally {
+            lock.unlockWrite(stamp);
+            metrics.record(OperationMetrics.Operation.BULK_ADD, start);
+        }
+    }
+
+    private LoadResult insertAll(Collection<Character> batch) {
+        LoadResult result = new LoadResult();
+        if (journal == null) {
+            for (Character c : batch) {
+                if (!c.isValid()) { result.invalidOne(); continue; }
+                if (store.rowOf(c.getId()) >= 0 || store.rowOfHandle(c.getHandle()) >= 0) {
+                    result.duplicateOne();
+                    continue;
+                }
+                insertLocked(c);
+                result.addedOne();
+            }
+            return result;
+        }
+        // Journaled: pick the accepted rows first and write them as one BATCH record before
+        // applying any, so a failed write leaves memory untouched and recovery replays all or none.
+        List<Character> accepted = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>();
+        Set<String> handles = new HashSet<>();
+        for (Character c : batch) {
+            if (!c.isValid()) { result.invalidOne(); continue; }
+            String key = handleKey(c.getHandle());
+            if (store.rowOf(c.getId()) >= 0 || store.rowOfHandle(c.getHandle()) >= 0
+                    || ids.contains(c.getId()) || handles.contains(key)) {
+                result.duplicateOne();
+                continue;
+            }
+            ids.add(c.getId());
+            handles.add(key);
+            accepted.add(c);
+        }
+        if (accepted.isEmpty()) return result;
+        try {
+            journal.appendBatch(accepted.size());
+            for (Character c : accepted) journal.append(MutationJournal.ADD, c);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+        for (Character c : accepted) {
+            insertLocked(c);
+            result.addedOne();
+        }
+        compactIfNeeded();
+        return result;
     }
 
     public boolean remove(int id) {
-        return characters.removeIf(c -> c.getId() == id);
+        long start = metrics.start();
+        long stamp = lock.writeLock();
+        try {
+            int row = store.rowOf(id);
+            if (row < 0) return false;
+            journalRemove(id);
+            deleteLocked(row);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+            metrics.record(OperationMetrics.Operation.REMOVE, start);
+        }
     }
 
     public boolean update(Character updated) {
-        Optional<Character> existing = findById(updated.getId());
-        if (existing.isEmpty()) return false;
-        Character c = existing.get();
-        c.setHandle(updated.getHandle());
-        c.setServer(updated.getServer());
-        c.setOccupation(updated.getOccupation());
-        c.setWantedLevel(updated.getWantedLevel());
-        c.setBountyCents(updated.getBountyCents());
-        c.setReputation(updated.getReputation());
-        c.setActive(updated.isActive());
-        return true;
+        long start = metrics.start();
+        if (!updated.validate().isEmpty()) return metrics.stop(OperationMetrics.Operation.UPDATE, start, false);
+        long stamp = lock.writeLock();
+        try {
+            int row = store.rowOf(updated.getId());
+            if (row < 0) return false;
+
+            // Refuse a handle that already belongs to some other character.
+            int owner = store.rowOfHandle(updated.getHandle());
+            if (owner >= 0 && owner != row) return false;
+
+            journal(MutationJournal.UPDATE, updated);
+            updateLocked(row, updated);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+            metrics.record(OperationMetrics.Operation.UPDATE, start);
+        }
+    }
+
+    /**
+     * Validate and apply a batch of mutations under one write lock (see MutationBatch).
+     * Validation is a single pass that tracks the ids and handles the batch itself touches,
+     * so each operation costs one or two hash lookups however large the batch. A durable
+     * manager journals the accepted operations as one unit before applying any of them:
+     * recovery replays all of them or, if the tail was torn mid-batch, none.
+     */
+    public BatchResult apply(MutationBatch batch) {
+        List<MutationBatch.Op> ops = batch.ops();
+        BatchResult result = new BatchResult(ops.size());
+        long start = metrics.start();
+        long stamp = lock.writeLock();
+        try {
+            BatchState state = new BatchState();
+            for (int i = 0; i < ops.size(); i++) result.set(i, state.check(ops.get(i)));
+            boolean commit = !batch.isAllOrNothing() || result.getFailed() == 0;
+            result.committed(commit);
+            if (!commit || result.getFailed() == ops.size()) return result;
+
+            if (journal != null) journalBatch(ops, result);
+            for (int i = 0; i < ops.size(); i++) {
+                if (result.get(i) != BatchResult.Outcome.OK) continue;
+                MutationBatch.Op op = ops.get(i);
+                if (op.kind == MutationJournal.ADD) insertLocked(op.character);
+                else if (op.kind == MutationJournal.UPDATE) updateLocked(store.rowOf(op.id), op.character);
+                else deleteLocked(store.rowOf(op.id));
+            }
+            compactIfNeeded();
+            return result;
+        } finally {
+            lock.unlockWrite(stamp);
+            metrics.record(OperationMetrics.Operation.BATCH, start);
+        }
+    }
+
+    /** syncClassify kinds. */
+    static final byte SYNC_UNCHANGED = 0, SYNC_NEW = 1, SYNC_CHANGED = 2;
+
+    /**
+     * For CsvLoader.resync: classify n file rows (id, RowFingerprints fingerprint) against
+     * the store into kinds, and mark the row of every stored id in seen.
+     */
+    void syncClassify(int[] ids, long[] fps, int n, byte[] kinds, BitSet seen) {
+        readLocked(() -> {
+            for (int i = 0; i < n; i++) {
+                int row = store.rowOf(ids[i]);
+                if (row < 0) {
+                    kinds[i] = SYNC_NEW;
+                    continue;
+                }
+                seen.set(row);
+                kinds[i] = fingerprints.at(row) == fps[i] ? SYNC_UNCHANGED : SYNC_CHANGED;
+            }
+            return null;
+        });
+    }
+
+    /** For CsvLoader.resync: ids of the stored records whose rows are not in seen. */
+    int[] syncUnseen(BitSet seen) {
+        return readLocked(() -> {
+            int[] ids = new int[store.size()];
+            int n = 0;
+            for (int row = store.nextRow(0); row >= 0; row = store.nextRow(row + 1)) {
+                if (!seen.get(row)) ids[n++] = store.idAt(row);
+            }
+            return Arrays.copyOf(ids, n);
+        });
+    }
+
+    /**
+     * The store as the batch sees it part way through validation: the store itself,
+     * overlaid with the ids and handle keys changed by the operations accepted so far.
+     */
+    private final class BatchState {
+        /** id -> its character after the batch so far; a null value means removed. */
+        private final Map<Integer, Character> ids = new HashMap<>();
+        /** handle key -> owning id after the batch so far; 0 means the handle was freed. */
+        private final Map<String, Integer> handles = new HashMap<>();
+
+        BatchResult.Outcome check(MutationBatch.Op op) {
+            if (op.kind == MutationJournal.REMOVE) {
+                Character old = current(op.id);
+                if (old == null) return BatchResult.Outcome.NOT_FOUND;
+                handles.put(handleKey(old.getHandle()), 0);
+                ids.put(op.id, null);
+                return BatchResult.Outcome.OK;
+            }
+            Character c = op.character;
+            if (!c.isValid()) return BatchResult.Outcome.INVALID;
+            String key = handleKey(c.getHandle());
+            int owner = ownerOf(key, c.getHandle());
+            Character old = current(c.getId());
+            if (op.kind == MutationJournal.ADD) {
+                if (old != null) return BatchResult.Outcome.DUPLICATE_ID;
+                if (owner != 0) return BatchResult.Outcome.DUPLICATE_HANDLE;
+            } else {
+                if (old == null) return BatchResult.Outcome.NOT_FOUND;
+                if (owner != 0 && owner != c.getId()) return BatchResult.Outcome.HANDLE_TAKEN;
+                handles.put(handleKey(old.getHandle()), 0);
+            }
+            handles.put(key, c.getId());
+            ids.put(c.getId(), c);
+            return BatchResult.Outcome.OK;
+        }
+
+        private Character current(int id) {
+            if (ids.containsKey(id)) return ids.get(id);
+            int row = store.rowOf(id);
+            return row < 0 ? null : store.peek(row);
+        }
+
+        private int ownerOf(String key, String handle) {
+            Integer owner = handles.get(key);
+            if (owner != null) return owner;
+            int row = store.rowOfHandle(handle);
+            return row < 0 ? 0 : store.idAt(row);
+        }
+    }
+
+    /** Columnar engine: let go of the copy-on-write view once no snapshot uses it. */
+    private void releaseVersions() {
+        if (columnar && versions != null && versions.openSnapshots() == 0) versions = null;
+    }
+
+    private void insertLocked(Character c) {
+        releaseVersions();
+        int row = store.insert(c);
+        if (versions != null) versions.set(row, store.peek(row));
+        for (CharacterIndex index : indexes) index.added(row, c);
+    }
+
+    private void updateLocked(int row, Character updated) {
+        releaseVersions();
+        Character before = store.peek(row);
+        store.update(row, updated);
+        if (versions != null) versions.set(row, store.peek(row));
+        for (CharacterIndex index : indexes) index.updated(row, before, updated);
+    }
+
+    private void deleteLocked(int row) {
+        releaseVersions();
+        Character before = store.peek(row);
+        store.delete(row);
+        if (versions != null) versions.set(row, null);
+        for (CharacterIndex index : indexes) index.removed(row, before);
     }
 
     public Optional<Character> findById(int id) {
-        return characters.stream().filter(c -> c.getId() == id).findFirst();
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.FIND_BY_ID, start, optimisticRead(() -> {
+            int row = store.rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(store.get(row));
+        }));
     }
 
     public Optional<Character> findByHandle(String handle) {
-        return characters.stream().filter(c -> c.getHandle().equalsIgnoreCase(handle)).findFirst();
+        if (handle == null) return Optional.empty();
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.FIND_BY_HANDLE, start, optimisticRead(() -> {
+            int row = store.rowOfHandle(handle);
+            return row < 0 ? Optional.empty() : Optional.of(store.get(row));
+        }));
+    }
+
+    /** Characters whose handle starts with prefix (case-insensitive), alphabetically, at most limit. */
+    public List<Character> findByHandlePrefix(String prefix, int limit) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.FIND_BY_HANDLE_PREFIX, start, readLocked(() -> {
+            List<Character> out = new ArrayList<>();
+            for (int row : handleSearch.prefix(prefix, limit)) out.add(store.get(row));
+            return out;
+        }));
+    }
+
+    /**
+     * Best matches for a partial or misspelled handle, at most limit: the exact handle first,
+     * then handles starting with it, then containing it, then similar ones (see HandleSearchIndex).
+     */
+    public List<Character> searchHandles(String partial, int limit) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.SEARCH_HANDLES, start, readLocked(() -> {
+            List<Character> out = new ArrayList<>();
+            for (HandleSearchIndex.Hit hit : handleSearch.search(partial, limit)) out.add(store.get(hit.row));
+            return out;
+        }));
+    }
+
+    /** Copy of all characters in storage (row) order; safe to keep and iterate while writes continue. */
+    public List<Character> getAll() {
+        return readLocked(() -> {
+            List<Character> out = new ArrayList<>(store.size());
+            for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) out.add(store.get(r));
+            return out;
+        });
+    }
+
+    /** Active characters only; walks the active rows without touching inactive records. */
+    public List<Character> listActive() {
+        return readLocked(() -> {
+            List<Character> out = new ArrayList<>();
+            for (int r = store.nextActiveRow(0); r >= 0; r = store.nextActiveRow(r + 1)) out.add(store.get(r));
+            return out;
+        });
+    }
+
+    /** Visit every character (as a copy) under the read lock, without building a list. */
+    public void forEach(Consumer<Character> action) {
+        long stamp = lock.readLock();
+        try {
+            for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) action.accept(store.get(r));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Characters matching every condition of q, in storage order (see CharacterQuery). */
+    public List<Character> query(CharacterQuery q) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.QUERY, start, readLocked(() -> {
+            BitSet rows = secondary.match(q, store);
+            List<Character> out = new ArrayList<>(Math.min(rows.cardinality(), q.getLimit()));
+            for (int r = rows.nextSetBit(0); r >= 0 && out.size() < q.getLimit(); r = rows.nextSetBit(r + 1)) {
+                out.add(store.get(r));
+            }
+            return out;
+        }));
+    }
+
+    /** Number of characters matching q, without building any of them. */
+    public int count(CharacterQuery q) {
+        return readLocked(() -> secondary.match(q, store).cardinality());
+    }
+
+    public int size() {
+        return optimisticRead(store::size);
+    }
+
+    /** Dashboard figures for server (null = all servers), from running totals in O(1). */
+    public AggregateStats aggregate(Server server) {
+        return optimisticRead(() -> aggregates.stats(server));
+    }
+
+    /** aggregate(s) for every Server in declaration order, followed by the all-servers total. */
+    public List<AggregateStats> aggregates() {
+        return optimisticRead(() -> {
+            List<AggregateStats> out = new ArrayList<>();
+            for (Server s : Server.values()) out.add(aggregates.stats(s));
+            out.add(aggregates.stats(null));
+            return out;
+        });
+    }
+
+    /**
+     * O(1) point-in-time view: reads from it are stable and never block writers, which carry
+     * on meanwhile. Close it when done. The columnar engine pays one scan to build the
+     * view when no snapshot is open, and writers copy records only while one is.
+     */
+    public CharacterSnapshot snapshot() {
+        long stamp = lock.readLock();
+        try {
+            if (versions != null) return versions.snapshot().scoredBy(formula);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        stamp = lock.writeLock();
+        try {
+            if (versions == null) {
+                RowVersions v = new RowVersions();
+                for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) v.set(r, store.peek(r));
+                versions = v;
+            }
+            return versions.snapshot().scoredBy(formula);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public List<Character> getAll() { return characters; }
+    /** The change-event stream (capacity, published count, subscribers). */
+    public ChangeStream changes() { return changes; }
+
+    /**
+     * Subscribe to every change committed after this call; drain it with poll. Taken under
+     * the write lock, so no change is missed or seen twice.
+     */
+    public ChangeStream.Subscription subscribe(ChangeStream.Policy policy) {
+        long stamp = lock.writeLock();
+        try {
+            return changes.subscribe(policy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Like subscribe(policy), but handler is fed asynchronously by the subscription's own virtual thread. */
+    public ChangeStream.Subscription subscribe(ChangeStream.Policy policy, Consumer<ChangeEvent> handler) {
+        long stamp = lock.writeLock();
+        try {
+            return changes.subscribe(policy, handler);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Latency histograms and counters for this manager's operations (see OperationMetrics). */
+    public OperationMetrics metrics() { return metrics; }
+
+    /** The formula behind every threat score this manager reports (ScoringFormula.DEFAULT unless set). */
+    public ScoringFormula getScoringFormula() { return formula; }
+
+    /**
+     * Score Most Wanted reports with formula from now on. The heap engine's leaderboard is
+     * rebuilt under the write lock, scoring a ScoringFormula.Batch at a time. The formula
+     * is a setting, not data: it is not journaled or kept in snapshot files.
+     */
+    public void setScoringFormula(ScoringFormula formula) {
+        Objects.requireNonNull(formula, "formula");
+        long stamp = lock.writeLock();
+        try {
+            this.formula = formula;
+            if (leaderboard != null) leaderboard.rescore(store, formula);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Top-N Most Wanted: a walk of the live leaderboard, or a column scan for the columnar engine. */
+    public List<ThreatEntry> topThreats(int n) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.TOP_N, start, readLocked(() -> {
+            if (leaderboard == null) return ReportGenerator.topNScan(n, store, formula);
+            long[] keys = leaderboard.top(n);
+            List<ThreatEntry> out = new ArrayList<>(keys.length);
+            for (long k : keys) {
+                int row = store.rowOf(ThreatLeaderboard.idOf(k));
+                out.add(new ThreatEntry(store.get(row), ThreatLeaderboard.scoreOf(k)));
+            }
+            return out;
+        }));
+    }
+
+    /**
+     * 1-based Most Wanted rank of id among everyone (server null) or within server, ties
+     * broken by lowest id; -1 if id does not exist or plays on another server.
+     */
+    public int rankOf(int id, Server server) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.RANK, start, readLocked(() -> {
+            if (leaderboard != null) {
+                int rank = leaderboard.rankOf(id, server);
+                return rank < 0 ? -1 : rank + 1;
+            }
+            int row = store.rowOf(id);
+            if (row < 0 || (server != null && store.serverAt(row) != server)) return -1;
+            long key = ThreatLeaderboard.key(id, formula.score(store.wantedLevelAt(row),
+                    store.bountyCentsAt(row), store.reputationAt(row), store.activeAt(row)));
+            return ReportGenerator.countBelowScan(store, server, key, formula) + 1;
+        }));
+    }
+
+    /** Up to count entries holding ranks fromRank, fromRank+1, ... (1-based) among everyone or within server. */
+    public List<ThreatEntry> rankPage(int fromRank, int count, Server server) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.RANK, start, readLocked(() -> {
+            if (leaderboard == null) return ReportGenerator.rankScan(store, server, fromRank - 1, count, formula);
+            long[] keys = leaderboard.page(server, Math.max(fromRank - 1, 0), count);
+            List<ThreatEntry> out = new ArrayList<>(keys.length);
+            for (long k : keys) {
+                int row = store.rowOf(ThreatLeaderboard.idOf(k));
+                out.add(new ThreatEntry(store.get(row), ThreatLeaderboard.scoreOf(k)));
+            }
+            return out;
+        }));
+    }
+
+    /** Number of characters (everyone, or within server) with a threat score strictly above score. */
+    public int countAbove(int score, Server server) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.RANK, start, readLocked(() -> leaderboard != null
+                ? leaderboard.countAbove(score, server)
+                : ReportGenerator.countBelowScan(store, server, ThreatLeaderboard.firstKeyOf(score), formula)));
+    }
+
+    /**
+     * Trend of id's wanted level, bounty and reputation from fromMillis to toMillis
+     * (inclusive): the values in effect at fromMillis, stamped fromMillis, then each change
+     * after it. Empty if id is not stored. History covers changes made since the manager
+     * was created or opened.
+     */
+    public List<StatPoint> history(int id, long fromMillis, long toMillis) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.HISTORY, start, readLocked(() -> {
+            int row = store.rowOf(id);
+            return row < 0 ? List.<StatPoint>of() : history.history(row, store.peek(row), fromMillis, toMillis, formula);
+        }));
+    }
+
+    /**
+     * The n characters whose stat rose most between fromMillis and toMillis, largest rise
+     * first. Characters unchanged since fromMillis are skipped without decoding their history.
+     * THREAT is scored by the current scoring formula, like topThreats and rankOf.
+     */
+    public List<StatMover> topMovers(StatPoint.Stat stat, long fromMillis, long toMillis, int n) {
+        long start = metrics.start();
+        return metrics.stop(OperationMetrics.Operation.HISTORY, start,
+                readLocked(() -> history.topMovers(stat, fromMillis, toMillis, n, formula, store::activeAt, store::idAt)));
+    }
+
+    /** The stat history itself, for footprint reports. */
+    StatHistory statHistory() { return history; }
 
     public String toCsv() {
-        return characters.stream()
-                .map(c -> String.join(",", String.valueOf(c.getId()), c.getHandle(),
-                        c.getServer().name(), c.getOccupation(), String.valueOf(c.getWantedLevel()),
-                        String.valueOf(c.getBountyCents()), String.valueOf(c.getReputation()),
-                        String.valueOf(c.isActive())))
-                .collect(Collectors.joining("\n"));
+        StringWriter out = new StringWriter();
+        try {
+            writeCsv(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    /** Stream every character as CSV (same format as toCsv) without building the whole text. */
+    public void writeCsv(Writer out) throws IOException {
+        writeCsv(CsvWriter.to(out));
+    }
+
+    public void writeCsv(OutputStream out) throws IOException {
+        writeCsv(CsvWriter.to(out));
+    }
+
+    public void writeCsv(WritableByteChannel out) throws IOException {
+        writeCsv(CsvWriter.to(out));
+    }
+
+    /**
+     * Rows are encoded straight from a snapshot (or, for the columnar engine, from the store
+     * under the read lock, so exports never build its snapshot view); no per-row copies or Strings.
+     */
+    public void writeCsv(CsvWriter out) throws IOException {
+        if (!columnar) {
+            try (CharacterSnapshot s = snapshot()) {
+                s.writeCsv(out);
+            }
+            return;
+        }
+        long stamp = lock.readLock();
+        try {
+            boolean first = true;
+            for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) {
+                if (!first) out.endRow();
+                first = false;
+                out.character(store.peek(r));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        out.flush();
+    }
+
+    /** Write the whole store to a binary snapshot (see SnapshotFile). */
+    public void saveSnapshot(Path path) throws IOException {
+        List<Character> all;
+        if (columnar) {
+            all = getAll();
+        } else {
+            try (CharacterSnapshot s = snapshot()) {
+                all = s.getAll();
+            }
+        }
+        SnapshotFile.write(path, all, all.size());
+    }
+
+    /**
+     * Replace the current contents with those of a binary snapshot; returns the number loaded.
+     * Every record is re-inserted through the indexes, so this is O(n) in the snapshot size.
+     */
+    public int loadSnapshot(Path path) throws IOException {
+        List<Character> loaded = SnapshotFile.read(path);
+        long stamp = lock.writeLock();
+        try {
+            store.clear();
+            if (versions != null) versions.clear();
+            for (CharacterIndex index : indexes) index.cleared();
+            if (journal == null) return insertAll(loaded).getAdded();
+            // Durable store: make the replaced contents the new base instead of journaling every row.
+            MutationJournal j = journal;
+            journal = null;
+            int n;
+            try {
+                n = insertAll(loaded).getAdded();
+            } finally {
+                journal = j;
+            }
+            checkpointLocked();
+            return n;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // --------------------- DURABILITY ---------------------
+
+    /** Fold the journal into a fresh snapshot and start an empty journal (no-op unless durable). */
+    public void checkpoint() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            if (journal != null) checkpointLocked();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Force everything journaled so far to disk (no-op unless durable). */
+    public void sync() throws IOException {
+        MutationJournal j = journal;
+        if (j != null) j.sync();
+    }
+
+    /** Flush and close the journal; the manager stays readable but is no longer durable. */
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            if (journal != null) journal.close();
+            journal = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void checkpointLocked() throws IOException {
+        int next = journal.rotate();
+        List<Character> all = new ArrayList<>(store.size());
+        for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) all.add(store.get(r));
+        SnapshotFile.write(dataDir.resolve(MutationJournal.SNAPSHOT), all, all.size(), next);
+        journal.deleteBefore(next);
+    }
+
+    /*
+     * Write-ahead: every mutation is journaled before it touches the store, indexes or
+     * ChangeStream, so a failed journal write (including an earlier background sync failure,
+     * reported on the next append) throws with memory unchanged. Compaction runs afterwards,
+     * once the change is applied, since it snapshots the store.
+     */
+
+    private void journal(byte op, Character c) {
+        if (journal == null) return;
+        try {
+            journal.append(op, c);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    private void journalRemove(int id) {
+        if (journal == null) return;
+        try {
+            journal.appendRemove(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    /** The BATCH header and every accepted operation of a batch, all before any is applied. */
+    private void journalBatch(List<MutationBatch.Op> ops, BatchResult result) {
+        try {
+            journal.appendBatch(ops.size() - result.getFailed());
+            for (int i = 0; i < ops.size(); i++) {
+                if (result.get(i) != BatchResult.Outcome.OK) continue;
+                MutationBatch.Op op = ops.get(i);
+                if (op.kind == MutationJournal.REMOVE) journal.appendRemove(op.id);
+                else journal.append(op.kind, op.character);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (journal == null) return;
+        try {
+            if (journal.size() > journal.configuredCompaction()) checkpointLocked();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    // --------------------- LOCKING ---------------------
+
+    /**
+     * Run a short read without taking the lock; if a writer ran meanwhile (or the read tripped
+     * over a structure it was resizing) the result is discarded and the read redone under the
+     * read lock.
+     */
+    private <T> T optimisticRead(Supplier<T> read) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = read.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException tornRead) {
+                // fall through to the locked retry
+            }
+        }
+        return readLocked(read);
+    }
+
+    private <T> T readLocked(Supplier<T> read) {
+        long stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Normalized key for the handle index: every char case-folded the same way
+     * String.equalsIgnoreCase compares them, so behaviour is unchanged from the old scan.
+     * A handle that is already folded is returned as is, so its key costs no extra String.
+     */
+    static String handleKey(String handle) {
+        int i = 0;
+        while (i < handle.length() && fold(handle.charAt(i)) == handle.charAt(i)) i++;
+        if (i == handle.length()) return handle;
+        char[] folded = handle.toCharArray();
+        for (; i < folded.length; i++) folded[i] = fold(folded[i]);
+        return new String(folded);
+    }
+
+    static char fold(char ch) {
+        return java.lang.Character.toLowerCase(java.lang.Character.toUpperCase(ch));
     }
 }
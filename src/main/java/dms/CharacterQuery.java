@@ -0,0 +1,79 @@
+package dms;
+
+/**
+ * Class: CharacterQuery
+ * Purpose: Composite filter for CharacterManager.query - every condition that is set must
+ * hold (AND). Unset conditions match everything. Bounds are inclusive.
+ * Example: active EU characters with wantedLevel >= 4 and reputation < 0
+ *   new CharacterQuery().server(Server.EU).active(true).minWantedLevel(4).maxReputation(-1)
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class CharacterQuery {
+    private Server server;
+    private Boolean active;
+    private String occupation;
+    private int minWantedLevel = Integer.MIN_VALUE;
+    private int maxWantedLevel = Integer.MAX_VALUE;
+    private int minBountyCents = Integer.MIN_VALUE;
+    private int maxBountyCents = Integer.MAX_VALUE;
+    private int minReputation = Integer.MIN_VALUE;
+    private int maxReputation = Integer.MAX_VALUE;
+    private int limit = Integer.MAX_VALUE;
+
+    public CharacterQuery server(Server s) { this.server = s; return this; }
+    public CharacterQuery active(boolean a) { this.active = a; return this; }
+    /** Exact (case-sensitive) occupation; checked as a dictionary-code compare. */
+    public CharacterQuery occupation(String o) { this.occupation = o; return this; }
+    public CharacterQuery minWantedLevel(int v) { this.minWantedLevel = v; return this; }
+    public CharacterQuery maxWantedLevel(int v) { this.maxWantedLevel = v; return this; }
+    public CharacterQuery minBountyCents(int v) { this.minBountyCents = v; return this; }
+    public CharacterQuery maxBountyCents(int v) { this.maxBountyCents = v; return this; }
+    public CharacterQuery minReputation(int v) { this.minReputation = v; return this; }
+    public CharacterQuery maxReputation(int v) { this.maxReputation = v; return this; }
+    /** Return at most n matches (in storage order); n must not be negative. */
+    public CharacterQuery limit(int n) {
+        if (n < 0) throw new IllegalArgumentException("limit must not be negative: " + n);
+        this.limit = n;
+        return this;
+    }
+
+    public Server getServer() { return server; }
+    public Boolean getActive() { return active; }
+    public String getOccupation() { return occupation; }
+    public int getMinWantedLevel() { return minWantedLevel; }
+    public int getMaxWantedLevel() { return maxWantedLevel; }
+    public int getMinBountyCents() { return minBountyCents; }
+    public int getMaxBountyCents() { return maxBountyCents; }
+    public int getMinReputation() { return minReputation; }
+    public int getMaxReputation() { return maxReputation; }
+    public int getLimit() { return limit; }
+
+    boolean hasWantedRange() { return minWantedLevel != Integer.MIN_VALUE || maxWantedLevel != Integer.MAX_VALUE; }
+    boolean hasBountyRange() { return minBountyCents != Integer.MIN_VALUE || maxBountyCents != Integer.MAX_VALUE; }
+    boolean hasReputationRange() { return minReputation != Integer.MIN_VALUE || maxReputation != Integer.MAX_VALUE; }
+
+    /** Direct check of one record, used to filter small candidate sets. */
+    boolean matches(Server s, boolean a, int wl, int bounty, int rep) {
+        return (server == null || server == s) && (active == null || active == a)
+                && wl >= minWantedLevel && wl <= maxWantedLevel
+                && bounty >= minBountyCents && bounty <= maxBountyCents
+                && rep >= minReputation && rep <= maxReputation;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("query[");
+        if (server != null) sb.append(" server=").append(server);
+        if (active != null) sb.append(" active=").append(active);
+        if (occupation != null) sb.append(" occupation=").append(occupation);
+        if (hasWantedRange()) sb.append(" wantedLevel=").append(range(minWantedLevel, maxWantedLevel));
+        if (hasBountyRange()) sb.append(" bountyCents=").append(range(minBountyCents, maxBountyCents));
+        if (hasReputationRange()) sb.append(" reputation=").append(range(minReputation, maxReputation));
+        return sb.append(" ]").toString();
+    }
+
+    private static String range(int lo, int hi) {
+        return (lo == Integer.MIN_VALUE ? "" : String.valueOf(lo)) + ".." + (hi == Integer.MAX_VALUE ? "" : String.valueOf(hi));
+    }
+}
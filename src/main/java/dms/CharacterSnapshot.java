@@ -0,0 +1,107 @@
+package dms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Class: CharacterSnapshot
+ * Purpose: Point-in-time, read-only view of a CharacterManager from snapshot(). Taking
+ * one is O(1) and takes no lock for longer than that; afterwards reads never block
+ * writers and never see their changes, so long reports and exports are consistent.
+ * Records are visited in storage (row) order, the same order as getAll().
+ * Close it when done, so writers stop copying on its behalf (see RowVersions).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class CharacterSnapshot implements AutoCloseable {
+    private RowVersions.Node root;
+    private final int shift;
+    private final int size;
+    private ScoringFormula formula = ScoringFormula.DEFAULT;
+    Cleaner.Cleanable release;
+
+    CharacterSnapshot(RowVersions.Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    public int size() { return size; }
+
+    /** Set the formula topThreats scores with (the manager's, as of the snapshot). */
+    CharacterSnapshot scoredBy(ScoringFormula formula) {
+        this.formula = formula;
+        return this;
+    }
+
+    /** Copies of all characters, as getAll() returned them when the snapshot was taken. */
+    public List<Character> getAll() {
+        List<Character> out = new ArrayList<>(size);
+        visit(c -> out.add(c.copy()));
+        return out;
+    }
+
+    /** Visit every character (as a copy). */
+    public void forEach(Consumer<Character> action) {
+        visit(c -> action.accept(c.copy()));
+    }
+
+    /** Top-N Most Wanted as of the snapshot; ties broken by lowest id. */
+    public List<ThreatEntry> topThreats(int n) {
+        List<ThreatEntry> out = ReportGenerator.topNOf(n, this::visit, formula::score);
+        for (int i = 0; i < out.size(); i++) {
+            ThreatEntry te = out.get(i);
+            out.set(i, new ThreatEntry(te.getCharacter().copy(), te.getThreatScore()));
+        }
+        return out;
+    }
+
+    public void writeCsv(Writer out) throws IOException {
+        writeCsv(CsvWriter.to(out));
+    }
+
+    /** Same rows as CharacterManager.writeCsv, encoded straight from the snapshot's records. */
+    public void writeCsv(CsvWriter out) throws IOException {
+        boolean[] first = {true};
+        try {
+            visit(c -> {
+                try {
+                    if (!first[0]) out.endRow();
+                    first[0] = false;
+                    out.character(c);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    /** Release the snapshot; it cannot be read afterwards. */
+    @Override
+    public void close() {
+        root = null;
+        release.clean();
+    }
+
+    /** Internal records in row order; they are shared with the store and must not be kept or mutated. */
+    void visit(Consumer<Character> action) {
+        if (root == null) throw new IllegalStateException("snapshot is closed");
+        visit(root, shift, action);
+    }
+
+    private static void visit(RowVersions.Node n, int shift, Consumer<Character> action) {
+        for (Object slot : n.slots) {
+            if (slot == null) continue;
+            if (shift == 0) action.accept((Character) slot);
+            else visit((RowVersions.Node) slot, shift - RowVersions.BITS, action);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dms;
+
+/**
+ * Interface: CharacterStore
+ * Purpose: Row-oriented storage behind CharacterManager. Every record lives in a numbered
+ * row; rows freed by delete are reused. The manager does validation and duplicate checks,
+ * the store only keeps the data and its id / case-insensitive handle indexes.
+ * Per-field accessors let scans read values without building Character objects.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+interface CharacterStore {
+    int size();
+
+    /** Row holding id, or -1. */
+    int rowOf(int id);
+
+    /** Row whose handle equals handle ignoring case, or -1. */
+    int rowOfHandle(String handle);
+
+    /** Store a new record (id and handle must be unused) and return its row. */
+    int insert(Character c);
+
+    /** Overwrite every field of the record in row except its id. */
+    void update(int row, Character c);
+
+    void delete(int row);
+
+    void clear();
+
+    /** First live row at or after from, or -1. */
+    int nextRow(int from);
+
+    /** Every row is below this. */
+    int rowLimit();
+
+    /** Load rows [from, to) (at most Batch.SIZE) into batch for scoring, marking empty rows not live. */
+    void fillBatch(int from, int to, ScoringFormula.Batch batch);
+
+    /** First live row at or after from whose record is active, or -1. */
+    int nextActiveRow(int from);
+
+    /** Copy of the record in row, safe to hand to callers. */
+    Character get(int row);
+
+    /** The record in row for internal read-only use (may be the stored instance). */
+    Character peek(int row);
+
+    int idAt(int row);
+    Server serverAt(int row);
+    int wantedLevelAt(int row);
+    int bountyCentsAt(int row);
+    int reputationAt(int row);
+    boolean activeAt(int row);
+    /** CharacterManager.handleKey of the row's handle. */
+    String handleKeyAt(int row);
+    /** occupations() code of the row's occupation. */
+    int occupationCodeAt(int row);
+    /**
+     * Reference-counted dictionary of the occupations of the stored records: values enter
+     * it only when a record holding them is inserted or updated (never from parsing or
+     * rejected input) and leave it when the last record holding them changes or goes.
+     */
+    StringDictionary occupations();
+}
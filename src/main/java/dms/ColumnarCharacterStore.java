@@ -0,0 +1,289 @@
+package dms;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Class: ColumnarCharacterStore
+ * Purpose: Primitive column layout for very large datasets. id, wantedLevel, bountyCents
+ * and reputation are parallel int[] columns, server is a byte column, active and row
+ * liveness are bitsets, occupation is an int column of codes in the store's own
+ * StringDictionary, and handles are (offset, length) pairs into one shared char buffer.
+ * The id index is an IntIntMap and the handle index an open-addressing table of rows
+ * hashed on case-folded chars, so no per-record objects exist at rest;
+ * Character instances are built only when a caller asks for a row.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class ColumnarCharacterStore implements CharacterStore {
+    private static final Server[] SERVERS = Server.values();
+    private static final int MIN_COMPACT_CHARS = 1 << 16;
+
+    private int[] ids = new int[16];
+    private int[] wanted = new int[16];
+    private int[] bounty = new int[16];
+    private int[] rep = new int[16];
+    private byte[] server = new byte[16];
+    private int[] handleOff = new int[16];
+    private int[] handleLen = new int[16];
+    private int[] occ = new int[16];
+    private StringDictionary occupations = new StringDictionary();
+    private final BitSet live = new BitSet();
+    private final BitSet active = new BitSet();
+    private int rowLimit;
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private char[] text = new char[256];
+    private int textLen;
+    private int garbage;
+
+    private final IntIntMap idIndex = new IntIntMap();
+    /** Handle table: slot holds row + 1 (0 = empty) and the folded hash of that row's handle. */
+    private int[] handleSlots = new int[32];
+    private int[] handleHashes = new int[32];
+    private int handleCount;
+
+    @Override public int size() { return idIndex.size(); }
+
+    @Override public int rowOf(int id) { return idIndex.get(id); }
+
+    @Override
+    public int rowOfHandle(String handle) {
+        int h = foldedHash(handle);
+        int mask = handleSlots.length - 1;
+        for (int i = h & mask; handleSlots[i] != 0; i = (i + 1) & mask) {
+            int row = handleSlots[i] - 1;
+            if (handleHashes[i] == h && handleEquals(row, handle)) return row;
+        }
+        return -1;
+    }
+
+    @Override
+    public int insert(Character c) {
+        int row;
+        if (freeCount > 0) {
+            row = free[--freeCount];
+        } else {
+            if (rowLimit == ids.length) growRows();
+            row = rowLimit++;
+        }
+        ids[row] = c.getId();
+        write(row, c);
+        live.set(row);
+        idIndex.put(c.getId(), row);
+        addHandle(row);
+        return row;
+    }
+
+    @Override
+    public void update(int row, Character c) {
+        removeHandle(row);
+        garbage += handleLen[row];
+        int oldOcc = occ[row];
+        write(row, c);
+        occupations.release(oldOcc);
+        addHandle(row);
+        maybeCompact();
+    }
+
+    @Override
+    public void delete(int row) {
+        removeHandle(row);
+        idIndex.remove(ids[row]);
+        occupations.release(occ[row]);
+        garbage += handleLen[row];
+        handleLen[row] = 0;
+        live.clear(row);
+        active.clear(row);
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = row;
+        maybeCompact();
+    }
+
+    @Override
+    public void clear() {
+        live.clear();
+        active.clear();
+        rowLimit = 0;
+        freeCount = 0;
+        textLen = 0;
+        garbage = 0;
+        idIndex.clear();
+        Arrays.fill(handleSlots, 0);
+        handleCount = 0;
+        occupations = new StringDictionary();
+    }
+
+    @Override
+    public int nextRow(int from) {
+        int r = live.nextSetBit(Math.max(from, 0));
+        return r < 0 ? -1 : r;
+    }
+
+    @Override public int rowLimit() { return rowLimit; }
+
+    /** Straight column copies; only active and liveness are unpacked bit by bit. */
+    @Override
+    public void fillBatch(int from, int to, ScoringFormula.Batch batch) {
+        int n = to - from;
+        System.arraycopy(wanted, from, batch.wantedLevel, 0, n);
+        System.arraycopy(bounty, from, batch.bountyCents, 0, n);
+        System.arraycopy(rep, from, batch.reputation, 0, n);
+        for (int i = 0; i < n; i++) {
+            batch.live[i] = live.get(from + i);
+            batch.active[i] = active.get(from + i) ? 1 : 0;
+        }
+        batch.setSize(n);
+    }
+
+    @Override
+    public int nextActiveRow(int from) {
+        int r = active.nextSetBit(Math.max(from, 0));
+        return r < 0 ? -1 : r;
+    }
+
+    @Override
+    public Character get(int row) {
+        return new Character(ids[row], new String(text, handleOff[row], handleLen[row]), SERVERS[server[row]],
+                occupations.decode(occ[row]), wanted[row], bounty[row], rep[row], active.get(row));
+    }
+
+    @Override public Character peek(int row) { return get(row); }
+    @Override public int occupationCodeAt(int row) { return occ[row]; }
+    @Override public StringDictionary occupations() { return occupations; }
+
+    @Override
+    public String handleKeyAt(int row) {
+        char[] key = Arrays.copyOfRange(text, handleOff[row], handleOff[row] + handleLen[row]);
+        for (int k = 0; k < key.length; k++) key[k] = CharacterManager.fold(key[k]);
+        return new String(key);
+    }
+    @Override public int idAt(int row) { return ids[row]; }
+    @Override public Server serverAt(int row) { return SERVERS[server[row]]; }
+    @Override public int wantedLevelAt(int row) { return wanted[row]; }
+    @Override public int bountyCentsAt(int row) { return bounty[row]; }
+    @Override public int reputationAt(int row) { return rep[row]; }
+    @Override public boolean activeAt(int row) { return active.get(row); }
+
+    // --------------------- COLUMNS ---------------------
+
+    private void write(int row, Character c) {
+        wanted[row] = c.getWantedLevel();
+        bounty[row] = c.getBountyCents();
+        rep[row] = c.getReputation();
+        server[row] = (byte) c.getServer().ordinal();
+        active.set(row, c.isActive());
+        handleOff[row] = append(c.getHandle());
+        handleLen[row] = c.getHandle().length();
+        occ[row] = occupations.acquire(c.getOccupation());
+    }
+
+    private int append(String s) {
+        int off = textLen;
+        if (s == null) return off;
+        if (textLen + s.length() > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLen + s.length()));
+        }
+        s.getChars(0, s.length(), text, textLen);
+        textLen += s.length();
+        return off;
+    }
+
+    private void growRows() {
+        int cap = ids.length * 2;
+        ids = Arrays.copyOf(ids, cap);
+        wanted = Arrays.copyOf(wanted, cap);
+        bounty = Arrays.copyOf(bounty, cap);
+        rep = Arrays.copyOf(rep, cap);
+        server = Arrays.copyOf(server, cap);
+        handleOff = Arrays.copyOf(handleOff, cap);
+        handleLen = Arrays.copyOf(handleLen, cap);
+        occ = Arrays.copyOf(occ, cap);
+    }
+
+    /** Rewrite the char buffer once more than half of it belongs to deleted or replaced strings. */
+    private void maybeCompact() {
+        if (garbage < MIN_COMPACT_CHARS || garbage * 2 < textLen) return;
+        char[] packed = new char[Math.max(256, (textLen - garbage) * 2)];
+        int len = 0;
+        for (int r = live.nextSetBit(0); r >= 0; r = live.nextSetBit(r + 1)) {
+            System.arraycopy(text, handleOff[r], packed, len, handleLen[r]);
+            handleOff[r] = len;
+            len += handleLen[r];
+        }
+        text = packed;
+        textLen = len;
+        garbage = 0;
+    }
+
+    // --------------------- HANDLE INDEX ---------------------
+
+    private void addHandle(int row) {
+        if ((handleCount + 1) * 2 > handleSlots.length) rehashHandles(handleSlots.length * 2);
+        int h = foldedHash(text, handleOff[row], handleLen[row]);
+        int mask = handleSlots.length - 1;
+        int i = h & mask;
+        while (handleSlots[i] != 0) i = (i + 1) & mask;
+        handleSlots[i] = row + 1;
+        handleHashes[i] = h;
+        handleCount++;
+    }
+
+    private void removeHandle(int row) {
+        int mask = handleSlots.length - 1;
+        int i = foldedHash(text, handleOff[row], handleLen[row]) & mask;
+        while (handleSlots[i] != row + 1) i = (i + 1) & mask;
+        for (int j = (i + 1) & mask; handleSlots[j] != 0; j = (j + 1) & mask) {
+            int home = handleHashes[j] & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                handleSlots[i] = handleSlots[j];
+                handleHashes[i] = handleHashes[j];
+                i = j;
+            }
+        }
+        handleSlots[i] = 0;
+        handleCount--;
+    }
+
+    private void rehashHandles(int cap) {
+        int[] oldSlots = handleSlots, oldHashes = handleHashes;
+        handleSlots = new int[cap];
+        handleHashes = new int[cap];
+        int mask = cap - 1;
+        for (int k = 0; k < oldSlots.length; k++) {
+            if (oldSlots[k] == 0) continue;
+            int i = oldHashes[k] & mask;
+            while (handleSlots[i] != 0) i = (i + 1) & mask;
+            handleSlots[i] = oldSlots[k];
+            handleHashes[i] = oldHashes[k];
+        }
+    }
+
+    private boolean handleEquals(int row, String handle) {
+        int len = handleLen[row];
+        if (len != handle.length()) return false;
+        int off = handleOff[row];
+        for (int k = 0; k < len; k++) {
+            if (CharacterManager.fold(text[off + k]) != CharacterManager.fold(handle.charAt(k))) return false;
+        }
+        return true;
+    }
+
+    private static int foldedHash(String s) {
+        int h = 0;
+        for (int k = 0; k < s.length(); k++) h = 31 * h + CharacterManager.fold(s.charAt(k));
+        return mix(h);
+    }
+
+    private static int foldedHash(char[] buf, int off, int len) {
+        int h = 0;
+        for (int k = 0; k < len; k++) h = 31 * h + CharacterManager.fold(buf[off + k]);
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,486 @@
+package dms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class: CsvLoader
+ * Purpose: Bulk CSV import path. The file is streamed through a FileChannel in large byte
+ * chunks cut at line boundaries, chunks are parsed in parallel with a hand-rolled field
+ * tokenizer (no regex, no exceptions on bad rows), and parsed rows are inserted in file
+ * order through CharacterManager.addAll.
+ *
+ * resync streams a regenerated file the same way but applies only the difference: each
+ * row is tokenized and fingerprinted (RowFingerprints) without building a Character,
+ * rows whose fingerprint matches the stored record are skipped, and only new or changed
+ * rows are parsed and applied, chunk by chunk, as MutationBatches; stored ids missing
+ * from the file are removed at the end. Meant to run without other writers - anything
+ * they change meanwhile is still validated by the batches and counted as rejected.
+ * Row format matches Character.fromCsv:
+ * id,handle,server,occupation,wantedLevel,bountyCents,reputation,active
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class CsvLoader {
+    static final int CHUNK_BYTES = 1 << 20;
+    private static final int FIELDS = 8;
+    private static final long BAD_INT = Long.MIN_VALUE;
+
+    private final int threads;
+
+    public CsvLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CsvLoader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /** Stream the file at path into the manager and report what was added and rejected. */
+    public LoadResult load(Path path, CharacterManager manager) throws IOException {
+        LoadResult total = new LoadResult();
+        long start = manager.metrics().start();
+        try {
+            stream(path, CsvLoader::parseChunk, chunk -> {
+                total.merge(manager.addAll(chunk.rows));
+                total.malformed(chunk.malformed);
+                manager.metrics().rejected(chunk.malformed);
+            });
+        } finally {
+            manager.metrics().record(OperationMetrics.Operation.LOAD_CSV, start);
+        }
+        return total;
+    }
+
+    /**
+     * Make the manager match the file at path: insert new ids, update changed rows, remove
+     * ids the file no longer has. Unchanged rows cost a tokenize and a hash lookup only.
+     * A malformed line never causes a delete: its id (first field) still counts as present,
+     * and if even that cannot be read, no id is removed at all.
+     * Rows refused only because their handle is still held (by an id the file dropped, or
+     * by a row the file renames later, as in a handle swap) are retried after the delete pass.
+     */
+    public SyncResult resync(Path path, CharacterManager manager) throws IOException {
+        SyncResult total = new SyncResult();
+        BitSet seen = new BitSet();
+        boolean[] unknownIds = {false};
+        List<MutationBatch.Op> handleConflicts = new ArrayList<>();
+        long start = manager.metrics().start();
+        try {
+            stream(path, CsvLoader::scanChunk, chunk -> {
+                applyChanges(chunk, manager, seen, total, handleConflicts);
+                if (chunk.malformed > chunk.malformedIdCount) unknownIds[0] = true;
+            });
+            if (!unknownIds[0]) {
+                MutationBatch deletes = MutationBatch.bestEffort();
+                for (int id : manager.syncUnseen(seen)) deletes.remove(id);
+                BatchResult r = manager.apply(deletes);
+                for (int i = 0; i < r.size(); i++) {
+                    if (r.get(i) == BatchResult.Outcome.OK) total.deletedOne(); else total.rejectedOne();
+                }
+            }
+            retryHandleConflicts(handleConflicts, manager, total);
+        } finally {
+            manager.metrics().record(OperationMetrics.Operation.RESYNC_CSV, start);
+        }
+        return total;
+    }
+
+    private interface ChunkParser<T> {
+        T parse(byte[] buf, int from, int to);
+    }
+
+    private interface ChunkSink<T> {
+        void accept(T chunk) throws IOException;
+    }
+
+    /**
+     * Read the file in line-aligned chunks, parse them on the pool (each chunk owns its
+     * buffer) and hand the results to sink one at a time, in file order.
+     */
+    private <T> void stream(Path path, ChunkParser<T> parser, ChunkSink<T> sink) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        // Bounded so only a few chunks are ever held in memory, whatever the file size.
+        Deque<Future<T>> inFlight = new ArrayDeque<>();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            byte[] block = new byte[CHUNK_BYTES];
+            int filled = 0;
+            boolean first = true;
+            while (true) {
+                int n = ch.read(ByteBuffer.wrap(block, filled, block.length - filled));
+                if (n > 0) filled += n;
+                if (first && (filled >= 3 || n < 0)) {
+                    int bom = bomLength(block, filled);
+                    System.arraycopy(block, bom, block, 0, filled - bom);
+                    filled -= bom;
+                    first = false;
+                }
+                if (n >= 0 && filled < block.length) continue;
+
+                if (n < 0) {
+                    if (filled > 0) inFlight.add(submit(pool, parser, block, 0, filled));
+                    break;
+                }
+
+                int cut = lastNewline(block, filled);
+                if (cut < 0) {
+                    // A single line longer than the buffer: grow and keep reading.
+                    block = Arrays.copyOf(block, block.length * 2);
+                    continue;
+                }
+                inFlight.add(submit(pool, parser, block, 0, cut + 1));
+                byte[] next = new byte[Math.max(CHUNK_BYTES, filled - cut - 1)];
+                System.arraycopy(block, cut + 1, next, 0, filled - cut - 1);
+                filled -= cut + 1;
+                block = next;
+
+                while (inFlight.size() > threads * 2) sink.accept(await(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) sink.accept(await(inFlight.poll()));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> Future<T> submit(ExecutorService pool, ChunkParser<T> parser, byte[] buf, int from, int to) {
+        return pool.submit(() -> parser.parse(buf, from, to));
+    }
+
+    private static <T> T await(Future<T> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV load interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("CSV parse failed", e.getCause());
+        }
+    }
+
+    // --------------------- RESYNC ---------------------
+
+    /** Tokenized rows of one chunk: id, fingerprint and line bounds, no Characters. */
+    static final class ScannedChunk {
+        final byte[] buf;
+        int size;
+        int[] ids = new int[1024];
+        long[] fingerprints = new long[1024];
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        int malformed;
+        /** Ids read from the first field of malformed lines (not every malformed line has one). */
+        int[] malformedIds = new int[16];
+        int malformedIdCount;
+
+        ScannedChunk(byte[] buf) {
+            this.buf = buf;
+        }
+
+        void malformed(long id) {
+            malformed++;
+            if (id == BAD_INT) return;
+            if (malformedIdCount == malformedIds.length) malformedIds = Arrays.copyOf(malformedIds, malformedIdCount * 2);
+            malformedIds[malformedIdCount++] = (int) id;
+        }
+
+        void add(int id, long fingerprint, int start, int end) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            ids[size] = id;
+            fingerprints[size] = fingerprint;
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+    }
+
+    /** The id in the first field of buf[start, end), or BAD_INT. */
+    private static long leadingId(byte[] buf, int start, int end) {
+        int e = start;
+        while (e < end && buf[e] != ',') e++;
+        int s = start;
+        while (s < e && (buf[s] & 0xff) <= ' ') s++;
+        while (e > s && (buf[e - 1] & 0xff) <= ' ') e--;
+        return parseInt(buf, s, e);
+    }
+
+    static ScannedChunk scanChunk(byte[] buf, int from, int to) {
+        ScannedChunk out = new ScannedChunk(buf);
+        int[] bounds = new int[FIELDS * 2];
+        int lineStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && buf[i] != '\n') continue;
+            if (!isBlank(buf, lineStart, i)) {
+                long fp = fingerprintLine(buf, lineStart, i, bounds);
+                if (fp == BAD_INT) out.malformed(leadingId(buf, lineStart, i));
+                else out.add((int) parseInt(buf, bounds[0], bounds[1]), fp, lineStart, i);
+            }
+            lineStart = i + 1;
+        }
+        return out;
+    }
+
+    /**
+     * RowFingerprints.of the Character parseLine would build from buf[start, end), computed
+     * from the raw fields; BAD_INT if the line is malformed.
+     */
+    static long fingerprintLine(byte[] buf, int start, int end, int[] bounds) {
+        if (!tokenize(buf, start, end, bounds)) return BAD_INT;
+        long id = parseInt(buf, bounds[0], bounds[1]);
+        Server server = parseServer(buf, bounds[4], bounds[5]);
+        long wl = parseInt(buf, bounds[8], bounds[9]);
+        long bounty = parseInt(buf, bounds[10], bounds[11]);
+        long rep = parseInt(buf, bounds[12], bounds[13]);
+        if (id == BAD_INT || server == null || wl == BAD_INT || bounty == BAD_INT || rep == BAD_INT)
+            return BAD_INT;
+        long h = RowFingerprints.mix(RowFingerprints.SEED, (int) id);
+        h = mixText(h, buf, bounds[2], bounds[3]);
+        h = RowFingerprints.mix(h, server.ordinal());
+        h = mixText(h, buf, bounds[6], bounds[7]);
+        h = RowFingerprints.mix(h, (int) wl);
+        h = RowFingerprints.mix(h, (int) bounty);
+        h = RowFingerprints.mix(h, (int) rep);
+        h = RowFingerprints.mix(h, isTrue(buf, bounds[14], bounds[15]) ? 1 : 0);
+        long fp = RowFingerprints.finish(h);
+        return fp == BAD_INT ? fp + 1 : fp; // keep BAD_INT free as the malformed marker
+    }
+
+    private static long mixText(long h, byte[] buf, int s, int e) {
+        for (int i = s; i < e; i++) {
+            if (buf[i] < 0) return RowFingerprints.mix(h, new String(buf, s, e - s, StandardCharsets.UTF_8));
+        }
+        return RowFingerprints.mixAscii(h, buf, s, e);
+    }
+
+    /** Parse and apply the chunk's new and changed rows; mark every id it holds as seen. */
+    private static void applyChanges(ScannedChunk chunk, CharacterManager manager, BitSet seen, SyncResult total,
+                                     List<MutationBatch.Op> handleConflicts) {
+        total.malformed(chunk.malformed);
+        manager.metrics().rejected(chunk.malformed);
+        // A malformed line still says its id is in the file: keep it out of the delete pass.
+        int m = chunk.malformedIdCount;
+        manager.syncClassify(chunk.malformedIds, new long[m], m, new byte[m], seen);
+        byte[] kinds = new byte[chunk.size];
+        manager.syncClassify(chunk.ids, chunk.fingerprints, chunk.size, kinds, seen);
+
+        MutationBatch batch = MutationBatch.bestEffort();
+        int[] bounds = new int[FIELDS * 2];
+        for (int i = 0; i < chunk.size; i++) {
+            if (kinds[i] == CharacterManager.SYNC_UNCHANGED) {
+                total.unchanged(1);
+                continue;
+            }
+            Character c = parseLine(chunk.buf, chunk.starts[i], chunk.ends[i], bounds);
+            if (kinds[i] == CharacterManager.SYNC_NEW) batch.add(c); else batch.update(c);
+        }
+        if (batch.size() == 0) return;
+        BatchResult r = manager.apply(batch);
+        List<MutationBatch.Op> ops = batch.ops();
+        int[] added = new int[ops.size()];
+        int n = 0;
+        for (int i = 0; i < ops.size(); i++) {
+            if (isHandleConflict(r.get(i))) {
+                handleConflicts.add(ops.get(i));
+            } else if (r.get(i) != BatchResult.Outcome.OK) {
+                total.rejectedOne();
+            } else if (ops.get(i).kind == MutationJournal.ADD) {
+                total.insertedOne();
+                added[n++] = ops.get(i).id;
+            } else {
+                total.updatedOne();
+            }
+        }
+        // New rows are in the file too: keep them out of the final delete pass.
+        manager.syncClassify(added, new long[n], n, new byte[n], seen);
+    }
+
+    private static boolean isHandleConflict(BatchResult.Outcome o) {
+        return o == BatchResult.Outcome.DUPLICATE_HANDLE || o == BatchResult.Outcome.HANDLE_TAKEN;
+    }
+
+    /**
+     * Re-apply rows refused for a handle someone else held, now that the deletes are done
+     * and every other row is in: retry while that makes progress, then break what is left
+     * (handle cycles such as a swap) by replacing those records in one all-or-nothing batch
+     * of removes followed by adds. Rows that still conflict are rejected.
+     */
+    private static void retryHandleConflicts(List<MutationBatch.Op> conflicts, CharacterManager manager,
+                                             SyncResult total) {
+        while (!conflicts.isEmpty()) {
+            MutationBatch batch = MutationBatch.bestEffort();
+            for (MutationBatch.Op op : conflicts) {
+                if (op.kind == MutationJournal.ADD) batch.add(op.character); else batch.update(op.character);
+            }
+            BatchResult r = manager.apply(batch);
+            List<MutationBatch.Op> left = new ArrayList<>();
+            for (int i = 0; i < conflicts.size(); i++) {
+                MutationBatch.Op op = conflicts.get(i);
+                if (r.get(i) == BatchResult.Outcome.OK) {
+                    if (op.kind == MutationJournal.ADD) total.insertedOne(); else total.updatedOne();
+                } else if (isHandleConflict(r.get(i))) {
+                    left.add(op);
+                } else {
+                    total.rejectedOne();
+                }
+            }
+            if (left.size() == conflicts.size()) break;
+            conflicts = left;
+        }
+        // Only rows whose handle is held by another row still waiting here form cycles.
+        boolean dropped = true;
+        while (dropped) {
+            Set<Integer> waiting = new HashSet<>();
+            for (MutationBatch.Op op : conflicts) if (op.kind == MutationJournal.UPDATE) waiting.add(op.id);
+            List<MutationBatch.Op> cyclic = new ArrayList<>();
+            for (MutationBatch.Op op : conflicts) {
+                Optional<Character> owner = manager.findByHandle(op.character.getHandle());
+                if (owner.isPresent() && waiting.contains(owner.get().getId())) cyclic.add(op);
+                else total.rejectedOne();
+            }
+            dropped = cyclic.size() < conflicts.size();
+            conflicts = cyclic;
+        }
+        if (conflicts.isEmpty()) return;
+        MutationBatch swap = new MutationBatch();
+        for (MutationBatch.Op op : conflicts) if (op.kind == MutationJournal.UPDATE) swap.remove(op.id);
+        for (MutationBatch.Op op : conflicts) swap.add(op.character);
+        boolean committed = manager.apply(swap).isCommitted();
+        for (MutationBatch.Op op : conflicts) {
+            if (!committed) total.rejectedOne();
+            else if (op.kind == MutationJournal.ADD) total.insertedOne();
+            else total.updatedOne();
+        }
+    }
+
+    // --------------------- PARSING ---------------------
+
+    static final class ParsedChunk {
+        final List<Character> rows = new ArrayList<>();
+        int malformed;
+    }
+
+    /** Parse every complete line in buf[from, to). Blank lines are skipped, not counted. */
+    static ParsedChunk parseChunk(byte[] buf, int from, int to) {
+        ParsedChunk out = new ParsedChunk();
+        int[] bounds = new int[FIELDS * 2];
+        int lineStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && buf[i] != '\n') continue;
+            if (!isBlank(buf, lineStart, i)) {
+                Character c = parseLine(buf, lineStart, i, bounds);
+                if (c == null) out.malformed++; else out.rows.add(c);
+            }
+            lineStart = i + 1;
+        }
+        return out;
+    }
+
+    /** Parse one line from buf[start, end), or null if it is not a valid record. */
+    static Character parseLine(byte[] buf, int start, int end, int[] bounds) {
+        if (!tokenize(buf, start, end, bounds)) return null;
+
+        long id = parseInt(buf, bounds[0], bounds[1]);
+        Server server = parseServer(buf, bounds[4], bounds[5]);
+        long wl = parseInt(buf, bounds[8], bounds[9]);
+        long bounty = parseInt(buf, bounds[10], bounds[11]);
+        long rep = parseInt(buf, bounds[12], bounds[13]);
+        if (id == BAD_INT || server == null || wl == BAD_INT || bounty == BAD_INT || rep == BAD_INT)
+            return null;
+
+        String handle = new String(buf, bounds[2], bounds[3] - bounds[2], StandardCharsets.UTF_8);
+        String occ = new String(buf, bounds[6], bounds[7] - bounds[6], StandardCharsets.UTF_8);
+        boolean active = isTrue(buf, bounds[14], bounds[15]);
+        return new Character((int) id, handle, server, occ, (int) wl, (int) bounty, (int) rep, active);
+    }
+
+    /** Trimmed (start, end) of each of the FIELDS fields into bounds; false if there are too few. */
+    private static boolean tokenize(byte[] buf, int start, int end, int[] bounds) {
+        int field = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end && field < FIELDS; i++) {
+            if (i < end && buf[i] != ',') continue;
+            int s = fieldStart, e = i;
+            while (s < e && (buf[s] & 0xff) <= ' ') s++;
+            while (e > s && (buf[e - 1] & 0xff) <= ' ') e--;
+            bounds[field * 2] = s;
+            bounds[field * 2 + 1] = e;
+            field++;
+            fieldStart = i + 1;
+        }
+        return field == FIELDS;
+    }
+
+    /** Decimal int with optional sign, BAD_INT on empty, junk or overflow (like Integer.parseInt). */
+    static long parseInt(byte[] buf, int s, int e) {
+        if (s >= e) return BAD_INT;
+        boolean neg = false;
+        if (buf[s] == '-' || buf[s] == '+') {
+            neg = buf[s] == '-';
+            if (++s == e) return BAD_INT;
+        }
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return BAD_INT;
+            v = v * 10 + d;
+            if (v > (long) Integer.MAX_VALUE + 1) return BAD_INT;
+        }
+        v = neg ? -v : v;
+        return v > Integer.MAX_VALUE ? BAD_INT : v;
+    }
+
+    private static Server parseServer(byte[] buf, int s, int e) {
+        if (e - s != 2) return null;
+        int a = buf[s] & 0xdf, b = buf[s + 1] & 0xdf; // ASCII upper-case
+        if (a == 'N' && b == 'A') return Server.NA;
+        if (a == 'E' && b == 'U') return Server.EU;
+        if (a == 'A' && b == 'S') return Server.AS;
+        return null;
+    }
+
+    /** Boolean.parseBoolean semantics: "true" in any case, everything else is false. */
+    private static boolean isTrue(byte[] buf, int s, int e) {
+        return e - s == 4 && (buf[s] | 0x20) == 't' && (buf[s + 1] | 0x20) == 'r'
+                && (buf[s + 2] | 0x20) == 'u' && (buf[s + 3] | 0x20) == 'e';
+    }
+
+    private static boolean isBlank(byte[] buf, int s, int e) {
+        for (int i = s; i < e; i++) if ((buf[i] & 0xff) > ' ') return false;
+        return true;
+    }
+
+    private static int lastNewline(byte[] buf, int len) {
+        for (int i = len - 1; i >= 0; i--) if (buf[i] == '\n') return i;
+        return -1;
+    }
+
+    private static int bomLength(byte[] buf, int len) {
+        return len >= 3 && (buf[0] & 0xff) == 0xEF && (buf[1] & 0xff) == 0xBB && (buf[2] & 0xff) == 0xBF
+                ? 3 : 0;
+    }
+}
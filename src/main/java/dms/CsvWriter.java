@@ -0,0 +1,187 @@
+package dms;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class: CsvWriter
+ * Purpose: Streaming CSV encoder used by the export paths. Fields are encoded straight
+ * into one reusable buffer (a direct ByteBuffer for channels and streams, a char[] for
+ * Writers) that is handed to the sink whenever it fills, so memory stays flat no matter
+ * how many rows are written. Numbers are written digit by digit and strings are
+ * UTF-8 encoded in place, without String.valueOf or getBytes copies.
+ * Commas between fields are inserted automatically; endRow() starts the next row.
+ * flush() pushes buffered output to the sink but never closes it.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public abstract class CsvWriter implements Flushable {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final char[] digits = new char[11];
+    private boolean midRow;
+
+    public static CsvWriter to(WritableByteChannel channel) {
+        return new ChannelCsvWriter(channel);
+    }
+
+    public static CsvWriter to(OutputStream out) {
+        return new ChannelCsvWriter(Channels.newChannel(out));
+    }
+
+    public static CsvWriter to(Writer writer) {
+        return new CharCsvWriter(writer);
+    }
+
+    public CsvWriter field(String s) throws IOException {
+        separator();
+        putString(s == null ? "null" : s); // as String.join/valueOf render it
+        return this;
+    }
+
+    public CsvWriter field(int v) throws IOException {
+        separator();
+        // Fill from the right; long arithmetic keeps Integer.MIN_VALUE correct.
+        long x = v;
+        boolean negative = x < 0;
+        if (negative) x = -x;
+        int pos = digits.length;
+        do {
+            digits[--pos] = (char) ('0' + (int) (x % 10));
+            x /= 10;
+        } while (x != 0);
+        if (negative) digits[--pos] = '-';
+        for (int i = pos; i < digits.length; i++) putAscii(digits[i]);
+        return this;
+    }
+
+    /** Not on any hot path, so it goes through Long.toString. */
+    public CsvWriter field(long v) throws IOException {
+        return field(Long.toString(v));
+    }
+
+    public CsvWriter field(boolean b) throws IOException {
+        separator();
+        putString(b ? "true" : "false");
+        return this;
+    }
+
+    /** The eight fields of c in Character.fromCsv order. */
+    public CsvWriter character(Character c) throws IOException {
+        return field(c.getId()).field(c.getHandle()).field(c.getServer().name()).field(c.getOccupation())
+                .field(c.getWantedLevel()).field(c.getBountyCents()).field(c.getReputation()).field(c.isActive());
+    }
+
+    /** End the current row (writes the line break). */
+    public CsvWriter endRow() throws IOException {
+        putAscii('\n');
+        midRow = false;
+        return this;
+    }
+
+    private void separator() throws IOException {
+        if (midRow) putAscii(',');
+        midRow = true;
+    }
+
+    abstract void putAscii(char c) throws IOException;
+
+    abstract void putString(String s) throws IOException;
+
+    // --------------------- SINKS ---------------------
+
+    /** Byte sink: UTF-8 into a reusable direct buffer drained to a channel. */
+    static final class ChannelCsvWriter extends CsvWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelCsvWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        void putAscii(char c) throws IOException {
+            if (!buf.hasRemaining()) drain();
+            buf.put((byte) c);
+        }
+
+        @Override
+        void putString(String s) throws IOException {
+            for (int i = 0, n = s.length(); i < n; i++) {
+                if (buf.remaining() < 4) drain();
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf.put((byte) c);
+                } else if (c < 0x800) {
+                    buf.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+                } else if (java.lang.Character.isHighSurrogate(c) && i + 1 < n
+                        && java.lang.Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = java.lang.Character.toCodePoint(c, s.charAt(++i));
+                    buf.put((byte) (0xF0 | (cp >> 18))).put((byte) (0x80 | ((cp >> 12) & 0x3F)))
+                            .put((byte) (0x80 | ((cp >> 6) & 0x3F))).put((byte) (0x80 | (cp & 0x3F)));
+                } else if (java.lang.Character.isSurrogate(c)) {
+                    buf.put((byte) '?'); // unpaired surrogate, as String.getBytes would do
+                } else {
+                    buf.put((byte) (0xE0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                            .put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+    }
+
+    /** Char sink: a reusable char[] handed to a Writer in whole blocks. */
+    static final class CharCsvWriter extends CsvWriter {
+        private final Writer writer;
+        private final char[] buf = new char[BUFFER_SIZE];
+        private int len;
+
+        CharCsvWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void putAscii(char c) throws IOException {
+            if (len == buf.length) drain();
+            buf[len++] = c;
+        }
+
+        @Override
+        void putString(String s) throws IOException {
+            int off = 0, n = s.length();
+            while (off < n) {
+                if (len == buf.length) drain();
+                int k = Math.min(n - off, buf.length - len);
+                s.getChars(off, off + k, buf, len);
+                len += k;
+                off += k;
+            }
+        }
+
+        private void drain() throws IOException {
+            writer.write(buf, 0, len);
+            len = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            writer.flush();
+        }
+    }
+}
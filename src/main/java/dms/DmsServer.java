@@ -0,0 +1,269 @@
+package dms;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class: DmsServer
+ * Purpose: Headless network mode. Serves one CharacterManager over a line-based TCP
+ * protocol, one virtual thread per connection, so many operators can work at once.
+ * Requests may be pipelined: replies come back in request order and are only flushed
+ * once every request already received has been answered.
+ *
+ * Requests (one per line, UTF-8):
+ *   PING | SIZE | ACTIVE | QUIT  (SIZE answers with one row holding the count)
+ *   STATS                      (op,count,mean,p50,p99,p999,max in microseconds)
+ *   ADD csv | UPDATE csv       (csv as in Character.fromCsv)
+ *   REMOVE id | GET id | HANDLE name
+ *   SEARCH text                (up to 20 partial/fuzzy handle matches, best first)
+ *   TOP n                      (ReportGenerator CSV rows, score last)
+ *   RANK id [server]           (one row: 1-based rank, or -1 if absent / on another server)
+ *   PAGE from count [server]   (like TOP, ranks from..from+count-1)
+ *   LEADERS n [server]         (top n as Character.fromCsv rows with the score appended)
+ *   AGG [server]               (one row: count,active,bountyCents,reputationSum,wanted levels...)
+ *   QUERY key=value ...        (server, active, occupation, minWanted, maxWanted,
+ *                               minBounty, maxBounty, minRep, maxRep, limit)
+ * Replies: "OK", "OK n" followed by exactly n CSV rows, or "ERR message" (the connection
+ * stays open after an ERR, including "ERR journal write failed" from a durable store).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class DmsServer implements Closeable {
+    private final CharacterManager manager;
+    private final ReportGenerator reporter = new ReportGenerator();
+    private final ServerSocket socket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    private DmsServer(CharacterManager manager, ServerSocket socket) {
+        this.manager = manager;
+        this.socket = socket;
+        this.acceptor = Thread.ofPlatform().name("dms-accept").daemon().unstarted(this::acceptLoop);
+    }
+
+    /** Listen on localhost:port (0 picks a free port) and start accepting connections. */
+    public static DmsServer start(CharacterManager manager, int port) throws IOException {
+        return start(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public static DmsServer start(CharacterManager manager, InetSocketAddress address) throws IOException {
+        ServerSocket ss = new ServerSocket();
+        ss.setReuseAddress(true);
+        ss.bind(address, 1024);
+        DmsServer server = new DmsServer(manager, ss);
+        server.acceptor.start();
+        return server;
+    }
+
+    public int getPort() { return socket.getLocalPort(); }
+
+    /** Block until the server is closed. */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    private void acceptLoop() {
+        while (!socket.isClosed()) {
+            try {
+                Socket s = socket.accept();
+                s.setTcpNoDelay(true);
+                open.add(s);
+                connections.execute(() -> serve(s));
+            } catch (IOException e) {
+                if (socket.isClosed()) return;
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        try (s;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+            CsvWriter out = CsvWriter.to(s.getOutputStream());
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equalsIgnoreCase("QUIT")) break;
+                handle(line, out);
+                // Pipelining: keep answering while more requests are already buffered.
+                if (!in.ready()) out.flush();
+            }
+            out.flush();
+        } catch (SocketException e) {
+            // client went away
+        } catch (IOException e) {
+            System.err.println("Connection error: " + e.getMessage());
+        } finally {
+            open.remove(s);
+        }
+    }
+
+    /** Execute one request line and write its reply. */
+    void handle(String line, CsvWriter out) throws IOException {
+        String cmd = line.trim();
+        int sp = cmd.indexOf(' ');
+        String verb = (sp < 0 ? cmd : cmd.substring(0, sp)).toUpperCase();
+        String arg = sp < 0 ? "" : cmd.substring(sp + 1).trim();
+        try {
+            switch (verb) {
+                case "PING" -> ok(out);
+                case "SIZE" -> {
+                    status(out, "OK 1");
+                    out.field(manager.size()).endRow();
+                }
+                case "ADD" -> mutation(out, parse(arg), manager::add, "invalid or duplicate");
+                case "UPDATE" -> mutation(out, parse(arg), manager::update, "not found, invalid or handle taken");
+                case "REMOVE" -> {
+                    if (manager.remove(Integer.parseInt(arg))) ok(out); else status(out, "ERR not found");
+                }
+                case "GET" -> single(out, manager.findById(Integer.parseInt(arg)));
+                case "HANDLE" -> single(out, manager.findByHandle(arg));
+                case "SEARCH" -> rows(out, manager.searchHandles(arg, 20));
+                case "ACTIVE" -> rows(out, manager.listActive());
+                case "STATS" -> {
+                    List<String> rows = manager.metrics().rows();
+                    status(out, "OK " + rows.size());
+                    for (String row : rows) out.field(row).endRow();
+                }
+                case "QUERY" -> rows(out, manager.query(query(arg)));
+                case "TOP" -> entries(out, reporter.topN(Integer.parseInt(arg), manager));
+                case "RANK" -> {
+                    String[] a = args(arg, 1);
+                    int rank = manager.rankOf(Integer.parseInt(a[0]), server(a, 1));
+                    status(out, "OK 1");
+                    out.field(rank).endRow();
+                }
+                case "PAGE" -> {
+                    String[] a = args(arg, 2);
+                    entries(out, manager.rankPage(Integer.parseInt(a[0]), Integer.parseInt(a[1]), server(a, 2)));
+                }
+                case "LEADERS" -> {
+                    String[] a = args(arg, 1);
+                    List<ThreatEntry> top = manager.rankPage(1, Integer.parseInt(a[0]), server(a, 1));
+                    status(out, "OK " + top.size());
+                    for (ThreatEntry te : top) out.character(te.getCharacter()).field(te.getThreatScore()).endRow();
+                }
+                case "AGG" -> {
+                    AggregateStats st = manager.aggregate(server(args(arg, 0), 0));
+                    status(out, "OK 1");
+                    out.field(st.getCount()).field(st.getActive()).field(st.getTotalBountyCents()).field(st.getReputationSum());
+                    for (long w : st.getWantedLevelCounts()) out.field(w);
+                    out.endRow();
+                }
+                default -> status(out, "ERR unknown command: " + verb);
+            }
+        } catch (NumberFormatException e) {
+            status(out, "ERR bad number: " + arg);
+        } catch (IllegalArgumentException e) {
+            status(out, "ERR " + e.getMessage());
+        } catch (UncheckedIOException e) { // the journal of a --data store failed; memory is unchanged
+            status(out, "ERR journal write failed");
+        }
+    }
+
+    private interface Mutation {
+        boolean apply(Character c);
+    }
+
+    private static void mutation(CsvWriter out, Character c, Mutation m, String failure) throws IOException {
+        if (m.apply(c)) ok(out); else status(out, "ERR " + failure);
+    }
+
+    private static Character parse(String csv) {
+        Character c = Character.fromCsv(csv);
+        if (c == null) throw new IllegalArgumentException("malformed character: " + csv);
+        return c;
+    }
+
+    static CharacterQuery query(String arg) {
+        CharacterQuery q = new CharacterQuery();
+        for (String term : arg.split("\\s+")) {
+            if (term.isEmpty()) continue;
+            int eq = term.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("expected key=value: " + term);
+            String key = term.substring(0, eq), value = term.substring(eq + 1);
+            switch (key) {
+                case "server" -> q.server(Server.tryParse(value)
+                        .orElseThrow(() -> new IllegalArgumentException("unknown server: " + value)));
+                case "active" -> q.active(Boolean.parseBoolean(value));
+                case "occupation" -> q.occupation(value);
+                case "minWanted" -> q.minWantedLevel(Integer.parseInt(value));
+                case "maxWanted" -> q.maxWantedLevel(Integer.parseInt(value));
+                case "minBounty" -> q.minBountyCents(Integer.parseInt(value));
+                case "maxBounty" -> q.maxBountyCents(Integer.parseInt(value));
+                case "minRep" -> q.minReputation(Integer.parseInt(value));
+                case "maxRep" -> q.maxReputation(Integer.parseInt(value));
+                case "limit" -> q.limit(Integer.parseInt(value));
+                default -> throw new IllegalArgumentException("unknown query key: " + key);
+            }
+        }
+        return q;
+    }
+
+    /** arg split on whitespace; at least required and at most required + 1 (server) words. */
+    private static String[] args(String arg, int required) {
+        String[] a = arg.isEmpty() ? new String[0] : arg.split("\\s+");
+        if (a.length < required || a.length > required + 1) throw new IllegalArgumentException("wrong arguments: " + arg);
+        return a;
+    }
+
+    /** Optional server at a[i]; null when absent. */
+    private static Server server(String[] a, int i) {
+        if (a.length <= i) return null;
+        return Server.tryParse(a[i]).orElseThrow(() -> new IllegalArgumentException("unknown server: " + a[i]));
+    }
+
+    private static void entries(CsvWriter out, List<ThreatEntry> entries) throws IOException {
+        status(out, "OK " + entries.size());
+        for (ThreatEntry te : entries) {
+            ReportGenerator.writeRow(te, out);
+            out.endRow();
+        }
+    }
+
+    private static void single(CsvWriter out, Optional<Character> c) throws IOException {
+        rows(out, c.map(List::of).orElse(List.of()));
+    }
+
+    private static void rows(CsvWriter out, List<Character> list) throws IOException {
+        status(out, "OK " + list.size());
+        for (Character c : list) out.character(c).endRow();
+    }
+
+    private static void ok(CsvWriter out) throws IOException {
+        status(out, "OK");
+    }
+
+    private static void status(CsvWriter out, String text) throws IOException {
+        out.field(text).endRow();
+    }
+
+    /** Stop accepting, drop open connections and wait for their threads to finish. */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        for (Socket s : open) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+        }
+        connections.close();
+    }
+}
@@ -0,0 +1,211 @@
+package dms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class: HandleSearchIndex
+ * Purpose: Partial and typo-tolerant handle search. Handles are indexed by their
+ * case-folded key (CharacterManager.handleKey) twice:
+ * - a sorted map key -> row, for prefix lookups in O(log n + matches)
+ * - a trigram index: every 3-char window of "\0key\0" maps to a posting list of rows.
+ *   A query's trigrams vote for candidate rows, which are then verified (substring) and
+ *   scored by Dice similarity of the trigram sets, so "Dofnita" still finds "Doofnita".
+ * Postings are unsorted int arrays with swap-remove; each row remembers its position in
+ * each of its postings, so add, update and remove cost O(handle length).
+ * Keys come from the store (handleKeyAt), so the heap engine's key Strings are shared.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class HandleSearchIndex implements CharacterIndex {
+    /** Fuzzy matches below this Dice similarity are dropped. */
+    static final double MIN_SIMILARITY = 0.3;
+
+    /** A ranked search hit; lower rank classes sort first. */
+    static final class Hit implements Comparable<Hit> {
+        static final int EXACT = 0, PREFIX = 1, SUBSTRING = 2, FUZZY = 3;
+
+        final int row;
+        final int kind;
+        final double similarity;
+        final String key;
+
+        Hit(int row, int kind, double similarity, String key) {
+            this.row = row;
+            this.kind = kind;
+            this.similarity = similarity;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Hit o) {
+            if (kind != o.kind) return Integer.compare(kind, o.kind);
+            if (similarity != o.similarity) return Double.compare(o.similarity, similarity);
+            if (key.length() != o.key.length()) return Integer.compare(key.length(), o.key.length());
+            return key.compareTo(o.key);
+        }
+    }
+
+    private static final class Posting {
+        int[] rows = new int[4];
+        int size;
+    }
+
+    private final CharacterStore store;
+    private final TreeMap<String, Integer> byKey = new TreeMap<>();
+    private final Map<Long, Posting> postings = new HashMap<>();
+    private String[] keys = new String[16];
+    /** Per row: its distinct trigrams (sorted) and its position in each one's posting. */
+    private long[][] grams = new long[16][];
+    private int[][] positions = new int[16][];
+
+    HandleSearchIndex(CharacterStore store) {
+        this.store = store;
+    }
+
+    // --------------------- MAINTENANCE ---------------------
+
+    @Override
+    public void added(int row, Character c) {
+        String key = store.handleKeyAt(row);
+        if (row >= keys.length) {
+            int cap = Math.max(row + 1, keys.length * 2);
+            keys = Arrays.copyOf(keys, cap);
+            grams = Arrays.copyOf(grams, cap);
+            positions = Arrays.copyOf(positions, cap);
+        }
+        keys[row] = key;
+        byKey.put(key, row);
+        long[] g = trigrams(key);
+        int[] pos = new int[g.length];
+        for (int i = 0; i < g.length; i++) {
+            Posting p = postings.computeIfAbsent(g[i], k -> new Posting());
+            if (p.size == p.rows.length) p.rows = Arrays.copyOf(p.rows, p.size * 2);
+            pos[i] = p.size;
+            p.rows[p.size++] = row;
+        }
+        grams[row] = g;
+        positions[row] = pos;
+    }
+
+    @Override
+    public void updated(int row, Character before, Character after) {
+        if (store.handleKeyAt(row).equals(keys[row])) return;
+        removed(row, before);
+        added(row, after);
+    }
+
+    @Override
+    public void removed(int row, Character before) {
+        byKey.remove(keys[row]);
+        long[] g = grams[row];
+        int[] pos = positions[row];
+        for (int i = 0; i < g.length; i++) {
+            Posting p = postings.get(g[i]);
+            int last = p.rows[--p.size];
+            if (last != row) {
+                // Move the last entry into the hole and tell its row where it went.
+                p.rows[pos[i]] = last;
+                positions[last][Arrays.binarySearch(grams[last], g[i])] = pos[i];
+            }
+            if (p.size == 0) postings.remove(g[i]);
+        }
+        keys[row] = null;
+        grams[row] = null;
+        positions[row] = null;
+    }
+
+    @Override
+    public void cleared() {
+        byKey.clear();
+        postings.clear();
+        Arrays.fill(keys, null);
+        Arrays.fill(grams, null);
+        Arrays.fill(positions, null);
+    }
+
+    // --------------------- SEARCH ---------------------
+
+    /** Rows whose handle starts with prefix (case-insensitive), in key order, at most limit. */
+    int[] prefix(String prefix, int limit) {
+        if (limit <= 0) return new int[0];
+        String p = CharacterManager.handleKey(prefix);
+        int[] out = new int[Math.min(limit, byKey.size())];
+        int n = 0;
+        for (Map.Entry<String, Integer> e : byKey.tailMap(p, true).entrySet()) {
+            if (n == out.length || !e.getKey().startsWith(p)) break;
+            out[n++] = e.getValue();
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Ranked matches for a partial or misspelled handle: exact, then prefix, then substring,
+     * then fuzzy (by similarity); ties go to the shorter, then alphabetically first handle.
+     * Queries shorter than 3 characters only match by prefix.
+     */
+    List<Hit> search(String query, int limit) {
+        String q = CharacterManager.handleKey(query);
+        List<Hit> hits = new ArrayList<>();
+        if (q.isEmpty() || limit <= 0) return hits;
+
+        // Prefix matches are found directly; every one of them also beats any fuzzy match.
+        for (int row : prefix(q, limit)) {
+            hits.add(new Hit(row, keys[row].length() == q.length() ? Hit.EXACT : Hit.PREFIX, 1, keys[row]));
+        }
+        if (q.length() >= 3) {
+            long[] qg = trigrams(q);
+            IntIntMap votes = new IntIntMap();
+            for (long g : qg) {
+                Posting p = postings.get(g);
+                if (p == null) continue;
+                for (int i = 0; i < p.size; i++) {
+                    int key = p.rows[i] + 1; // IntIntMap reserves key 0
+                    int v = votes.get(key);
+                    votes.put(key, v == IntIntMap.MISSING ? 1 : v + 1);
+                }
+            }
+            // Walk the same postings again to verify and score each voted row exactly once.
+            for (long g : qg) {
+                Posting p = postings.get(g);
+                if (p == null) continue;
+                for (int i = 0; i < p.size; i++) {
+                    int row = p.rows[i];
+                    int common = votes.remove(row + 1);
+                    if (common == IntIntMap.MISSING) continue; // already scored
+                    String key = keys[row];
+                    if (key.startsWith(q)) continue;          // already a prefix hit
+                    double dice = 2.0 * common / (qg.length + grams[row].length);
+                    if (key.contains(q)) hits.add(new Hit(row, Hit.SUBSTRING, dice, key));
+                    else if (dice >= MIN_SIMILARITY) hits.add(new Hit(row, Hit.FUZZY, dice, key));
+                }
+            }
+        }
+        hits.sort(null);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /** Distinct trigrams of "\0key\0", sorted; each packs three chars into one long. */
+    static long[] trigrams(String key) {
+        int n = key.length() + 2;
+        if (n < 3) return new long[0];
+        long[] out = new long[n - 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ((long) at(key, i - 1) << 32) | ((long) at(key, i) << 16) | at(key, i + 1);
+        }
+        Arrays.sort(out);
+        int d = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (d == 0 || out[i] != out[d - 1]) out[d++] = out[i];
+        }
+        return Arrays.copyOf(out, d);
+    }
+
+    private static char at(String key, int i) {
+        return i < 0 || i >= key.length() ? '\0' : key.charAt(i);
+    }
+}
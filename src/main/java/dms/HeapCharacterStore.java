@@ -0,0 +1,137 @@
+package dms;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class: HeapCharacterStore
+ * Purpose: Default CharacterStore - one Character object per row, with a primitive
+ * id -> row map and a ConcurrentHashMap on the case-folded handle. Rows hold private
+ * copies that are never mutated; update swaps in a new copy, so a reader holding an old
+ * row object always sees a whole record. Each row's occupation is also kept as its code
+ * in the store's reference-counted dictionary (occ), so records share one String per
+ * distinct value and occupation filters compare ints.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class HeapCharacterStore implements CharacterStore {
+    private Character[] rows = new Character[16];
+    private String[] keys = new String[16];
+    private int[] occ = new int[16];
+    private int rowLimit;
+    private int[] free = new int[16];
+    private int freeCount;
+    private final IntIntMap ids = new IntIntMap();
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private StringDictionary occupations = new StringDictionary();
+
+    @Override public int size() { return ids.size(); }
+
+    @Override public int rowOf(int id) { return ids.get(id); }
+
+    @Override
+    public int rowOfHandle(String handle) {
+        Integer row = handles.get(CharacterManager.handleKey(handle));
+        return row == null ? -1 : row;
+    }
+
+    @Override
+    public int insert(Character c) {
+        int row;
+        if (freeCount > 0) {
+            row = free[--freeCount];
+        } else {
+            if (rowLimit == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                occ = Arrays.copyOf(occ, occ.length * 2);
+            }
+            row = rowLimit++;
+        }
+        rows[row] = stored(row, c);
+        keys[row] = CharacterManager.handleKey(c.getHandle());
+        ids.put(c.getId(), row);
+        handles.put(keys[row], row);
+        return row;
+    }
+
+    @Override
+    public void update(int row, Character updated) {
+        handles.remove(keys[row]);
+        int old = occ[row];
+        rows[row] = stored(row, updated);
+        occupations.release(old);
+        keys[row] = CharacterManager.handleKey(updated.getHandle());
+        handles.put(keys[row], row);
+    }
+
+    /** The private copy kept in row, its occupation acquired from the dictionary. */
+    private Character stored(int row, Character c) {
+        occ[row] = occupations.acquire(c.getOccupation());
+        Character copy = c.copy();
+        copy.setOccupation(occupations.decode(occ[row]));
+        return copy;
+    }
+
+    @Override
+    public void delete(int row) {
+        Character c = rows[row];
+        ids.remove(c.getId());
+        handles.remove(keys[row]);
+        occupations.release(occ[row]);
+        rows[row] = null;
+        keys[row] = null;
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = row;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(rows, 0, rowLimit, null);
+        Arrays.fill(keys, 0, rowLimit, null);
+        rowLimit = 0;
+        freeCount = 0;
+        ids.clear();
+        handles.clear();
+        occupations = new StringDictionary();
+    }
+
+    @Override
+    public int nextRow(int from) {
+        for (int r = Math.max(from, 0); r < rowLimit; r++) if (rows[r] != null) return r;
+        return -1;
+    }
+
+    @Override
+    public int nextActiveRow(int from) {
+        for (int r = Math.max(from, 0); r < rowLimit; r++) {
+            if (rows[r] != null && rows[r].isActive()) return r;
+        }
+        return -1;
+    }
+
+    @Override public int rowLimit() { return rowLimit; }
+
+    @Override
+    public void fillBatch(int from, int to, ScoringFormula.Batch batch) {
+        for (int r = from; r < to; r++) {
+            Character c = rows[r];
+            if (c == null) batch.live[r - from] = false;
+            else batch.set(r - from, c.getWantedLevel(), c.getBountyCents(), c.getReputation(), c.isActive());
+        }
+        batch.setSize(to - from);
+    }
+
+    @Override public Character get(int row) { return rows[row].copy(); }
+    @Override public Character peek(int row) { return rows[row]; }
+    @Override public int idAt(int row) { return rows[row].getId(); }
+    @Override public Server serverAt(int row) { return rows[row].getServer(); }
+    @Override public int wantedLevelAt(int row) { return rows[row].getWantedLevel(); }
+    @Override public int bountyCentsAt(int row) { return rows[row].getBountyCents(); }
+    @Override public int reputationAt(int row) { return rows[row].getReputation(); }
+    @Override public boolean activeAt(int row) { return rows[row].isActive(); }
+    @Override public String handleKeyAt(int row) { return keys[row]; }
+    @Override public int occupationCodeAt(int row) { return occ[row]; }
+    @Override public StringDictionary occupations() { return occupations; }
+}
@@ -0,0 +1,101 @@
+package dms;
+
+import java.util.Arrays;
+
+/**
+ * Class: IntIntMap
+ * Purpose: Open-addressing int -> int hash map (linear probing, backward-shift delete)
+ * used for id -> row indexes without boxing. Key 0 is reserved as the empty marker,
+ * which is safe because character ids are always positive.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class IntIntMap {
+    static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    IntIntMap() { this(16); }
+
+    IntIntMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[cap];
+        values = new int[cap];
+        mask = cap - 1;
+    }
+
+    int size() { return size; }
+
+    int get(int key) {
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) return values[i];
+            if (k == 0) return MISSING;
+        }
+    }
+
+    /** Insert or overwrite; returns the previous value or MISSING. */
+    int put(int key, int value) {
+        if (key == 0) throw new IllegalArgumentException("key 0 is reserved");
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                int old = values[i];
+                values[i] = value;
+                return old;
+            }
+            if (k == 0) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 2 > keys.length) grow();
+                return MISSING;
+            }
+        }
+    }
+
+    /** Remove key; returns its value or MISSING. */
+    int remove(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == 0) return MISSING;
+            i = (i + 1) & mask;
+        }
+        int old = values[i];
+        // Backward-shift the rest of the probe chain so lookups never need tombstones.
+        for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+        size--;
+        return old;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys, oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private static int mix(int x) {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+}
@@ -0,0 +1,34 @@
+package dms;
+
+/**
+ * Class: JournalConfig
+ * Purpose: Durability settings for a MutationJournal.
+ * - syncEveryOps: fsync once this many mutations are buffered (1 = fsync every mutation)
+ * - syncEveryMillis: background fsync interval for whatever is buffered (0 = off)
+ * - compactAfterBytes: checkpoint into a snapshot once the journal grows past this size (0 = never)
+ * At most syncEveryOps mutations / syncEveryMillis of work can be lost in a crash.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class JournalConfig {
+    private final int syncEveryOps;
+    private final long syncEveryMillis;
+    private final long compactAfterBytes;
+
+    public JournalConfig(int syncEveryOps, long syncEveryMillis, long compactAfterBytes) {
+        if (syncEveryOps < 1) throw new IllegalArgumentException("syncEveryOps must be >= 1");
+        if (syncEveryMillis < 0 || compactAfterBytes < 0) throw new IllegalArgumentException("negative limit");
+        this.syncEveryOps = syncEveryOps;
+        this.syncEveryMillis = syncEveryMillis;
+        this.compactAfterBytes = compactAfterBytes;
+    }
+
+    /** Group commit of 256 ops or 10 ms, compaction at 64 MiB of journal. */
+    public static JournalConfig defaults() {
+        return new JournalConfig(256, 10, 64L << 20);
+    }
+
+    public int getSyncEveryOps() { return syncEveryOps; }
+    public long getSyncEveryMillis() { return syncEveryMillis; }
+    public long getCompactAfterBytes() { return compactAfterBytes; }
+}
@@ -0,0 +1,99 @@
+package dms;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class: LatencyHistogram
+ * Purpose: Lock-free HDR-style latency histogram in nanoseconds. Buckets are log-linear:
+ * every power of two is split into 16 equal sub-buckets, so any recorded value is
+ * reported within ~6% of its true value while the whole range up to ~18 minutes fits in
+ * a few hundred counters. Every call is counted in a striped LongAdder; only the calls
+ * OperationMetrics samples are timed into the buckets, so concurrent callers rarely
+ * write the same cache line. Mean, percentiles and max come from the timed samples
+ * (max at bucket precision, like the percentiles).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40; // 2^40 ns ~ 18 minutes; longer values are clamped
+    static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+
+    static int bucket(long nanos) {
+        if (nanos < SUB) return (int) Math.max(nanos, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exp > MAX_EXP) return BUCKETS - 1;
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /** Highest value that falls into bucket b. */
+    static long highest(int b) {
+        if (b < SUB) return b;
+        int exp = b / SUB + SUB_BITS - 1;
+        long width = 1L << (exp - SUB_BITS);
+        return ((long) (SUB + b % SUB) << (exp - SUB_BITS)) + width - 1;
+    }
+
+    /** Count a call that was not timed. */
+    void count() {
+        calls.increment();
+    }
+
+    /** Count a call and add its latency to the samples. */
+    void record(long nanos) {
+        calls.increment();
+        counts.getAndIncrement(bucket(nanos));
+        sum.add(nanos);
+    }
+
+    /** Every call, timed or not. */
+    long getCount() {
+        return calls.sum();
+    }
+
+    private long samples() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+        return n;
+    }
+
+    long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) != 0) return highest(i);
+        }
+        return 0;
+    }
+
+    double getMean() {
+        long n = samples();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Value at percentile p (0..100): the highest value of the bucket holding that rank. */
+    long percentile(double p) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return highest(i);
+        }
+        return highest(BUCKETS - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        sum.reset();
+        calls.reset();
+    }
+}
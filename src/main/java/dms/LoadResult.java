@@ -0,0 +1,39 @@
+package dms;
+
+/**
+ * Class: LoadResult
+ * Purpose: Structured outcome of a bulk import - how many rows were added and why the
+ * rest were rejected (unparseable line, failed validation, or duplicate id/handle).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class LoadResult {
+    private int added;
+    private int malformed;
+    private int invalid;
+    private int duplicate;
+
+    public int getAdded() { return added; }
+    public int getMalformed() { return malformed; }
+    public int getInvalid() { return invalid; }
+    public int getDuplicate() { return duplicate; }
+    public int getRejected() { return malformed + invalid + duplicate; }
+
+    void addedOne() { added++; }
+    void malformed(int n) { malformed += n; }
+    void invalidOne() { invalid++; }
+    void duplicateOne() { duplicate++; }
+
+    void merge(LoadResult other) {
+        added += other.added;
+        malformed += other.malformed;
+        invalid += other.invalid;
+        duplicate += other.duplicate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d added, %d rejected (%d malformed, %d invalid, %d duplicate)",
+                added, getRejected(), malformed, invalid, duplicate);
+    }
+}
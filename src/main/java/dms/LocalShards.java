@@ -0,0 +1,97 @@
+package dms;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class: LocalShards
+ * Purpose: Sharded deployment on one host: starts n shard processes, each a JVM running
+ * this application's headless mode (Main --serve 0) on its own free port, and connects a
+ * ShardRouter to them. Used by the multi-process tests and the shard-scaling benchmark;
+ * close() stops every process.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class LocalShards implements Closeable {
+    private static final Pattern LISTENING = Pattern.compile("Serving on localhost:(\\d+)");
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final List<Process> processes = new ArrayList<>();
+    private final int[] ports;
+
+    private LocalShards(int n) {
+        ports = new int[n];
+    }
+
+    /** Start n shard JVMs with the current classpath; jvmOptions (e.g. -Xmx1g) go to each. */
+    public static LocalShards start(int n, String... jvmOptions) throws IOException {
+        LocalShards shards = new LocalShards(n);
+        try {
+            for (int i = 0; i < n; i++) shards.processes.add(launch(jvmOptions));
+            for (int i = 0; i < n; i++) shards.ports[i] = awaitPort(shards.processes.get(i));
+        } catch (IOException | RuntimeException e) {
+            shards.close();
+            throw e;
+        }
+        return shards;
+    }
+
+    public int[] getPorts() { return ports.clone(); }
+
+    /** A new router over these shards, in start order. */
+    public ShardRouter router() {
+        return ShardRouter.connect(ports);
+    }
+
+    private static Process launch(String[] jvmOptions) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.addAll(List.of(jvmOptions));
+        cmd.addAll(List.of("-cp", System.getProperty("java.class.path"), Main.class.getName(), "--serve", "0"));
+        return new ProcessBuilder(cmd).redirectErrorStream(true).start();
+    }
+
+    /** Read the shard's output up to its "Serving on" line; keep draining it afterwards. */
+    private static int awaitPort(Process p) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = out.readLine()) != null) {
+            Matcher m = LISTENING.matcher(line);
+            if (!m.find()) continue;
+            Thread.ofVirtual().start(() -> {
+                try {
+                    while (out.readLine() != null) {
+                        // discard
+                    }
+                } catch (IOException ignored) {
+                    // process ended
+                }
+            });
+            return Integer.parseInt(m.group(1));
+        }
+        throw new IOException("shard process exited before listening");
+    }
+
+    /** Stop every shard process and wait for it to exit. */
+    @Override
+    public void close() {
+        for (Process p : processes) p.destroy();
+        for (Process p : processes) {
+            try {
+                if (!p.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) p.destroyForcibly();
+            } catch (InterruptedException e) {
+                p.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,33 +1,97 @@
 package dms;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
+import javax.management.JMException;
 
 /**
  * Class: Main
  * Purpose: Console entry point for the Game Character DMS.
- * - Menu for CRUD + search + Top-N
+ * - Menu for CRUD + search + Top-N + server summary + snapshot save/load + CSV export + stats
+ * - Operation metrics published over JMX (dms:type=CharacterManager,name=main)
+ * - Optional durable mode (--data dir): journaled mutations, recovered on restart
+ * - Optional headless network mode (--serve port): see DmsServer
+ * - Optional custom threat score (--formula expr): see ScoringFormula
+ * - Optional batch mode (--script file, --exec command): see ScriptRunner
  * - Safe input handling (won’t crash on bad input)
  * - Early duplicate checks for Add
  * - Validates ID exists first for Update/Remove (per instructor feedback)
- * - Loads CSV by reading a file and using Character.fromCsv
+ * - Loads CSV through the streaming bulk loader (CsvLoader)
  * Author: Zekia Bey
  * Date: October 2025
  */
 public class Main {
 
     private static final Scanner IN = new Scanner(System.in);
-    private static final CharacterManager manager = new CharacterManager();
+    private static CharacterManager manager = new CharacterManager();
     private static final ReportGenerator reporter = new ReportGenerator();
 
     public static void main(String[] args) {
+        // Optional: java -jar gta-dms.jar [--columnar] [--data dir] [--snapshot data.snap] [--formula expr] [--serve port]
+        //                 [--script file|-] [--exec "command"]...   batch mode, see ScriptRunner
+        StorageEngine engine = StorageEngine.HEAP;
+        String dataDir = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--columnar")) engine = StorageEngine.COLUMNAR;
+            else if (args[i].equals("--data") && i + 1 < args.length) dataDir = args[++i];
+        }
+        if (dataDir != null) {
+            try {
+                manager = CharacterManager.open(Path.of(dataDir), engine, JournalConfig.defaults());
+                System.out.printf("Recovered %d characters from %s.%n", manager.size(), dataDir);
+            } catch (IOException ex) {
+                System.out.println("Error opening data directory: " + ex.getMessage());
+                return;
+            }
+        } else {
+            manager = new CharacterManager(engine);
+        }
+        registerMetrics();
+        int port = -1;
+        String script = null;
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--snapshot")) loadSnapshot(args[++i]);
+            else if (args[i].equals("--formula")) setFormula(args[++i]);
+            else if (args[i].equals("--serve")) {
+                port = parsePort(args[++i]);
+                if (port < 0) {
+                    closeManager();
+                    System.exit(1);
+                }
+            }
+            else if (args[i].equals("--script")) script = args[++i];
+            else if (args[i].equals("--exec")) commands.add(args[++i]);
+        }
+        if (port >= 0) {
+            serve(port);
+            return;
+        }
+        if (script != null || !commands.isEmpty()) {
+            int failed = runBatch(script, commands);
+            closeManager();
+            if (failed != 0) System.exit(1);
+            return;
+        }
+
         while (true) {
             printMenu();
-            int choice = readInt("Choose: ", 0, 7);
+            int choice = readInt("Choose: ", 0, 13);
             switch (choice) {
                 case 1 -> loadCsv();
                 case 2 -> addCharacter();
@@ -36,8 +100,83 @@ public class Main {
                 case 5 -> listActive();
                 case 6 -> search();
                 case 7 -> topN();
-                case 0 -> { System.out.println("Goodbye!"); return; }
+                case 8 -> saveSnapshot();
+                case 9 -> loadSnapshot();
+                case 10 -> exportCsv();
+                case 11 -> stats();
+                case 12 -> serverSummary();
+                case 13 -> statHistory();
+                case 0 -> { closeManager(); System.out.println("Goodbye!"); return; }
+            }
+        }
+    }
+
+    /** Score Most Wanted reports with a custom formula, e.g. "wantedLevel * 500 + bountyCents / 100". */
+    private static void setFormula(String expression) {
+        try {
+            manager.setScoringFormula(ScoringFormula.parse(expression));
+            System.out.println("Threat score: " + expression);
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Ignoring --formula: " + ex.getMessage());
+        }
+    }
+
+    /** The --serve port, or -1 (after printing why) if it is not a number in 0..65535. */
+    private static int parsePort(String arg) {
+        try {
+            int port = Integer.parseInt(arg);
+            if (port >= 0 && port <= 65535) return port;
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        System.out.println("Error: --serve needs a port number (0-65535), got: " + arg);
+        return -1;
+    }
+
+    /**
+     * Batch mode: run the script (- for stdin), then the --exec commands, with no prompts.
+     * Data goes to stdout through one buffered CsvWriter on the raw file descriptor, not the
+     * line-flushing System.out; the per-command log goes to stderr. Returns failed commands.
+     */
+    private static int runBatch(String script, List<String> commands) {
+        CsvWriter out = CsvWriter.to(new FileOutputStream(FileDescriptor.out).getChannel());
+        Writer log = new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+        ScriptRunner runner = new ScriptRunner(manager, out, log);
+        int failed = 0;
+        try {
+            if (script != null) {
+                try (BufferedReader in = script.equals("-")
+                        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                        : Files.newBufferedReader(Path.of(script))) {
+                    failed += runner.run(in);
+                }
             }
+            if (!commands.isEmpty()) failed += runner.run(commands);
+        } catch (IOException ex) {
+            System.err.println("Error running script: " + ex.getMessage());
+            failed++;
+        }
+        return failed;
+    }
+
+    /** Headless mode: serve the manager over TCP until the process is stopped. */
+    private static void serve(int port) {
+        try {
+            DmsServer server = DmsServer.start(manager, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException ignored) {
+                    // shutting down anyway
+                }
+                closeManager();
+            }));
+            System.out.printf("Serving on localhost:%d (Ctrl+C to stop).%n", server.getPort());
+            server.join();
+        } catch (IOException ex) {
+            System.out.println("Error starting server: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -46,16 +185,18 @@ public class Main {
     private static void loadCsv() {
         System.out.print("CSV path: ");
         String path = IN.nextLine().trim();
-        int added = 0, skipped = 0;
+        System.out.println("(1) add new rows   (2) re-sync (apply changes, remove missing ids)");
+        int mode = readInt("choose: ", 1, 2);
 
         try {
-            for (String line : Files.readAllLines(Path.of(path))) {
-                if (line.isBlank()) continue;
-                Character c = Character.fromCsv(line);
-                if (c == null) { skipped++; continue; }
-                if (manager.add(c)) added++; else skipped++;
+            if (mode == 2) {
+                SyncResult result = new CsvLoader().resync(Path.of(path), manager);
+                System.out.println("Re-synced: " + result);
+                return;
             }
-            System.out.printf("Loaded: %d added, %d skipped.%n", added, skipped);
+            LoadResult result = new CsvLoader().load(Path.of(path), manager);
+            System.out.printf("Loaded: %d added, %d skipped.%n", result.getAdded(), result.getRejected());
+            if (result.getRejected() > 0) System.out.println("  " + result);
         } catch (IOException ex) {
             System.out.println("Error reading file: " + ex.getMessage());
         }
@@ -143,42 +284,188 @@ public class Main {
 
     private static void listActive() {
         System.out.println("=== Active Characters ===");
-        List<Character> all = manager.getAll();
-        if (all.isEmpty()) {
+        if (manager.size() == 0) {
             System.out.println("(none)");
             return;
         }
-        all.stream().filter(Character::isActive).forEach(System.out::println);
+        manager.listActive().forEach(System.out::println);
     }
 
     private static void search() {
         System.out.println("=== Search ===");
-        System.out.println("(1) by id   (2) by handle");
-        int c = readInt("choose: ", 1, 2);
+        System.out.println("(1) by id   (2) by handle   (3) filter   (4) by partial handle");
+        int c = readInt("choose: ", 1, 4);
         if (c == 1) {
             int id = readInt("id: ", 1, Integer.MAX_VALUE);
             manager.findById(id).ifPresentOrElse(
                     System.out::println,
                     () -> System.out.println("No match")
             );
-        } else {
+        } else if (c == 2) {
             String h = readNonEmpty("handle: ");
             manager.findByHandle(h).ifPresentOrElse(
                     System.out::println,
                     () -> System.out.println("No match")
             );
+        } else if (c == 3) {
+            filterSearch();
+        } else {
+            String h = readNonEmpty("partial handle: ");
+            List<Character> matches = manager.searchHandles(h, 20);
+            if (matches.isEmpty()) System.out.println("No match");
+            else matches.forEach(System.out::println);
+        }
+    }
+
+    private static void filterSearch() {
+        System.out.println("(leave blank for any)");
+        CharacterQuery q = new CharacterQuery();
+        Server server = readOptionalServer("server (NA/EU/AS): ");
+        if (server != null) q.server(server);
+        Boolean active = readOptionalBoolean("active (true/false): ");
+        if (active != null) q.active(active);
+        System.out.print("occupation: ");
+        String occ = IN.nextLine().trim();
+        if (!occ.isEmpty()) q.occupation(occ);
+        Integer v;
+        if ((v = readOptionalInt("min wantedLevel: ", 0, Integer.MAX_VALUE)) != null) q.minWantedLevel(v);
+        if ((v = readOptionalInt("max wantedLevel: ", 0, Integer.MAX_VALUE)) != null) q.maxWantedLevel(v);
+        if ((v = readOptionalInt("min bountyCents: ", 0, Integer.MAX_VALUE)) != null) q.minBountyCents(v);
+        if ((v = readOptionalInt("max bountyCents: ", 0, Integer.MAX_VALUE)) != null) q.maxBountyCents(v);
+        if ((v = readOptionalInt("min reputation: ", Integer.MIN_VALUE, Integer.MAX_VALUE)) != null) q.minReputation(v);
+        if ((v = readOptionalInt("max reputation: ", Integer.MIN_VALUE, Integer.MAX_VALUE)) != null) q.maxReputation(v);
+
+        List<Character> matches = manager.query(q);
+        if (matches.isEmpty()) {
+            System.out.println("No match");
+            return;
         }
+        matches.forEach(System.out::println);
+        System.out.printf("%d match(es) for %s%n", matches.size(), q);
     }
 
     private static void topN() {
-        System.out.println("=== Top-N Most Wanted ===");
-        int n = readInt("N: ", 1, Integer.MAX_VALUE);
-        List<ThreatEntry> top = reporter.topN(n, manager.getAll());
+        System.out.println("=== Most Wanted ===");
+        System.out.println("(1) top N   (2) rank of id   (3) range of ranks");
+        int c = readInt("choose: ", 1, 3);
+        System.out.println("(leave server blank for all servers)");
+        Server server = readOptionalServer("server (NA/EU/AS): ");
+        String where = server == null ? "overall" : "on " + server;
+        List<ThreatEntry> top;
+        if (c == 2) {
+            int id = readInt("id: ", 1, Integer.MAX_VALUE);
+            int rank = manager.rankOf(id, server);
+            if (rank < 0) System.out.println("No match");
+            else System.out.printf("#%d %s of %d%n", rank, where, manager.aggregate(server).getCount());
+            return;
+        } else if (c == 3) {
+            int from = readInt("from rank: ", 1, Integer.MAX_VALUE);
+            int to = readInt("to rank: ", from, Integer.MAX_VALUE);
+            top = manager.rankPage(from, to - from + 1, server);
+            for (int i = 0; i < top.size(); i++) System.out.printf("#%d %s%n", from + i, top.get(i));
+        } else {
+            int n = readInt("N: ", 1, Integer.MAX_VALUE);
+            top = server == null ? reporter.topN(n, manager) : manager.rankPage(1, n, server);
+            top.forEach(System.out::println);
+        }
         if (top.isEmpty()) {
             System.out.println("(none)");
+        }
+    }
+
+    private static void saveSnapshot() {
+        System.out.print("Snapshot path: ");
+        String path = IN.nextLine().trim();
+        try {
+            long start = System.nanoTime();
+            manager.saveSnapshot(Path.of(path));
+            System.out.printf("Saved %d characters in %d ms.%n", manager.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException ex) {
+            System.out.println("Error writing snapshot: " + ex.getMessage());
+        }
+    }
+
+    private static void loadSnapshot() {
+        System.out.print("Snapshot path: ");
+        loadSnapshot(IN.nextLine().trim());
+    }
+
+    private static void loadSnapshot(String path) {
+        try {
+            long start = System.nanoTime();
+            int n = manager.loadSnapshot(Path.of(path));
+            System.out.printf("Loaded %d characters from snapshot in %d ms.%n", n,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException ex) {
+            System.out.println("Error reading snapshot: " + ex.getMessage());
+        }
+    }
+
+    private static void exportCsv() {
+        System.out.println("=== Export CSV ===");
+        System.out.println("(1) all characters   (2) Top-N report");
+        int c = readInt("choose: ", 1, 2);
+        List<ThreatEntry> top = c == 2 ? reporter.topN(readInt("N: ", 1, Integer.MAX_VALUE), manager) : null;
+        System.out.print("CSV path: ");
+        String path = IN.nextLine().trim();
+        try (FileChannel out = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long start = System.nanoTime();
+            if (top == null) manager.writeCsv(out); else reporter.writeCsv(top, out);
+            System.out.printf("Exported %d bytes in %d ms.%n", out.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException ex) {
+            System.out.println("Error writing file: " + ex.getMessage());
+        }
+    }
+
+    private static void serverSummary() {
+        System.out.println("=== Server Summary ===");
+        System.out.print(reporter.serverSummary(manager));
+    }
+
+    private static void statHistory() {
+        System.out.println("=== Stat History ===");
+        System.out.println("(1) trend of one character   (2) top movers");
+        int c = readInt("choose: ", 1, 2);
+        int hours = readInt("over the last N hours: ", 1, 24 * 365);
+        long to = System.currentTimeMillis();
+        long from = to - hours * 3_600_000L;
+        if (c == 1) {
+            int id = readInt("id: ", 1, Integer.MAX_VALUE);
+            List<StatPoint> points = manager.history(id, from, to);
+            if (points.isEmpty()) System.out.println("No match");
+            points.forEach(System.out::println);
             return;
         }
-        top.forEach(System.out::println);
+        StatPoint.Stat[] stats = StatPoint.Stat.values();
+        System.out.println("(1) wanted level   (2) bounty   (3) reputation   (4) threat score");
+        StatPoint.Stat stat = stats[readInt("stat: ", 1, stats.length) - 1];
+        int n = readInt("how many: ", 1, 1000);
+        List<StatMover> movers = manager.topMovers(stat, from, to, n);
+        if (movers.isEmpty()) System.out.println("No changes");
+        movers.forEach(System.out::println);
+    }
+
+    private static void stats() {
+        System.out.println("=== Stats ===");
+        System.out.print(manager.metrics().report());
+    }
+
+    private static void registerMetrics() {
+        try {
+            manager.metrics().register("main");
+        } catch (JMException ex) {
+            System.out.println("JMX metrics unavailable: " + ex.getMessage());
+        }
+    }
+
+    private static void closeManager() {
+        try {
+            manager.close();
+        } catch (IOException ex) {
+            System.out.println("Error flushing journal: " + ex.getMessage());
+        }
     }
 
     // --------------------- INPUT HELPERS ---------------------
@@ -193,6 +480,12 @@ public class Main {
         System.out.println("(5) List Active");
         System.out.println("(6) Search");
         System.out.println("(7) Top-N Most Wanted");
+        System.out.println("(8) Save Snapshot");
+        System.out.println("(9) Load Snapshot");
+        System.out.println("(10) Export CSV");
+        System.out.println("(11) Stats");
+        System.out.println("(12) Server Summary");
+        System.out.println("(13) Stat History");
         System.out.println("(0) Exit");
     }
 
@@ -232,6 +525,43 @@ public class Main {
         }
     }
 
+    private static Integer readOptionalInt(String prompt, int min, int max) {
+        while (true) {
+            System.out.print(prompt);
+            String s = IN.nextLine().trim();
+            if (s.isEmpty()) return null;
+            try {
+                int v = Integer.parseInt(s);
+                if (v >= min && v <= max) return v;
+                System.out.printf("Enter a number in range [%d..%d].%n", min, max);
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid integer.");
+            }
+        }
+    }
+
+    private static Boolean readOptionalBoolean(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String s = IN.nextLine().trim().toLowerCase();
+            if (s.isEmpty()) return null;
+            if (s.equals("true") || s.equals("t") || s.equals("yes") || s.equals("y")) return true;
+            if (s.equals("false") || s.equals("f") || s.equals("no") || s.equals("n")) return false;
+            System.out.println("Please enter true/false (or y/n), or leave blank.");
+        }
+    }
+
+    private static Server readOptionalServer(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String s = IN.nextLine().trim();
+            if (s.isEmpty()) return null;
+            Optional<Server> server = Server.tryParse(s);
+            if (server.isPresent()) return server.get();
+            System.out.println("Please enter one of: NA, EU, AS, or leave blank");
+        }
+    }
+
     private static Server readServer(String prompt) {
         while (true) {
             System.out.print(prompt);
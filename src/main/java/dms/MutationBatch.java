@@ -0,0 +1,68 @@
+package dms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class: MutationBatch
+ * Purpose: An ordered list of add / update / remove operations handed to
+ * CharacterManager.apply in one call. The whole batch is validated in a single pass
+ * under one write lock - each operation is checked against the store as changed by the
+ * operations before it, so conflicts inside the batch (two adds with the same handle,
+ * an update of an id removed earlier, ...) are caught too - and then applied together.
+ *
+ * By default a batch is all-or-nothing: if any operation fails, nothing is applied.
+ * A bestEffort() batch applies every operation that passes and skips the rest.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class MutationBatch {
+    /** One queued operation; kind is MutationJournal.ADD, UPDATE or REMOVE. */
+    static final class Op {
+        final byte kind;
+        final Character character;
+        final int id;
+
+        Op(byte kind, Character character, int id) {
+            this.kind = kind;
+            this.character = character;
+            this.id = id;
+        }
+    }
+
+    private final List<Op> ops = new ArrayList<>();
+    private final boolean allOrNothing;
+
+    public MutationBatch() {
+        this(true);
+    }
+
+    private MutationBatch(boolean allOrNothing) {
+        this.allOrNothing = allOrNothing;
+    }
+
+    /** A batch that applies the operations that pass and skips those that fail. */
+    public static MutationBatch bestEffort() {
+        return new MutationBatch(false);
+    }
+
+    public MutationBatch add(Character c) {
+        ops.add(new Op(MutationJournal.ADD, c, c.getId()));
+        return this;
+    }
+
+    public MutationBatch update(Character c) {
+        ops.add(new Op(MutationJournal.UPDATE, c, c.getId()));
+        return this;
+    }
+
+    public MutationBatch remove(int id) {
+        ops.add(new Op(MutationJournal.REMOVE, null, id));
+        return this;
+    }
+
+    public int size() { return ops.size(); }
+    public boolean isAllOrNothing() { return allOrNothing; }
+
+    List<Op> ops() { return ops; }
+}
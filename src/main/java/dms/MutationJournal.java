@@ -0,0 +1,324 @@
+package dms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Class: MutationJournal
+ * Purpose: Append-only write-ahead log of CharacterManager mutations.
+ * Each record is framed as [payload length][CRC32 of payload][payload], where the payload
+ * is an op code (ADD/UPDATE/REMOVE) followed by the character fields. A BATCH record
+ * carries only a count and announces that the next count records form one
+ * MutationBatch, which recovery applies whole or not at all. Records are
+ * staged in a direct buffer and fsync'd as a group every syncEveryOps records or
+ * syncEveryMillis (background flusher), whichever comes first.
+ * Journals are numbered by generation (journal-00000001.log, ...). A checkpoint rotates
+ * to a new generation and writes a snapshot tagged with it, after which older journals
+ * are deleted. Recovery loads the snapshot and replays every journal from its
+ * generation on, stopping at the first torn or corrupt record.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class MutationJournal implements Closeable {
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte REMOVE = 3;
+    static final byte BATCH = 4;
+    static final String SNAPSHOT = "snapshot.bin";
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int FRAME_BYTES = 2 * Integer.BYTES;
+    private static final Server[] SERVERS = Server.values();
+
+    private final Path dir;
+    private final JournalConfig config;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer record = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private int generation;
+    private long bytes;
+    private int unsynced;
+    private IOException failure;
+
+    /** Open journal generation for appending, dropping anything after validLength (a torn tail). */
+    MutationJournal(Path dir, int generation, long validLength, JournalConfig config) throws IOException {
+        this.dir = dir;
+        this.config = config;
+        this.generation = generation;
+        channel = FileChannel.open(file(dir, generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        SnapshotFile.syncDirectory(dir); // the file may be new
+        channel.truncate(validLength);
+        channel.position(validLength);
+        bytes = validLength;
+
+        if (config.getSyncEveryMillis() > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::backgroundSync, config.getSyncEveryMillis(),
+                    config.getSyncEveryMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    static Path file(Path dir, int generation) {
+        return dir.resolve(String.format("journal-%08d.log", generation));
+    }
+
+    /** Generations of all journal files in dir, oldest first. */
+    static List<Integer> generations(Path dir) throws IOException {
+        List<Integer> out = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "journal-*.log")) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                try {
+                    out.add(Integer.parseInt(name.substring(8, name.length() - 4)));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    // --------------------- APPEND ---------------------
+
+    synchronized void append(byte op, Character c) throws IOException {
+        byte[] handle = c.getHandle().getBytes(StandardCharsets.UTF_8);
+        byte[] occ = c.getOccupation() == null ? null : c.getOccupation().getBytes(StandardCharsets.UTF_8);
+        int len = 1 + 6 * Integer.BYTES + 2 + handle.length + (occ == null ? 0 : occ.length);
+        ByteBuffer r = recordBuffer(len);
+        r.put(op).putInt(c.getId()).putInt(c.getWantedLevel()).putInt(c.getBountyCents())
+                .putInt(c.getReputation()).put((byte) c.getServer().ordinal()).put((byte) (c.isActive() ? 1 : 0))
+                .putInt(handle.length).put(handle).putInt(occ == null ? -1 : occ.length);
+        if (occ != null) r.put(occ);
+        commit(r);
+    }
+
+    synchronized void appendRemove(int id) throws IOException {
+        ByteBuffer r = recordBuffer(1 + Integer.BYTES);
+        r.put(REMOVE).putInt(id);
+        commit(r);
+    }
+
+    /** Header for the next count records, which belong to one batch. */
+    synchronized void appendBatch(int count) throws IOException {
+        ByteBuffer r = recordBuffer(1 + Integer.BYTES);
+        r.put(BATCH).putInt(count);
+        commit(r);
+    }
+
+    private ByteBuffer recordBuffer(int len) {
+        if (record.capacity() < len) {
+            record = ByteBuffer.allocate(Math.max(len, record.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        record.clear();
+        return record;
+    }
+
+    /**
+     * Frame and buffer one record. Any write failure is sticky: the journal's tail is then
+     * unknown, so every later append fails too and nothing more reaches the file.
+     */
+    private void commit(ByteBuffer payload) throws IOException {
+        if (failure != null) throw failure;
+        try {
+            write(payload);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void write(ByteBuffer payload) throws IOException {
+        payload.flip();
+        crc.reset();
+        crc.update(payload.array(), 0, payload.limit());
+        if (buffer.remaining() < FRAME_BYTES + payload.limit()) drain();
+        if (buffer.remaining() < FRAME_BYTES + payload.limit()) {
+            // Oversized record: write it straight through.
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            frame.putInt(payload.limit()).putInt((int) crc.getValue()).flip();
+            while (frame.hasRemaining()) channel.write(frame);
+            while (payload.hasRemaining()) channel.write(payload);
+        } else {
+            buffer.putInt(payload.limit()).putInt((int) crc.getValue()).put(payload);
+        }
+        bytes += FRAME_BYTES + payload.limit();
+        if (++unsynced >= config.getSyncEveryOps()) sync();
+    }
+
+    /** Write everything buffered and fsync it. */
+    synchronized void sync() throws IOException {
+        if (failure != null) throw failure;
+        drain();
+        if (unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void backgroundSync() {
+        synchronized (this) {
+            if (unsynced == 0 || failure != null) return;
+            try {
+                sync();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    synchronized long size() { return bytes; }
+
+    long configuredCompaction() {
+        return config.getCompactAfterBytes() == 0 ? Long.MAX_VALUE : config.getCompactAfterBytes();
+    }
+
+    synchronized int generation() { return generation; }
+
+    /** Seal the current journal and start the next generation; returns the new generation. */
+    synchronized int rotate() throws IOException {
+        sync();
+        channel.close();
+        generation++;
+        channel = FileChannel.open(file(dir, generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        SnapshotFile.syncDirectory(dir);
+        bytes = 0;
+        return generation;
+    }
+
+    /** Delete journals older than generation (already folded into a snapshot). */
+    void deleteBefore(int generation) throws IOException {
+        for (int g : generations(dir)) {
+            if (g < generation) Files.deleteIfExists(file(dir, g));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) flusher.shutdownNow();
+        synchronized (this) {
+            if (!channel.isOpen()) return;
+            try {
+                if (failure == null) sync();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // --------------------- RECOVERY ---------------------
+
+    /**
+     * Apply every intact record of a journal file to target, in order.
+     * Returns the length of the valid prefix; anything after it is a torn or corrupt tail.
+     */
+    static long replay(Path file, CharacterManager target) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Journal larger than 2 GiB: " + file);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            int pos = 0;
+            while (true) {
+                ByteBuffer payload = record(map, pos, crc);
+                if (payload == null) break;
+                int next = pos + FRAME_BYTES + payload.remaining();
+                if (payload.get(0) == BATCH) {
+                    // Only apply the batch if every one of its records made it to disk.
+                    int count = payload.getInt(1);
+                    MutationBatch batch = MutationBatch.bestEffort();
+                    for (int i = 0; i < count && batch != null; i++) {
+                        ByteBuffer op = record(map, next, crc);
+                        if (op == null) { batch = null; break; }
+                        next += FRAME_BYTES + op.remaining();
+                        if (!decode(op, batch)) batch = null;
+                    }
+                    if (batch == null) break;
+                    target.apply(batch);
+                } else {
+                    MutationBatch single = MutationBatch.bestEffort();
+                    if (!decode(payload, single)) break;
+                    MutationBatch.Op op = single.ops().get(0);
+                    if (op.kind == REMOVE) target.remove(op.id);
+                    else if (op.kind == ADD) target.add(op.character);
+                    else target.update(op.character);
+                }
+                pos = next;
+            }
+            return pos;
+        }
+    }
+
+    /** The payload of the intact record framed at pos, or null at a torn or corrupt one. */
+    private static ByteBuffer record(MappedByteBuffer map, int pos, CRC32 crc) {
+        int size = map.limit();
+        if (pos + FRAME_BYTES > size) return null;
+        int len = map.getInt(pos);
+        int sum = map.getInt(pos + 4);
+        if (len <= 0 || pos + FRAME_BYTES + (long) len > size) return null;
+        ByteBuffer payload = map.slice(pos + FRAME_BYTES, len).order(ByteOrder.LITTLE_ENDIAN);
+        crc.reset();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue() == sum ? payload : null;
+    }
+
+    /** Decode one ADD/UPDATE/REMOVE payload onto batch; false if it is not one. */
+    private static boolean decode(ByteBuffer p, MutationBatch batch) {
+        p = p.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        byte op = p.get();
+        int id = p.getInt();
+        if (op == REMOVE) {
+            batch.remove(id);
+            return true;
+        }
+        if (op != ADD && op != UPDATE) return false;
+        int wl = p.getInt(), bounty = p.getInt(), rep = p.getInt();
+        int server = p.get();
+        boolean active = p.get() != 0;
+        if (server < 0 || server >= SERVERS.length) return false;
+        String handle = readString(p);
+        String occ = readString(p);
+        Character c = new Character(id, handle, SERVERS[server], occ, wl, bounty, rep, active);
+        if (op == ADD) batch.add(c); else batch.update(c);
+        return true;
+    }
+
+    private static String readString(ByteBuffer p) {
+        int len = p.getInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        p.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
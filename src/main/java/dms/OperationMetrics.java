@@ -0,0 +1,187 @@
+package dms;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Class: OperationMetrics
+ * Purpose: Always-on instrumentation for one CharacterManager. Every call of each public
+ * operation is counted in its own LatencyHistogram (lock-free, HDR-style buckets), but
+ * only a random 1 in getSampleEvery() calls per thread is timed: System.nanoTime costs
+ * more than a findById, and timing every call would also put every reader on the same
+ * bucket counters. An untimed call costs a thread-local random draw and a striped
+ * increment; setSampleEvery(1) times everything. Rows rejected by bulk loads are counted
+ * too. Disabled metrics cost nothing.
+ * register(name) publishes everything as JMX MBeans:
+ *   dms:type=CharacterManager,name=NAME            Size, RejectedRows, MetricsEnabled, SampleEvery
+ *   dms:type=Operation,manager=NAME,name=OP        Count, MeanMicros, P50/P99/P999/MaxMicros
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class OperationMetrics {
+    public enum Operation {
+        ADD, UPDATE, REMOVE, FIND_BY_ID, FIND_BY_HANDLE, FIND_BY_HANDLE_PREFIX, SEARCH_HANDLES, QUERY, TOP_N, RANK, BATCH, BULK_ADD, LOAD_CSV, RESYNC_CSV, HISTORY
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    /** start() results that are not timestamps: metrics off, or this call not sampled. */
+    private static final long OFF = 0, UNTIMED = 1;
+
+    /** Indexed by Operation ordinal. */
+    private final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder rejectedRows = new LongAdder();
+    private final IntSupplier size;
+    private volatile boolean enabled = true;
+    /** getSampleEvery() - 1; a power of two minus one. */
+    private volatile int sampleMask = 63;
+
+    OperationMetrics(IntSupplier size) {
+        this.size = size;
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getSampleEvery() { return sampleMask + 1; }
+
+    /** Time a random 1 in every calls (rounded up to a power of two; 1 = every call). */
+    public void setSampleEvery(int every) {
+        if (every < 1) throw new IllegalArgumentException("sampleEvery must be at least 1: " + every);
+        sampleMask = every == 1 ? 0 : (Integer.highestOneBit(every - 1) << 1) - 1;
+    }
+
+    /** Start timestamp for record(), or OFF / UNTIMED. */
+    long start() {
+        if (!enabled) return OFF;
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return UNTIMED;
+        long now = System.nanoTime();
+        return now == OFF || now == UNTIMED ? now + 2 : now;
+    }
+
+    void record(Operation op, long start) {
+        if (start == OFF) return;
+        if (start == UNTIMED) histograms[op.ordinal()].count();
+        else histograms[op.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /** record(op, start) and pass result through, for one-line instrumented returns. */
+    <T> T stop(Operation op, long start, T result) {
+        record(op, start);
+        return result;
+    }
+
+    boolean stop(Operation op, long start, boolean result) {
+        record(op, start);
+        return result;
+    }
+
+    void rejected(int rows) {
+        if (enabled && rows > 0) rejectedRows.add(rows);
+    }
+
+    public long getCount(Operation op) { return histograms[op.ordinal()].getCount(); }
+    public long getRejectedRows() { return rejectedRows.sum(); }
+    public int getSize() { return size.getAsInt(); }
+
+    /** Latency of op at percentile p (0..100), in nanoseconds. */
+    public long getPercentileNanos(Operation op, double p) { return histograms[op.ordinal()].percentile(p); }
+
+    public double getMeanNanos(Operation op) { return histograms[op.ordinal()].getMean(); }
+    public long getMaxNanos(Operation op) { return histograms[op.ordinal()].getMax(); }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms) h.reset();
+        rejectedRows.reset();
+    }
+
+    /** One CSV row per operation that has been called: op,count,mean,p50,p99,p999,max (microseconds). */
+    public List<String> rows() {
+        List<String> out = new ArrayList<>();
+        for (Operation op : OPERATIONS) {
+            LatencyHistogram h = histograms[op.ordinal()];
+            if (h.getCount() == 0) continue;
+            out.add(String.format(Locale.ROOT, "%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f", op.name().toLowerCase(Locale.ROOT),
+                    h.getCount(), h.getMean() / 1000, h.percentile(50) / 1000.0, h.percentile(99) / 1000.0,
+                    h.percentile(99.9) / 1000.0, h.getMax() / 1000.0));
+        }
+        return out;
+    }
+
+    /** Human-readable table for the console "Stats" action. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("size=%d  rejectedRows=%d  metrics=%s%n", getSize(), getRejectedRows(),
+                enabled ? "on" : "off"));
+        sb.append(String.format("%-15s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean(us)", "p50(us)", "p99(us)", "p99.9(us)", "max(us)"));
+        for (String row : rows()) {
+            String[] f = row.split(",");
+            sb.append(String.format("%-15s %10s %10s %10s %10s %10s %10s%n", (Object[]) f));
+        }
+        return sb.toString();
+    }
+
+    // --------------------- JMX ---------------------
+
+    public interface ManagerMBean {
+        int getSize();
+        long getRejectedRows();
+        boolean isMetricsEnabled();
+        void setMetricsEnabled(boolean enabled);
+        int getSampleEvery();
+        void setSampleEvery(int every);
+        void resetMetrics();
+    }
+
+    public interface OperationMBean {
+        long getCount();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    /** Register the manager and per-operation MBeans under name; replaces any with the same name. */
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ManagerMBean manager = new ManagerMBean() {
+            public int getSize() { return OperationMetrics.this.getSize(); }
+            public long getRejectedRows() { return OperationMetrics.this.getRejectedRows(); }
+            public boolean isMetricsEnabled() { return enabled; }
+            public void setMetricsEnabled(boolean on) { setEnabled(on); }
+            public int getSampleEvery() { return OperationMetrics.this.getSampleEvery(); }
+            public void setSampleEvery(int every) { OperationMetrics.this.setSampleEvery(every); }
+            public void resetMetrics() { reset(); }
+        };
+        replace(server, new ObjectName("dms:type=CharacterManager,name=" + ObjectName.quote(name)),
+                new StandardMBean(manager, ManagerMBean.class));
+        for (Operation op : OPERATIONS) {
+            LatencyHistogram h = histograms[op.ordinal()];
+            OperationMBean bean = new OperationMBean() {
+                public long getCount() { return h.getCount(); }
+                public double getMeanMicros() { return h.getMean() / 1000; }
+                public double getP50Micros() { return h.percentile(50) / 1000.0; }
+                public double getP99Micros() { return h.percentile(99) / 1000.0; }
+                public double getP999Micros() { return h.percentile(99.9) / 1000.0; }
+                public double getMaxMicros() { return h.getMax() / 1000.0; }
+            };
+            replace(server, new ObjectName("dms:type=Operation,manager=" + ObjectName.quote(name) + ",name="
+                    + op.name().toLowerCase(Locale.ROOT)), new StandardMBean(bean, OperationMBean.class));
+        }
+    }
+
+    private static void replace(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        if (server.isRegistered(name)) server.unregisterMBean(name);
+        server.registerMBean(bean, name);
+    }
+}
@@ -0,0 +1,186 @@
+package dms;
+
+import java.util.Arrays;
+
+/**
+ * Class: RankedKeySet
+ * Purpose: Sorted set of distinct long keys with order statistics - how many keys sort
+ * below a given key, and the keys at ranks i..i+n - each in O(log n) (+ n for a page).
+ * It is a treap kept in parallel primitive arrays: every node stores its key, a random
+ * priority and the size of its subtree, and node 0 is the empty tree. Freed nodes are
+ * chained through left[] and reused, so steady churn allocates nothing.
+ * Not thread-safe; CharacterManager calls it under its write lock.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class RankedKeySet {
+    private long[] key = new long[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] size = new int[16];
+    private int[] priority = new int[16];
+    private int root;
+    private int used;   // highest node index handed out so far
+    private int free;   // head of the free list (0 = empty)
+    private int seed = 0x2545F491;
+
+    int size() { return size[root]; }
+
+    /** Add k, which must not already be present. */
+    void add(long k) {
+        int n = allocate(k);
+        root = insert(root, n);
+    }
+
+    /** Remove k if present. */
+    void remove(long k) {
+        root = remove(root, k);
+    }
+
+    void clear() {
+        root = used = free = 0;
+    }
+
+    /** Number of keys strictly less than k. */
+    int countBelow(long k) {
+        int below = 0;
+        for (int t = root; t != 0; ) {
+            if (key[t] < k) {
+                below += size[left[t]] + 1;
+                t = right[t];
+            } else {
+                t = left[t];
+            }
+        }
+        return below;
+    }
+
+    /** Up to n keys in ascending order, starting at 0-based rank from. */
+    long[] page(int from, int n) {
+        int count = Math.max(0, Math.min(n, size() - Math.max(from, 0)));
+        long[] out = new long[count];
+        if (count == 0) return out;
+        // Descend to rank from; the stack holds it on top and, below it, every ancestor
+        // we went left at - exactly the nodes that follow it in order.
+        int[] stack = new int[32];
+        int sp = 0;
+        int i = from;
+        for (int t = root; t != 0; ) {
+            int ls = size[left[t]];
+            if (i <= ls) {
+                if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+                stack[sp++] = t;
+                if (i == ls) break;
+                t = left[t];
+            } else {
+                i -= ls + 1;
+                t = right[t];
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            int t = stack[--sp];
+            out[k] = key[t];
+            for (int c = right[t]; c != 0; c = left[c]) {
+                if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+                stack[sp++] = c;
+            }
+        }
+        return out;
+    }
+
+    // --------------------- TREAP ---------------------
+
+    private int allocate(long k) {
+        int n;
+        if (free != 0) {
+            n = free;
+            free = left[n];
+        } else {
+            n = ++used;
+            if (n == key.length) {
+                int cap = key.length * 2;
+                key = Arrays.copyOf(key, cap);
+                left = Arrays.copyOf(left, cap);
+                right = Arrays.copyOf(right, cap);
+                size = Arrays.copyOf(size, cap);
+                priority = Arrays.copyOf(priority, cap);
+            }
+        }
+        // xorshift: cheap, and deterministic so tree shapes are reproducible
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        key[n] = k;
+        priority[n] = seed;
+        left[n] = right[n] = 0;
+        size[n] = 1;
+        return n;
+    }
+
+    private int insert(int t, int n) {
+        if (t == 0) return n;
+        if (priority[n] > priority[t]) {
+            split(t, key[n]);
+            left[n] = splitLow;
+            right[n] = splitHigh;
+            pull(n);
+            return n;
+        }
+        if (key[n] < key[t]) left[t] = insert(left[t], n);
+        else right[t] = insert(right[t], n);
+        pull(t);
+        return t;
+    }
+
+    private int remove(int t, long k) {
+        if (t == 0) return 0;
+        if (key[t] == k) {
+            int merged = merge(left[t], right[t]);
+            left[t] = free;
+            free = t;
+            return merged;
+        }
+        if (k < key[t]) left[t] = remove(left[t], k);
+        else right[t] = remove(right[t], k);
+        pull(t);
+        return t;
+    }
+
+    private int splitLow, splitHigh;
+
+    /** Split t into splitLow (keys below k) and splitHigh (the rest). */
+    private void split(int t, long k) {
+        if (t == 0) {
+            splitLow = splitHigh = 0;
+            return;
+        }
+        if (key[t] < k) {
+            split(right[t], k);
+            right[t] = splitLow;
+            splitLow = t;
+        } else {
+            split(left[t], k);
+            left[t] = splitHigh;
+            splitHigh = t;
+        }
+        pull(t);
+    }
+
+    /** Join a and b, where every key in a is below every key in b. */
+    private int merge(int a, int b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        if (priority[a] > priority[b]) {
+            right[a] = merge(right[a], b);
+            pull(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        pull(b);
+        return b;
+    }
+
+    private void pull(int t) {
+        size[t] = size[left[t]] + size[right[t]] + 1;
+    }
+}
@@ -1,40 +1,211 @@
 package dms;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.ToIntFunction;
 
 /**
  * Class: ReportGenerator
  * Purpose: Calculates the top-N most dangerous (wanted) characters based on weighted score.
+ * Ties in score are ranked by lowest id. Also formats the per-server summary.
  * Author: Zekia Beyene
  * Date: October 2025
  */
 public class ReportGenerator {
-    private int score(Character c) {
-        int wl = c.getWantedLevel();
-        int bounty = c.getBountyCents() / 100;
-        int badRep = Math.max(0, -c.getReputation());
-        return wl * 100 + bounty + badRep;
+    /**
+     * The built-in threat score (ScoringFormula.DEFAULT, hardcoded), used for reports over
+     * plain lists; a CharacterManager scores with its own getScoringFormula().
+     */
+    static int score(Character c) {
+        return score(c.getWantedLevel(), c.getBountyCents(), c.getReputation());
     }
 
+    static int score(int wantedLevel, int bountyCents, int reputation) {
+        int bounty = bountyCents / 100;
+        int badRep = Math.max(0, -reputation);
+        return wantedLevel * 100 + bounty + badRep;
+    }
+
+    /** Top-N from the manager's live leaderboard (no rescoring or sorting). */
+    public List<ThreatEntry> topN(int n, CharacterManager manager) {
+        return manager.topThreats(n);
+    }
+
+    /**
+     * Ad-hoc Top-N over any list: keeps a bounded min-heap of the best n entries, so the
+     * cost is O(size log n) and only n ThreatEntry objects survive, instead of a full sort.
+     */
     public List<ThreatEntry> topN(int n, List<Character> list) {
-        return list.stream()
-                .map(c -> new ThreatEntry(c, score(c)))
-                .sorted(Comparator.comparingInt(ThreatEntry::getThreatScore).reversed())
-                .limit(Math.max(n, 0))
-                .collect(Collectors.toList());
+        if (n <= 0 || list.isEmpty()) return new ArrayList<>();
+        return topNOf(Math.min(n, list.size()), list::forEach, ReportGenerator::score);
+    }
+
+    /** Top-N as of a snapshot, while writers carry on (see CharacterSnapshot.topThreats). */
+    public List<ThreatEntry> topN(int n, CharacterSnapshot snapshot) {
+        return snapshot.topThreats(n);
+    }
+
+    /** The bounded-heap Top-N over whatever records visitAll feeds to its consumer. */
+    static List<ThreatEntry> topNOf(int n, Consumer<Consumer<Character>> visitAll, ToIntFunction<Character> score) {
+        if (n <= 0) return new ArrayList<>();
+        Comparator<ThreatEntry> worstFirst = ThreatEntry.RANKING.reversed();
+        PriorityQueue<ThreatEntry> heap = new PriorityQueue<>(Math.min(n, 1 << 16) + 1, worstFirst);
+        visitAll.accept(c -> {
+            int s = score.applyAsInt(c);
+            if (heap.size() == n) {
+                ThreatEntry worst = heap.peek();
+                if (s < worst.getThreatScore()
+                        || (s == worst.getThreatScore() && c.getId() > worst.getCharacter().getId())) return;
+                heap.poll();
+            }
+            heap.add(new ThreatEntry(c, s));
+        });
+        List<ThreatEntry> out = new ArrayList<>(heap);
+        out.sort(ThreatEntry.RANKING);
+        return out;
+    }
+
+    /**
+     * Top-N straight over a store's primitive columns: scores are computed a Batch of
+     * column values at a time and kept in a bounded heap of packed (score, id) longs, so
+     * only the n winners are ever turned into Character objects.
+     */
+    static List<ThreatEntry> topNScan(int n, CharacterStore store, ScoringFormula formula) {
+        return rankScan(store, null, 0, n, formula);
+    }
+
+    /** Like topNScan, but ranks from..from+n-1 (0-based) within server (null = all servers). */
+    static List<ThreatEntry> rankScan(CharacterStore store, Server server, int from, int n, ScoringFormula formula) {
+        from = Math.max(from, 0);
+        int k = (int) Math.min((long) from + Math.max(n, 0), store.size());
+        if (k <= from) return new ArrayList<>();
+        // Max-heap on the packed key: the root is the worst entry kept so far.
+        long[] heap = new long[k];
+        int[] count = {0};
+        scanKeys(store, server, formula, key -> {
+            if (count[0] < k) {
+                int i = count[0]++;
+                while (i > 0 && heap[(i - 1) / 2] < key) { heap[i] = heap[(i - 1) / 2]; i = (i - 1) / 2; }
+                heap[i] = key;
+            } else if (key < heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= k) break;
+                    if (child + 1 < k && heap[child + 1] > heap[child]) child++;
+                    if (heap[child] <= key) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = key;
+            }
+        });
+        int size = count[0];
+        Arrays.sort(heap, 0, size);
+        List<ThreatEntry> out = new ArrayList<>(Math.max(size - from, 0));
+        for (int i = from; i < size; i++) {
+            int row = store.rowOf(ThreatLeaderboard.idOf(heap[i]));
+            out.add(new ThreatEntry(store.get(row), ThreatLeaderboard.scoreOf(heap[i])));
+        }
+        return out;
+    }
+
+    /** Rows in server (null = all servers) whose packed leaderboard key sorts below key. */
+    static int countBelowScan(CharacterStore store, Server server, long key, ScoringFormula formula) {
+        int[] n = {0};
+        scanKeys(store, server, formula, k -> {
+            if (k < key) n[0]++;
+        });
+        return n[0];
+    }
+
+    /**
+     * Packed leaderboard key of every record in server (null = all servers). DEFAULT is
+     * scored row by row with the hardcoded score, which beats the Batch kernels several
+     * times over; any other formula is scored in batches.
+     */
+    static void scanKeys(CharacterStore store, Server server, ScoringFormula formula, LongConsumer sink) {
+        if (formula == ScoringFormula.DEFAULT) {
+            for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) {
+                if (server != null && store.serverAt(r) != server) continue;
+                sink.accept(ThreatLeaderboard.key(store.idAt(r),
+                        score(store.wantedLevelAt(r), store.bountyCentsAt(r), store.reputationAt(r))));
+            }
+            return;
+        }
+        ScoringFormula.Batch batch = formula.newBatch();
+        int limit = store.rowLimit();
+        for (int base = 0; base < limit; base += ScoringFormula.Batch.SIZE) {
+            store.fillBatch(base, Math.min(base + ScoringFormula.Batch.SIZE, limit), batch);
+            int[] scores = formula.scores(batch);
+            for (int i = 0; i < batch.size; i++) {
+                if (!batch.live[i]) continue;
+                int r = base + i;
+                if (server != null && store.serverAt(r) != server) continue;
+                sink.accept(ThreatLeaderboard.key(store.idAt(r), scores[i]));
+            }
+        }
+    }
+
+    /** Per-server and overall totals from the manager's running aggregates (no scan). */
+    public String serverSummary(CharacterManager manager) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-6s %9s %9s %9s %16s %8s  %s%n", "server", "count", "active", "inactive",
+                "bountyCents", "avgRep", "wantedLevel 0..6,7+"));
+        for (AggregateStats s : manager.aggregates()) {
+            sb.append(String.format("%-6s %9d %9d %9d %16d %8.2f  %s%n", s.getServer() == null ? "ALL" : s.getServer(),
+                    s.getCount(), s.getActive(), s.getInactive(), s.getTotalBountyCents(),
+                    s.getAverageReputation(), Arrays.toString(s.getWantedLevelCounts())));
+        }
+        return sb.toString();
     }
 
+    static final String CSV_HEADER = "id,handle,server,occupation,wantedLevel,bountyCents,reputation,score";
+
     public String toCsv(List<ThreatEntry> entries) {
-        String header = "id,handle,server,occupation,wantedLevel,bountyCents,reputation,score";
-        String body = entries.stream().map(te -> {
-            Character c = te.getCharacter();
-            return String.join(",", String.valueOf(c.getId()), c.getHandle(), c.getServer().name(),
-                    c.getOccupation(), String.valueOf(c.getWantedLevel()),
-                    String.valueOf(c.getBountyCents()), String.valueOf(c.getReputation()),
-                    String.valueOf(te.getThreatScore()));
-        }).collect(Collectors.joining("\n"));
-        return header + "\n" + body;
+        StringWriter out = new StringWriter();
+        try {
+            writeCsv(entries, CsvWriter.to(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    /** Stream a Top-N report as CSV (same format as toCsv). */
+    public void writeCsv(List<ThreatEntry> entries, Writer out) throws IOException {
+        writeCsv(entries, CsvWriter.to(out));
     }
-}
 
+    public void writeCsv(List<ThreatEntry> entries, OutputStream out) throws IOException {
+        writeCsv(entries, CsvWriter.to(out));
+    }
+
+    public void writeCsv(List<ThreatEntry> entries, WritableByteChannel out) throws IOException {
+        writeCsv(entries, CsvWriter.to(out));
+    }
+
+    public void writeCsv(List<ThreatEntry> entries, CsvWriter out) throws IOException {
+        out.field(CSV_HEADER).endRow();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) out.endRow();
+            writeRow(entries.get(i), out);
+        }
+        out.flush();
+    }
+
+    /** One report row (CSV_HEADER columns), without the line break. */
+    static void writeRow(ThreatEntry te, CsvWriter out) throws IOException {
+        Character c = te.getCharacter();
+        out.field(c.getId()).field(c.getHandle()).field(c.getServer().name()).field(c.getOccupation())
+                .field(c.getWantedLevel()).field(c.getBountyCents()).field(c.getReputation())
+                .field(te.getThreatScore());
+    }
+}
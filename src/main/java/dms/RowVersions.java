@@ -0,0 +1,107 @@
+package dms;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class: RowVersions
+ * Purpose: Copy-on-write row -> record map behind CharacterManager.snapshot(). Records
+ * are immutable (the heap store's private copies) and sit in a 32-way trie indexed by
+ * row, so a snapshot is just the current root: O(1), and it stays valid however the
+ * store changes afterwards.
+ *
+ * Taking a snapshot freezes every existing node by bumping the epoch. A writer changes
+ * a frozen node by copying it (path copying, ~4 nodes per write) while any snapshot is
+ * open, and in place otherwise - so with no snapshots open nothing is copied, and once
+ * the last snapshot closes its old nodes are referenced by nothing and go to the GC.
+ * A snapshot that is never closed is released by a Cleaner when it becomes unreachable.
+ *
+ * Writers must hold the manager's write lock; snapshot() needs at least the read lock.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class RowVersions {
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** Inner nodes hold Nodes, leaves hold Characters (null = no record in that row). */
+    static final class Node {
+        final long epoch;
+        final Object[] slots;
+
+        Node(long epoch) {
+            this.epoch = epoch;
+            this.slots = new Object[WIDTH];
+        }
+
+        Node(long epoch, Node from) {
+            this.epoch = epoch;
+            this.slots = from.slots.clone();
+        }
+    }
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    private Node root = new Node(0);
+    /** Bits of row consumed above the leaves; the trie covers rows below 1 << (shift + BITS). */
+    private int shift;
+    private int size;
+
+    int size() { return size; }
+
+    /** Snapshots taken and not yet closed (or collected). */
+    int openSnapshots() { return open.get(); }
+
+    /** Record (or null) now stored at row. */
+    void set(int row, Character c) {
+        long e = epoch.get();
+        boolean shared = open.get() > 0;
+        while (row >= 1L << (shift + BITS)) {
+            Node grown = new Node(e);
+            grown.slots[0] = root;
+            root = grown;
+            shift += BITS;
+        }
+        Node n = root = editable(root, e, shared);
+        for (int s = shift; s > 0; s -= BITS) {
+            int i = (row >>> s) & MASK;
+            Node child = (Node) n.slots[i];
+            child = child == null ? new Node(e) : editable(child, e, shared);
+            n.slots[i] = child;
+            n = child;
+        }
+        Object old = n.slots[row & MASK];
+        n.slots[row & MASK] = c;
+        if (old == null && c != null) size++;
+        else if (old != null && c == null) size--;
+    }
+
+    void clear() {
+        root = new Node(epoch.get());
+        shift = 0;
+        size = 0;
+    }
+
+    private static Node editable(Node n, long epoch, boolean shared) {
+        return !shared || n.epoch == epoch ? n : new Node(epoch, n);
+    }
+
+    /** O(1): freeze the current trie and hand it to a new snapshot. */
+    CharacterSnapshot snapshot() {
+        epoch.incrementAndGet();
+        open.incrementAndGet();
+        CharacterSnapshot s = new CharacterSnapshot(root, shift, size);
+        s.release = CLEANER.register(s, new Release(open));
+        return s;
+    }
+
+    /** Runs once per snapshot, from close() or from the Cleaner. */
+    private record Release(AtomicInteger open) implements Runnable {
+        @Override
+        public void run() { open.decrementAndGet(); }
+    }
+}
@@ -0,0 +1,412 @@
+package dms;
+
+import java.util.Arrays;
+
+/**
+ * Class: ScoringFormula
+ * Purpose: Configurable threat score for the Most Wanted reports and leaderboard, e.g.
+ *   wantedLevel * 150 + bountyCents / 50 + max(0, -reputation) + active * 10
+ * Integer arithmetic over the fields wantedLevel, bountyCents, reputation and active
+ * (1 or 0), with + - * / %, unary minus, parentheses and min(a, b), max(a, b), abs(a).
+ * Division or remainder by zero gives 0; overflow wraps as in Java.
+ *
+ * The expression is parsed once and compiled, never interpreted per row: constant
+ * sub-expressions are folded, and every operator becomes either a lambda specialized for
+ * its operand kinds (for scoring one Character) or a kernel that runs one tight loop over
+ * a whole Batch of primitive columns (for scans and rebuilds). Those kernel loops are
+ * plain int array arithmetic, which HotSpot compiles to SIMD instructions.
+ * DEFAULT is the built-in formula of ReportGenerator.score.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class ScoringFormula {
+    /** The built-in threat score: wantedLevel * 100 + bounty in dollars + bad reputation. */
+    public static final ScoringFormula DEFAULT = parse("wantedLevel * 100 + bountyCents / 100 + max(0, -reputation)");
+
+    private final String expression;
+    private final RowFn row;
+    private final Kernel kernel;
+    private final int slots;
+
+    private ScoringFormula(String expression, Node root) {
+        this.expression = expression;
+        this.row = root.row();
+        int[] next = {0};
+        this.kernel = root.kernel(next);
+        this.slots = next[0];
+    }
+
+    /** Parse and compile expression; IllegalArgumentException if it is not a valid formula. */
+    public static ScoringFormula parse(String expression) {
+        return new ScoringFormula(expression.trim(), new Parser(expression).parse());
+    }
+
+    public String getExpression() { return expression; }
+
+    public int score(Character c) {
+        return row.eval(c.getWantedLevel(), c.getBountyCents(), c.getReputation(), c.isActive() ? 1 : 0);
+    }
+
+    public int score(int wantedLevel, int bountyCents, int reputation, boolean active) {
+        return row.eval(wantedLevel, bountyCents, reputation, active ? 1 : 0);
+    }
+
+    /** A batch sized for this formula; reuse it for every chunk of one scan. */
+    public Batch newBatch() {
+        return new Batch(slots);
+    }
+
+    /** Scores of the batch's size rows, in [0, size) of the returned array (owned by the batch). */
+    public int[] scores(Batch batch) {
+        return kernel.eval(batch, batch.size);
+    }
+
+    @Override
+    public String toString() { return expression; }
+
+    /**
+     * Up to SIZE rows of primitive columns to score at once. Fill the columns (and live,
+     * for rows that may be empty) for rows [0, size), then call scores.
+     */
+    public static final class Batch {
+        public static final int SIZE = 1024;
+
+        final int[] wantedLevel = new int[SIZE];
+        final int[] bountyCents = new int[SIZE];
+        final int[] reputation = new int[SIZE];
+        final int[] active = new int[SIZE];
+        /** Whether each row holds a record; dead rows are scored but ignored. */
+        final boolean[] live = new boolean[SIZE];
+        int size;
+        private final int[][] scratch;
+
+        private Batch(int slots) {
+            scratch = new int[slots][SIZE];
+        }
+
+        /** Set row i of the batch. */
+        public void set(int i, int wantedLevel, int bountyCents, int reputation, boolean active) {
+            this.wantedLevel[i] = wantedLevel;
+            this.bountyCents[i] = bountyCents;
+            this.reputation[i] = reputation;
+            this.active[i] = active ? 1 : 0;
+            this.live[i] = true;
+        }
+
+        public void setSize(int size) {
+            if (size < 0 || size > SIZE) throw new IllegalArgumentException("batch size " + size);
+            this.size = size;
+        }
+    }
+
+    // --------------------- COMPILED FORMS ---------------------
+
+    @FunctionalInterface
+    private interface RowFn {
+        int eval(int wl, int bounty, int rep, int active);
+    }
+
+    @FunctionalInterface
+    private interface Kernel {
+        /** Results for rows [0, n): a column or one of the batch's scratch arrays. */
+        int[] eval(Batch b, int n);
+    }
+
+    private enum Op { ADD, SUB, MUL, DIV, MOD, MIN, MAX, NEG, ABS }
+
+    private abstract static class Node {
+        /** The value if the node is constant, else null. */
+        Integer constant() { return null; }
+
+        abstract RowFn row();
+
+        /** Kernel for this node; next hands out scratch arrays. */
+        abstract Kernel kernel(int[] next);
+    }
+
+    private static final class Const extends Node {
+        final int value;
+
+        Const(int value) { this.value = value; }
+
+        @Override Integer constant() { return value; }
+
+        @Override
+        RowFn row() {
+            int v = value;
+            return (wl, bounty, rep, active) -> v;
+        }
+
+        @Override
+        Kernel kernel(int[] next) {
+            int v = value, slot = next[0]++;
+            return (b, n) -> {
+                int[] out = b.scratch[slot];
+                Arrays.fill(out, 0, n, v);
+                return out;
+            };
+        }
+    }
+
+    private static final class Field extends Node {
+        final String name;
+
+        Field(String name) { this.name = name; }
+
+        @Override
+        RowFn row() {
+            return switch (name) {
+                case "wantedLevel" -> (wl, bounty, rep, active) -> wl;
+                case "bountyCents" -> (wl, bounty, rep, active) -> bounty;
+                case "reputation" -> (wl, bounty, rep, active) -> rep;
+                default -> (wl, bounty, rep, active) -> active;
+            };
+        }
+
+        @Override
+        Kernel kernel(int[] next) {
+            return switch (name) {
+                case "wantedLevel" -> (b, n) -> b.wantedLevel;
+                case "bountyCents" -> (b, n) -> b.bountyCents;
+                case "reputation" -> (b, n) -> b.reputation;
+                default -> (b, n) -> b.active;
+            };
+        }
+    }
+
+    private static final class Unary extends Node {
+        final Op op;
+        final Node arg;
+
+        Unary(Op op, Node arg) {
+            this.op = op;
+            this.arg = arg;
+        }
+
+        @Override
+        RowFn row() {
+            RowFn a = arg.row();
+            return op == Op.NEG
+                    ? (wl, bounty, rep, active) -> -a.eval(wl, bounty, rep, active)
+                    : (wl, bounty, rep, active) -> Math.abs(a.eval(wl, bounty, rep, active));
+        }
+
+        @Override
+        Kernel kernel(int[] next) {
+            Kernel a = arg.kernel(next);
+            int slot = next[0]++;
+            if (op == Op.NEG) {
+                return (b, n) -> {
+                    int[] x = a.eval(b, n), out = b.scratch[slot];
+                    for (int i = 0; i < n; i++) out[i] = -x[i];
+                    return out;
+                };
+            }
+            return (b, n) -> {
+                int[] x = a.eval(b, n), out = b.scratch[slot];
+                for (int i = 0; i < n; i++) out[i] = Math.abs(x[i]);
+                return out;
+            };
+        }
+    }
+
+    private static final class Binary extends Node {
+        final Op op;
+        final Node left;
+        final Node right;
+
+        Binary(Op op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        RowFn row() {
+            RowFn a = left.row();
+            Integer k = right.constant();
+            if (k != null) {
+                int c = k;
+                return switch (op) {
+                    case ADD -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) + c;
+                    case SUB -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) - c;
+                    case MUL -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) * c;
+                    case DIV -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) / c;
+                    case MOD -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) % c;
+                    case MIN -> (wl, bounty, rep, active) -> Math.min(a.eval(wl, bounty, rep, active), c);
+                    default -> (wl, bounty, rep, active) -> Math.max(a.eval(wl, bounty, rep, active), c);
+                };
+            }
+            RowFn r = right.row();
+            return switch (op) {
+                case ADD -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) + r.eval(wl, bounty, rep, active);
+                case SUB -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) - r.eval(wl, bounty, rep, active);
+                case MUL -> (wl, bounty, rep, active) -> a.eval(wl, bounty, rep, active) * r.eval(wl, bounty, rep, active);
+                case DIV -> (wl, bounty, rep, active) -> div(a.eval(wl, bounty, rep, active), r.eval(wl, bounty, rep, active));
+                case MOD -> (wl, bounty, rep, active) -> mod(a.eval(wl, bounty, rep, active), r.eval(wl, bounty, rep, active));
+                case MIN -> (wl, bounty, rep, active) -> Math.min(a.eval(wl, bounty, rep, active), r.eval(wl, bounty, rep, active));
+                default -> (wl, bounty, rep, active) -> Math.max(a.eval(wl, bounty, rep, active), r.eval(wl, bounty, rep, active));
+            };
+        }
+
+        @Override
+        Kernel kernel(int[] next) {
+            Kernel a = left.kernel(next);
+            Integer k = right.constant();
+            if (k != null) {
+                int c = k, slot = next[0]++;
+                return switch (op) {
+                    case ADD -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] + c; return o; };
+                    case SUB -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] - c; return o; };
+                    case MUL -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] * c; return o; };
+                    case DIV -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] / c; return o; };
+                    case MOD -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] % c; return o; };
+                    case MIN -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = Math.min(x[i], c); return o; };
+                    default -> (b, n) -> { int[] x = a.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = Math.max(x[i], c); return o; };
+                };
+            }
+            Kernel r = right.kernel(next);
+            int slot = next[0]++;
+            return switch (op) {
+                case ADD -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] + y[i]; return o; };
+                case SUB -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] - y[i]; return o; };
+                case MUL -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = x[i] * y[i]; return o; };
+                case DIV -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = div(x[i], y[i]); return o; };
+                case MOD -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = mod(x[i], y[i]); return o; };
+                case MIN -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = Math.min(x[i], y[i]); return o; };
+                default -> (b, n) -> { int[] x = a.eval(b, n), y = r.eval(b, n), o = b.scratch[slot]; for (int i = 0; i < n; i++) o[i] = Math.max(x[i], y[i]); return o; };
+            };
+        }
+    }
+
+    private static int div(int a, int b) { return b == 0 ? 0 : a / b; }
+
+    private static int mod(int a, int b) { return b == 0 ? 0 : a % b; }
+
+    /** Build op(left, right), folding constants and moving a constant to the right where order does not matter. */
+    private static Node binary(Op op, Node left, Node right) {
+        Integer l = left.constant(), r = right.constant();
+        if (l != null && r != null) {
+            return new Const(switch (op) {
+                case ADD -> l + r;
+                case SUB -> l - r;
+                case MUL -> l * r;
+                case DIV -> div(l, r);
+                case MOD -> mod(l, r);
+                case MIN -> Math.min(l, r);
+                default -> Math.max(l, r);
+            });
+        }
+        if (r != null && r == 0 && (op == Op.DIV || op == Op.MOD)) return new Const(0);
+        boolean commutative = op == Op.ADD || op == Op.MUL || op == Op.MIN || op == Op.MAX;
+        if (l != null && commutative) return new Binary(op, right, left);
+        return new Binary(op, left, right);
+    }
+
+    private static Node unary(Op op, Node arg) {
+        Integer v = arg.constant();
+        if (v != null) return new Const(op == Op.NEG ? -v : Math.abs(v));
+        return new Unary(op, arg);
+    }
+
+    // --------------------- PARSING ---------------------
+
+    private static final class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) { this.s = s; }
+
+        Node parse() {
+            Node n = expr();
+            skipSpace();
+            if (pos < s.length()) throw error("unexpected '" + s.charAt(pos) + "'");
+            return n;
+        }
+
+        private Node expr() {
+            Node n = term();
+            while (true) {
+                if (eat('+')) n = binary(Op.ADD, n, term());
+                else if (eat('-')) n = binary(Op.SUB, n, term());
+                else return n;
+            }
+        }
+
+        private Node term() {
+            Node n = unaryExpr();
+            while (true) {
+                if (eat('*')) n = binary(Op.MUL, n, unaryExpr());
+                else if (eat('/')) n = binary(Op.DIV, n, unaryExpr());
+                else if (eat('%')) n = binary(Op.MOD, n, unaryExpr());
+                else return n;
+            }
+        }
+
+        private Node unaryExpr() {
+            if (eat('-')) return unary(Op.NEG, unaryExpr());
+            if (eat('+')) return unaryExpr();
+            return primary();
+        }
+
+        private Node primary() {
+            skipSpace();
+            if (eat('(')) {
+                Node n = expr();
+                expect(')');
+                return n;
+            }
+            int start = pos;
+            if (pos < s.length() && java.lang.Character.isDigit(s.charAt(pos))) {
+                while (pos < s.length() && java.lang.Character.isDigit(s.charAt(pos))) pos++;
+                try {
+                    return new Const(Integer.parseInt(s.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("number too large");
+                }
+            }
+            while (pos < s.length() && java.lang.Character.isLetter(s.charAt(pos))) pos++;
+            String name = s.substring(start, pos);
+            switch (name) {
+                case "wantedLevel", "bountyCents", "reputation", "active" -> { return new Field(name); }
+                case "min", "max" -> {
+                    expect('(');
+                    Node a = expr();
+                    expect(',');
+                    Node b = expr();
+                    expect(')');
+                    return binary(name.equals("min") ? Op.MIN : Op.MAX, a, b);
+                }
+                case "abs" -> {
+                    expect('(');
+                    Node a = expr();
+                    expect(')');
+                    return unary(Op.ABS, a);
+                }
+                case "" -> throw error(pos < s.length() ? "unexpected '" + s.charAt(pos) + "'" : "unexpected end");
+                default -> throw error("unknown name '" + name + "'");
+            }
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && java.lang.Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private boolean eat(char c) {
+            skipSpace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!eat(c)) throw error("expected '" + c + "'");
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("bad formula at " + pos + ": " + message);
+        }
+    }
+}
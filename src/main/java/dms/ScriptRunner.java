@@ -0,0 +1,205 @@
+package dms;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Class: ScriptRunner
+ * Purpose: Batch mode. Runs commands from a script file or the command line against one
+ * CharacterManager without prompts, for scheduled jobs. Data rows (list-active, top) go
+ * to one CsvWriter, whose 64 KB buffer is only handed to the sink when full or at the
+ * end, never per line. Every command also gets one line on the log: its outcome and how
+ * long it took.
+ *
+ * Commands (one per line; blank lines and lines starting with # are skipped):
+ *   load path | resync path     (CsvLoader.load / CsvLoader.resync)
+ *   add csv | update csv        (csv as in Character.fromCsv)
+ *   remove id
+ *   list-active                 (Character CSV rows)
+ *   top n [server]              (ReportGenerator CSV rows, score last)
+ *   export path                 (every character, as CharacterManager.writeCsv)
+ *   export-top n path           (Top-N report, as ReportGenerator.writeCsv)
+ * A command that fails (including a journal write of a --data store) is logged as FAIL and
+ * the script carries on; run returns how many failed.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class ScriptRunner {
+    private final CharacterManager manager;
+    private final CsvWriter out;
+    private final Writer log;
+    private final ReportGenerator reporter = new ReportGenerator();
+
+    public ScriptRunner(CharacterManager manager, CsvWriter out, Writer log) {
+        this.manager = manager;
+        this.out = out;
+        this.log = log;
+    }
+
+    /** Run every line of script; returns the number of failed commands. */
+    public int run(BufferedReader script) throws IOException {
+        int failed = 0, lineNo = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNo++;
+            if (!execute(line, lineNo)) failed++;
+        }
+        finish();
+        return failed;
+    }
+
+    /** Run commands in order; returns the number of failed commands. */
+    public int run(List<String> commands) throws IOException {
+        int failed = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            if (!execute(commands.get(i), i + 1)) failed++;
+        }
+        finish();
+        return failed;
+    }
+
+    private void finish() throws IOException {
+        out.flush();
+        log.flush();
+    }
+
+    /** Execute one command and log it; false if it failed. Blank and comment lines succeed silently. */
+    boolean execute(String line, int lineNo) throws IOException {
+        String cmd = line.trim();
+        if (cmd.isEmpty() || cmd.startsWith("#")) return true;
+        long start = System.nanoTime();
+        String result;
+        boolean ok = true;
+        try {
+            result = dispatch(cmd);
+        } catch (NumberFormatException e) {
+            result = "bad number: " + e.getMessage();
+            ok = false;
+        } catch (IllegalArgumentException | IOException | Failure e) {
+            result = e.getMessage();
+            ok = false;
+        } catch (UncheckedIOException e) { // the journal of a --data store failed
+            result = e.getMessage() + ": " + e.getCause();
+            ok = false;
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        log.write(String.format("%-4s %d: %s -> %s (%.1f ms)%n", ok ? "OK" : "FAIL", lineNo, cmd, result, millis));
+        return ok;
+    }
+
+    private String dispatch(String cmd) throws IOException {
+        int sp = cmd.indexOf(' ');
+        String verb = (sp < 0 ? cmd : cmd.substring(0, sp)).toLowerCase();
+        String arg = sp < 0 ? "" : cmd.substring(sp + 1).trim();
+        switch (verb) {
+            case "load" -> {
+                LoadResult r = new CsvLoader().load(path(arg), manager);
+                return r.getAdded() + " added, " + r.getRejected() + " skipped";
+            }
+            case "resync" -> {
+                return new CsvLoader().resync(path(arg), manager).toString();
+            }
+            case "add" -> {
+                if (!manager.add(parse(arg))) throw new Failure("invalid or duplicate");
+                return "added";
+            }
+            case "update" -> {
+                if (!manager.update(parse(arg))) throw new Failure("not found, invalid or handle taken");
+                return "updated";
+            }
+            case "remove" -> {
+                if (!manager.remove(Integer.parseInt(arg))) throw new Failure("not found");
+                return "removed";
+            }
+            case "list-active" -> {
+                return listActive() + " rows";
+            }
+            case "top" -> {
+                String[] a = words(arg, 1, 2);
+                int n = Integer.parseInt(a[0]);
+                Server server = a.length > 1 ? server(a[1]) : null;
+                List<ThreatEntry> top = server == null ? reporter.topN(n, manager) : manager.rankPage(1, n, server);
+                for (ThreatEntry te : top) {
+                    ReportGenerator.writeRow(te, out);
+                    out.endRow();
+                }
+                return top.size() + " rows";
+            }
+            case "export" -> {
+                try (FileChannel file = create(path(arg))) {
+                    manager.writeCsv(file);
+                    return file.size() + " bytes";
+                }
+            }
+            case "export-top" -> {
+                String[] a = words(arg, 2, 2);
+                List<ThreatEntry> top = reporter.topN(Integer.parseInt(a[0]), manager);
+                try (FileChannel file = create(path(a[1]))) {
+                    reporter.writeCsv(top, file);
+                    return top.size() + " rows, " + file.size() + " bytes";
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown command: " + verb);
+        }
+    }
+
+    /** Write the active characters from a snapshot, so writers are not held up meanwhile. */
+    private int listActive() throws IOException {
+        int[] rows = {0};
+        try (CharacterSnapshot snap = manager.snapshot()) {
+            snap.forEach(c -> {
+                if (!c.isActive()) return;
+                try {
+                    out.character(c).endRow();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    private static Character parse(String csv) {
+        Character c = Character.fromCsv(csv);
+        if (c == null) throw new IllegalArgumentException("malformed character: " + csv);
+        return c;
+    }
+
+    private static Path path(String arg) {
+        if (arg.isEmpty()) throw new IllegalArgumentException("missing path");
+        return Path.of(arg);
+    }
+
+    private static String[] words(String arg, int min, int max) {
+        String[] a = arg.isEmpty() ? new String[0] : arg.split("\\s+");
+        if (a.length < min || a.length > max) throw new IllegalArgumentException("wrong arguments: " + arg);
+        return a;
+    }
+
+    private static Server server(String s) {
+        return Server.tryParse(s).orElseThrow(() -> new IllegalArgumentException("unknown server: " + s));
+    }
+
+    private static FileChannel create(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** A command that ran but did not succeed (e.g. remove of a missing id). */
+    private static final class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Failure(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
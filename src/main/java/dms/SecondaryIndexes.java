@@ -0,0 +1,137 @@
+package dms;
+
+import java.util.BitSet;
+
+/**
+ * Class: SecondaryIndexes
+ * Purpose: Row-level secondary indexes for composite queries: one bitmap per Server,
+ * one for active, one per wantedLevel 0..6 (higher levels share an overflow bitmap) and
+ * sorted range indexes on bountyCents and reputation. A query intersects the bitmaps
+ * first; range conditions are then answered from the sorted index, or by checking the
+ * surviving rows directly when there are fewer of them than the range would return.
+ * An occupation condition is a final pass comparing each survivor's dictionary code.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class SecondaryIndexes implements CharacterIndex {
+    static final int LEVELS = 7;
+
+    private final BitSet live = new BitSet();
+    private final BitSet active = new BitSet();
+    private final BitSet[] byServer = new BitSet[Server.values().length];
+    private final BitSet[] byWanted = new BitSet[LEVELS + 1];
+    private final SortedIntIndex bounty = new SortedIntIndex();
+    private final SortedIntIndex reputation = new SortedIntIndex();
+
+    SecondaryIndexes() {
+        for (int i = 0; i < byServer.length; i++) byServer[i] = new BitSet();
+        for (int i = 0; i < byWanted.length; i++) byWanted[i] = new BitSet();
+    }
+
+    static int level(int wantedLevel) {
+        return Math.min(Math.max(wantedLevel, 0), LEVELS);
+    }
+
+    @Override
+    public void added(int row, Character c) {
+        live.set(row);
+        if (c.isActive()) active.set(row);
+        byServer[c.getServer().ordinal()].set(row);
+        byWanted[level(c.getWantedLevel())].set(row);
+        bounty.add(row, c.getBountyCents());
+        reputation.add(row, c.getReputation());
+    }
+
+    @Override
+    public void updated(int row, Character before, Character after) {
+        active.set(row, after.isActive());
+        if (before.getServer() != after.getServer()) {
+            byServer[before.getServer().ordinal()].clear(row);
+            byServer[after.getServer().ordinal()].set(row);
+        }
+        if (level(before.getWantedLevel()) != level(after.getWantedLevel())) {
+            byWanted[level(before.getWantedLevel())].clear(row);
+            byWanted[level(after.getWantedLevel())].set(row);
+        }
+        if (before.getBountyCents() != after.getBountyCents()) {
+            bounty.remove(row, before.getBountyCents());
+            bounty.add(row, after.getBountyCents());
+        }
+        if (before.getReputation() != after.getReputation()) {
+            reputation.remove(row, before.getReputation());
+            reputation.add(row, after.getReputation());
+        }
+    }
+
+    @Override
+    public void removed(int row, Character before) {
+        live.clear(row);
+        active.clear(row);
+        byServer[before.getServer().ordinal()].clear(row);
+        byWanted[level(before.getWantedLevel())].clear(row);
+        bounty.remove(row, before.getBountyCents());
+        reputation.remove(row, before.getReputation());
+    }
+
+    @Override
+    public void cleared() {
+        live.clear();
+        active.clear();
+        for (BitSet b : byServer) b.clear();
+        for (BitSet b : byWanted) b.clear();
+        bounty.clear();
+        reputation.clear();
+    }
+
+    /** Rows matching every condition of q. */
+    BitSet match(CharacterQuery q, CharacterStore store) {
+        BitSet rows = (BitSet) live.clone();
+        if (q.getServer() != null) rows.and(byServer[q.getServer().ordinal()]);
+        if (q.getActive() != null) {
+            if (q.getActive()) rows.and(active); else rows.andNot(active);
+        }
+
+        boolean verify = false;
+        if (q.hasWantedRange()) {
+            int min = q.getMinWantedLevel(), max = q.getMaxWantedLevel();
+            if (max < 0 || min > max) return new BitSet();
+            int hi = level(max);
+            BitSet levels = new BitSet();
+            for (int l = level(min); l <= hi; l++) levels.or(byWanted[l]);
+            rows.and(levels);
+            // The overflow bitmap mixes every level above 6: re-check exact values if the range cuts it.
+            verify = hi == LEVELS && (min > LEVELS || max != Integer.MAX_VALUE);
+        }
+
+        verify |= narrow(rows, bounty, q.getMinBountyCents(), q.getMaxBountyCents(), q.hasBountyRange());
+        verify |= narrow(rows, reputation, q.getMinReputation(), q.getMaxReputation(), q.hasReputationRange());
+
+        if (verify) {
+            for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+                if (!q.matches(store.serverAt(r), store.activeAt(r), store.wantedLevelAt(r),
+                        store.bountyCentsAt(r), store.reputationAt(r))) rows.clear(r);
+            }
+        }
+        if (q.getOccupation() != null) {
+            int code = store.occupations().codeOf(q.getOccupation());
+            if (code == StringDictionary.NONE) return new BitSet();
+            for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+                if (store.occupationCodeAt(r) != code) rows.clear(r);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Apply a range condition. Returns true when it was left for the final per-row check
+     * because the candidates are already fewer than the rows the range index would yield.
+     */
+    private static boolean narrow(BitSet rows, SortedIntIndex index, int lo, int hi, boolean bounded) {
+        if (!bounded) return false;
+        if (rows.cardinality() <= index.estimate(lo, hi)) return true;
+        BitSet inRange = new BitSet();
+        index.rows(lo, hi, inRange);
+        rows.and(inRange);
+        return false;
+    }
+}
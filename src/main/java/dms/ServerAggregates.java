@@ -0,0 +1,64 @@
+package dms;
+
+import java.util.Arrays;
+
+/**
+ * Class: ServerAggregates
+ * Purpose: Running totals per Server plus a global slot - count, active count, bounty sum,
+ * reputation sum and wantedLevel histogram - adjusted in O(1) on every add, update and
+ * remove, so AggregateStats never needs a scan.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class ServerAggregates implements CharacterIndex {
+    private static final int SERVERS = Server.values().length;
+    /** Slots 0..SERVERS-1 are per server; slot SERVERS is the global total. */
+    private static final int ALL = SERVERS;
+
+    private final long[] count = new long[SERVERS + 1];
+    private final long[] active = new long[SERVERS + 1];
+    private final long[] bounty = new long[SERVERS + 1];
+    private final long[] reputation = new long[SERVERS + 1];
+    private final long[][] wanted = new long[SERVERS + 1][SecondaryIndexes.LEVELS + 1];
+
+    private void apply(Character c, int sign) {
+        apply(c.getServer().ordinal(), c, sign);
+        apply(ALL, c, sign);
+    }
+
+    private void apply(int slot, Character c, int sign) {
+        count[slot] += sign;
+        if (c.isActive()) active[slot] += sign;
+        bounty[slot] += (long) sign * c.getBountyCents();
+        reputation[slot] += (long) sign * c.getReputation();
+        wanted[slot][SecondaryIndexes.level(c.getWantedLevel())] += sign;
+    }
+
+    @Override
+    public void added(int row, Character c) { apply(c, 1); }
+
+    @Override
+    public void updated(int row, Character before, Character after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    @Override
+    public void removed(int row, Character before) { apply(before, -1); }
+
+    @Override
+    public void cleared() {
+        Arrays.fill(count, 0);
+        Arrays.fill(active, 0);
+        Arrays.fill(bounty, 0);
+        Arrays.fill(reputation, 0);
+        for (long[] w : wanted) Arrays.fill(w, 0);
+    }
+
+    /** Figures for server, or for all servers when server is null. */
+    AggregateStats stats(Server server) {
+        int slot = server == null ? ALL : server.ordinal();
+        return new AggregateStats(server, count[slot], active[slot], bounty[slot], reputation[slot],
+                wanted[slot].clone());
+    }
+}
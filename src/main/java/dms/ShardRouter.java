@@ -0,0 +1,296 @@
+package dms;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Class: ShardRouter
+ * Purpose: Client side of a sharded deployment. Characters are partitioned by id: ids are
+ * hashed and the hash range is split evenly between the shards, each a DmsServer (usually
+ * its own process, see LocalShards) owning one range. Point operations go straight to the
+ * owning shard; size, handle lookups, Top-N and aggregates are scattered to every shard
+ * at once over pipelined connections and gathered here - Top-N by merging the shards'
+ * own sorted top lists, aggregates by summing.
+ *
+ * Handles must be unique across all shards, which no shard can check alone: add and update
+ * ask the other shards first, holding a lock striped by handle key, so the check holds as
+ * long as every write goes through one router.
+ * Thread-safe; each caller borrows its own pooled connection per shard.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class ShardRouter implements Closeable {
+    private static final int STRIPES = 64;
+
+    private final Shard[] shards;
+    private final Object[] handleLocks = new Object[STRIPES];
+
+    private ShardRouter(List<InetSocketAddress> addresses) {
+        shards = new Shard[addresses.size()];
+        for (int i = 0; i < shards.length; i++) shards[i] = new Shard(addresses.get(i));
+        for (int i = 0; i < STRIPES; i++) handleLocks[i] = new Object();
+    }
+
+    /** Route over the shards at these addresses; the order defines which ids each owns. */
+    public static ShardRouter connect(List<InetSocketAddress> addresses) {
+        if (addresses.isEmpty()) throw new IllegalArgumentException("no shards");
+        return new ShardRouter(addresses);
+    }
+
+    /** connect to shards listening on these localhost ports. */
+    public static ShardRouter connect(int... ports) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int port : ports) addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return connect(addresses);
+    }
+
+    public int getShardCount() { return shards.length; }
+
+    /** Index of the shard that owns id. */
+    public int shardOf(int id) {
+        long hash = (id * 0x9E3779B9L) & 0xffffffffL; // Fibonacci hashing spreads sequential ids
+        return (int) ((hash * shards.length) >>> 32);
+    }
+
+    // --------------------- POINT OPERATIONS ---------------------
+
+    public boolean add(Character c) throws IOException {
+        if (!c.isValid()) return false;
+        synchronized (handleLock(c.getHandle())) {
+            int owner = shardOf(c.getId());
+            if (handleTakenElsewhere(c.getHandle(), c.getId(), owner)) return false;
+            return shards[owner].call("ADD " + csv(c)).get(0).equals("OK");
+        }
+    }
+
+    public boolean update(Character c) throws IOException {
+        synchronized (handleLock(c.getHandle())) {
+            int owner = shardOf(c.getId());
+            if (handleTakenElsewhere(c.getHandle(), c.getId(), owner)) return false;
+            return shards[owner].call("UPDATE " + csv(c)).get(0).equals("OK");
+        }
+    }
+
+    public boolean remove(int id) throws IOException {
+        return shards[shardOf(id)].call("REMOVE " + id).get(0).equals("OK");
+    }
+
+    public Optional<Character> findById(int id) throws IOException {
+        return first(shards[shardOf(id)].call("GET " + id));
+    }
+
+    public Optional<Character> findByHandle(String handle) throws IOException {
+        for (List<String> reply : scatter("HANDLE " + handle)) {
+            Optional<Character> c = first(reply);
+            if (c.isPresent()) return c;
+        }
+        return Optional.empty();
+    }
+
+    // --------------------- SCATTER-GATHER ---------------------
+
+    public int size() throws IOException {
+        int total = 0;
+        for (List<String> reply : scatter("SIZE")) total += Integer.parseInt(rows(reply).get(0));
+        return total;
+    }
+
+    /**
+     * Top-N Most Wanted across all shards (server null = all servers), ties by lowest id -
+     * the same entries ReportGenerator.topN gives for the union of the shards. Each shard
+     * sends its own top n in order and the lists are merged through a heap.
+     */
+    public List<ThreatEntry> topN(int n, Server server) throws IOException {
+        List<List<ThreatEntry>> lists = new ArrayList<>();
+        for (List<String> reply : scatter("LEADERS " + n + (server == null ? "" : " " + server))) {
+            List<ThreatEntry> list = new ArrayList<>();
+            for (String row : rows(reply)) {
+                int comma = row.lastIndexOf(',');
+                list.add(new ThreatEntry(Character.fromCsv(row.substring(0, comma)),
+                        Integer.parseInt(row.substring(comma + 1))));
+            }
+            lists.add(list);
+        }
+        // Heap of {list, position}, ordered by the entry each one points at.
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                ThreatEntry.RANKING.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        for (int i = 0; i < lists.size(); i++) if (!lists.get(i).isEmpty()) heads.add(new int[] {i, 0});
+        List<ThreatEntry> out = new ArrayList<>(n);
+        while (out.size() < n && !heads.isEmpty()) {
+            int[] h = heads.poll();
+            out.add(lists.get(h[0]).get(h[1]));
+            if (++h[1] < lists.get(h[0]).size()) heads.add(h);
+        }
+        return out;
+    }
+
+    /** Dashboard figures for server (null = all servers), summed over the shards. */
+    public AggregateStats aggregate(Server server) throws IOException {
+        long count = 0, active = 0, bounty = 0, reputation = 0;
+        long[] wanted = null;
+        for (List<String> reply : scatter("AGG" + (server == null ? "" : " " + server))) {
+            String[] f = rows(reply).get(0).split(",");
+            count += Long.parseLong(f[0]);
+            active += Long.parseLong(f[1]);
+            bounty += Long.parseLong(f[2]);
+            reputation += Long.parseLong(f[3]);
+            if (wanted == null) wanted = new long[f.length - 4];
+            for (int i = 0; i < wanted.length; i++) wanted[i] += Long.parseLong(f[4 + i]);
+        }
+        return new AggregateStats(server, count, active, bounty, reputation, wanted);
+    }
+
+    // --------------------- PLUMBING ---------------------
+
+    private Object handleLock(String handle) {
+        return handleLocks[(CharacterManager.handleKey(handle).hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /** True if a shard other than owner holds handle, for a character other than id. */
+    private boolean handleTakenElsewhere(String handle, int id, int owner) throws IOException {
+        if (shards.length == 1) return false;
+        List<List<String>> replies = scatter("HANDLE " + handle);
+        for (int i = 0; i < replies.size(); i++) {
+            if (i == owner) continue;
+            Optional<Character> c = first(replies.get(i));
+            if (c.isPresent() && c.get().getId() != id) return true;
+        }
+        return false;
+    }
+
+    /** Send request to every shard, then collect every reply (in shard order). */
+    private List<List<String>> scatter(String request) throws IOException {
+        Connection[] conns = new Connection[shards.length];
+        List<List<String>> replies = new ArrayList<>(shards.length);
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                conns[i] = shards[i].acquire();
+                conns[i].send(request);
+            }
+            for (int i = 0; i < shards.length; i++) {
+                replies.add(conns[i].reply());
+                shards[i].release(conns[i]);
+                conns[i] = null;
+            }
+            return replies;
+        } finally {
+            for (Connection c : conns) if (c != null) c.close(); // broken mid-request: drop it
+        }
+    }
+
+    private static String csv(Character c) throws IOException {
+        StringWriter out = new StringWriter();
+        CsvWriter.to(out).character(c).flush();
+        return out.toString();
+    }
+
+    /** The rows of an "OK n" reply; anything else is an error from the shard. */
+    private static List<String> rows(List<String> reply) throws IOException {
+        if (!reply.get(0).startsWith("OK")) throw new IOException("shard replied " + reply.get(0));
+        return reply.subList(1, reply.size());
+    }
+
+    private static Optional<Character> first(List<String> reply) throws IOException {
+        List<String> rows = rows(reply);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(Character.fromCsv(rows.get(0)));
+    }
+
+    /** Close every pooled connection. */
+    @Override
+    public void close() {
+        for (Shard s : shards) s.close();
+    }
+
+    /** One shard's address and its idle connections. */
+    private static final class Shard {
+        private final InetSocketAddress address;
+        private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+        Shard(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        Connection acquire() throws IOException {
+            Connection c = idle.poll();
+            return c != null ? c : new Connection(address);
+        }
+
+        void release(Connection c) {
+            idle.push(c);
+        }
+
+        List<String> call(String request) throws IOException {
+            Connection c = acquire();
+            try {
+                c.send(request);
+                List<String> reply = c.reply();
+                release(c);
+                c = null;
+                return reply;
+            } finally {
+                if (c != null) c.close();
+            }
+        }
+
+        void close() {
+            Connection c;
+            while ((c = idle.poll()) != null) c.close();
+        }
+    }
+
+    /** One connection speaking the DmsServer line protocol. */
+    private static final class Connection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void send(String request) throws IOException {
+            out.write(request);
+            out.write('\n');
+            out.flush();
+        }
+
+        /** The status line, then the rows an "OK n" status announces. */
+        List<String> reply() throws IOException {
+            List<String> lines = new ArrayList<>();
+            String status = in.readLine();
+            if (status == null) throw new IOException("shard closed the connection");
+            lines.add(status);
+            if (status.startsWith("OK ")) {
+                int n = Integer.parseInt(status.substring(3));
+                for (int i = 0; i < n; i++) lines.add(in.readLine());
+            }
+            return lines;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+    }
+}
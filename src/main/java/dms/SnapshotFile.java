@@ -0,0 +1,201 @@
+package dms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Class: SnapshotFile
+ * Purpose: Compact binary snapshot of the character store for fast restarts.
+ * Layout (little-endian):
+ * - header (32 bytes): magic "GDMS", version, record count, dictionary size,
+ *   dictionary byte length, CRC32 of everything after the header, and the first
+ *   MutationJournal generation not contained in the snapshot (0 when unused)
+ * - records: fixed-width rows of id, handle ref, occupation ref (-1 for none), wantedLevel,
+ *   bountyCents, reputation (ints) + server ordinal and active flag (bytes)
+ * - dictionary: end offsets (ints) followed by the UTF-8 bytes of each distinct string
+ * Written through a FileChannel (temp file + atomic rename, then an fsync of the directory
+ * so the rename itself is durable before any journal it replaces is deleted), read back
+ * through a memory-mapped buffer. Reading still decodes every record into a Character and
+ * CharacterManager.loadSnapshot re-inserts each through every index, so a restart is an
+ * O(n) rebuild - it only skips the CSV parsing and journal replay (SnapshotLoadBenchmark).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x534D4447; // "GDMS" little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 6 * Integer.BYTES + 2;
+    private static final int IO_BUFFER = 1 << 20;
+    private static final Server[] SERVERS = Server.values();
+
+    private SnapshotFile() { }
+
+    /** Write all characters to path, replacing any existing file atomically. */
+    public static void write(Path path, Iterable<Character> characters, int count) throws IOException {
+        write(path, characters, count, 0);
+    }
+
+    /** As write(path, characters, count), tagging the file with the journal generation it precedes. */
+    static void write(Path path, Iterable<Character> characters, int count, int journalGeneration)
+            throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> dict = new ArrayList<>();
+        CRC32 crc = new CRC32();
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            ch.position(HEADER_BYTES);
+
+            int written = 0;
+            for (Character c : characters) {
+                if (buf.remaining() < RECORD_BYTES) flush(ch, buf, crc);
+                buf.putInt(c.getId());
+                buf.putInt(ref(c.getHandle(), refs, dict));
+                buf.putInt(ref(c.getOccupation(), refs, dict));
+                buf.putInt(c.getWantedLevel());
+                buf.putInt(c.getBountyCents());
+                buf.putInt(c.getReputation());
+                buf.put((byte) c.getServer().ordinal());
+                buf.put((byte) (c.isActive() ? 1 : 0));
+                written++;
+            }
+            if (written != count) throw new IOException("Character count changed while writing snapshot");
+
+            int end = 0;
+            List<byte[]> encoded = new ArrayList<>(dict.size());
+            for (String s : dict) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                encoded.add(b);
+                end += b.length;
+                if (buf.remaining() < Integer.BYTES) flush(ch, buf, crc);
+                buf.putInt(end);
+            }
+            for (byte[] b : encoded) {
+                int off = 0;
+                while (off < b.length) {
+                    if (!buf.hasRemaining()) flush(ch, buf, crc);
+                    int n = Math.min(buf.remaining(), b.length - off);
+                    buf.put(b, off, n);
+                    off += n;
+                }
+            }
+            flush(ch, buf, crc);
+
+            buf.clear();
+            buf.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(dict.size()).putInt(end)
+                    .putLong(crc.getValue()).putInt(journalGeneration);
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf, HEADER_BYTES - buf.remaining());
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * fsync dir, making renames and new or deleted files in it durable. Skipped on Windows,
+     * where a directory cannot be opened as a channel (and NTFS journals renames itself).
+     */
+    static void syncDirectory(Path dir) throws IOException {
+        if (System.getProperty("os.name").startsWith("Windows")) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        }
+    }
+
+    /** Map the snapshot at path, verify it and return its characters in stored order. */
+    public static List<Character> read(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES) throw new IOException("Snapshot too short: " + path);
+            if (size > Integer.MAX_VALUE) throw new IOException("Snapshot larger than 2 GiB: " + path);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt(0) != MAGIC) throw new IOException("Not a snapshot file: " + path);
+            int version = map.getInt(4);
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            int count = map.getInt(8);
+            int dictSize = map.getInt(12);
+            int dictBytes = map.getInt(16);
+            long checksum = map.getLong(20);
+
+            long expected = HEADER_BYTES + (long) count * RECORD_BYTES + (long) dictSize * Integer.BYTES + dictBytes;
+            if (count < 0 || dictSize < 0 || dictBytes < 0 || expected != size)
+                throw new IOException("Snapshot size mismatch: " + path);
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(HEADER_BYTES, (int) size - HEADER_BYTES));
+            if (crc.getValue() != checksum) throw new IOException("Snapshot checksum mismatch: " + path);
+
+            // Each distinct string is decoded once and shared by every record that uses it.
+            int offsets = HEADER_BYTES + count * RECORD_BYTES;
+            int bytes = offsets + dictSize * Integer.BYTES;
+            String[] dict = new String[dictSize];
+            byte[] scratch = new byte[64];
+            int start = 0;
+            for (int i = 0; i < dictSize; i++) {
+                int end = map.getInt(offsets + i * Integer.BYTES);
+                int len = end - start;
+                if (len > scratch.length) scratch = new byte[len];
+                map.get(bytes + start, scratch, 0, len);
+                dict[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+                start = end;
+            }
+
+            List<Character> out = new ArrayList<>(count);
+            for (int i = 0, p = HEADER_BYTES; i < count; i++, p += RECORD_BYTES) {
+                int occupation = map.getInt(p + 8);
+                out.add(new Character(map.getInt(p), dict[map.getInt(p + 4)], SERVERS[map.get(p + 24)],
+                        occupation < 0 ? null : dict[occupation], map.getInt(p + 12), map.getInt(p + 16),
+                        map.getInt(p + 20), map.get(p + 25) != 0));
+            }
+            return out;
+        }
+    }
+
+    /** Journal generation stored in the header of the snapshot at path. */
+    static int journalGeneration(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            if (header.position() < HEADER_BYTES || header.getInt(0) != MAGIC)
+                throw new IOException("Not a snapshot file: " + path);
+            return header.getInt(28);
+        }
+    }
+
+    /** Dictionary index of s, adding it on first use; -1 for null. */
+    private static int ref(String s, Map<String, Integer> refs, List<String> dict) {
+        if (s == null) return -1;
+        Integer r = refs.get(s);
+        if (r == null) {
+            r = dict.size();
+            refs.put(s, r);
+            dict.add(s);
+        }
+        return r;
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf, CRC32 crc) throws IOException {
+        buf.flip();
+        crc.update(buf.duplicate());
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+}
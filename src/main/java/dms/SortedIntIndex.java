@@ -0,0 +1,116 @@
+package dms;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Class: SortedIntIndex
+ * Purpose: Range index from an int value to the rows holding it, stored as packed
+ * (value, row) longs. Most entries sit in a sorted base array searched by binary search;
+ * recent inserts go to a small unsorted pending array, found again on removal through a
+ * row-to-slot map, and removals of base entries just mark the row stale. The two are
+ * merged back into one sorted array once pending grows past a fraction of the base, so
+ * writes stay O(1) amortized and range reads touch only the matching entries.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class SortedIntIndex {
+    private static final int MIN_PENDING = 1024;
+
+    private long[] base = new long[0];
+    private int baseSize;
+    /** Rows whose base entry no longer counts (removed or re-valued). */
+    private final BitSet stale = new BitSet();
+    private int staleCount;
+    private long[] pending = new long[64];
+    private int pendingSize;
+    /** Row to its pending slot + 1 (0 = not pending); a row has at most one pending entry. */
+    private int[] pendingSlot = new int[64];
+
+    static long key(int value, int row) {
+        return ((long) value << 32) | row;
+    }
+
+    void add(int row, int value) {
+        if (pendingSize == pending.length) pending = Arrays.copyOf(pending, pendingSize * 2);
+        if (row >= pendingSlot.length) pendingSlot = Arrays.copyOf(pendingSlot, Math.max(row + 1, pendingSlot.length * 2));
+        pending[pendingSize++] = key(value, row);
+        pendingSlot[row] = pendingSize;
+        if (pendingSize > Math.max(MIN_PENDING, baseSize >> 4)) merge();
+    }
+
+    void remove(int row, int value) {
+        long k = key(value, row);
+        if (!stale.get(row) && Arrays.binarySearch(base, 0, baseSize, k) >= 0) {
+            stale.set(row);
+            staleCount++;
+            return;
+        }
+        int slot = row < pendingSlot.length ? pendingSlot[row] - 1 : -1;
+        if (slot < 0 || pending[slot] != k) return;
+        pendingSlot[row] = 0;
+        long last = pending[--pendingSize];
+        if (slot < pendingSize) {
+            pending[slot] = last;
+            pendingSlot[(int) last] = slot + 1;
+        }
+    }
+
+    private void forgetPending() {
+        for (int j = 0; j < pendingSize; j++) pendingSlot[(int) pending[j]] = 0;
+        pendingSize = 0;
+    }
+
+    void clear() {
+        baseSize = 0;
+        forgetPending();
+        stale.clear();
+        staleCount = 0;
+    }
+
+    /** Set in out every row whose value is within [lo, hi]. */
+    void rows(int lo, int hi, BitSet out) {
+        if (lo > hi) return;
+        int i = lowerBound(key(lo, 0));
+        long end = key(hi, Integer.MAX_VALUE);
+        for (; i < baseSize && base[i] <= end; i++) {
+            int row = (int) base[i];
+            if (staleCount == 0 || !stale.get(row)) out.set(row);
+        }
+        long start = key(lo, 0);
+        for (int j = 0; j < pendingSize; j++) {
+            if (pending[j] >= start && pending[j] <= end) out.set((int) pending[j]);
+        }
+    }
+
+    /** Upper bound on the number of rows rows(lo, hi, ...) would return, in O(log n). */
+    int estimate(int lo, int hi) {
+        if (lo > hi) return 0;
+        return lowerBound(key(hi, Integer.MAX_VALUE) + 1) - lowerBound(key(lo, 0)) + pendingSize;
+    }
+
+    private int lowerBound(long k) {
+        int lo = 0, hi = baseSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (base[mid] < k) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private void merge() {
+        Arrays.sort(pending, 0, pendingSize);
+        long[] merged = new long[Math.max(16, (baseSize - staleCount + pendingSize) * 5 / 4)];
+        int n = 0, i = 0, j = 0;
+        while (i < baseSize || j < pendingSize) {
+            if (i < baseSize && stale.get((int) base[i])) { i++; continue; }
+            if (j >= pendingSize || (i < baseSize && base[i] < pending[j])) merged[n++] = base[i++];
+            else merged[n++] = pending[j++];
+        }
+        base = merged;
+        baseSize = n;
+        forgetPending();
+        stale.clear();
+        staleCount = 0;
+    }
+}
@@ -0,0 +1,369 @@
+package dms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * Class: StatHistory
+ * Purpose: Every change to a character's wantedLevel, bountyCents and reputation, with
+ * the time it happened, for trend and top-movers queries.
+ *
+ * Changes are appended, per row, to small byte blocks carved from one shared arena -
+ * no object per change. A block starts with an absolute entry (values from zero, time
+ * from the block's start time); each later entry is a varint header (seconds since the
+ * previous entry << 3 | mask of the fields that changed) followed by the zigzag varint
+ * delta of each changed field, so a typical change takes 4-7 bytes. Times are kept to
+ * the second, which is as fine as a trend needs and saves a byte per change. A row's
+ * last block starts at 16 bytes and is moved to one twice the size whenever it fills,
+ * up to 256 bytes, when it is sealed and a new one started - so a rarely-changed
+ * character costs a few dozen bytes, and no block is less than half used. The start
+ * time of each block is kept so a query binary-searches to the block in effect at the
+ * start of its range and decodes only from there to the end of the range.
+ *
+ * A character gets a history on its first change; its first entry (time 0) holds the
+ * values it had before that, i.e. since it was added or loaded. History is in memory only.
+ * Callbacks run under the manager's write lock; queries need at least its read lock.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+final class StatHistory implements CharacterIndex {
+    private static final int MIN_BLOCK = 16;
+    private static final int SIZE_CLASSES = 5; // 16, 32, 64, 128, 256 bytes
+    /** Largest entry: a 10-byte header and three 5-byte deltas. */
+    private static final int MAX_ENTRY = 25;
+    private static final int WL = 1, BOUNTY = 2, REP = 4, ALL = 7;
+
+    /** One row's history: its blocks, and the latest entry (the base for the next delta). */
+    private static final class Series {
+        int[] offsets = new int[1];
+        long[] starts = new long[1];
+        int blocks;
+        /** Size class of the last block; every earlier one is of the largest class. */
+        int tailClass;
+        /** Arena position where the next entry goes, in the last block. */
+        int tail;
+        /** Seconds. */
+        long lastTime;
+        int wl, bounty, rep;
+        int changes;
+        long used;
+    }
+
+    private final LongSupplier clock;
+    private Series[] series = new Series[16];
+    private byte[] arena = new byte[MIN_BLOCK << 10];
+    private int top;
+    private final int[][] free = new int[SIZE_CLASSES][16];
+    private final int[] freeCount = new int[SIZE_CLASSES];
+    private final byte[] scratch = new byte[MAX_ENTRY];
+    private long changes;
+    private long usedBytes;
+    private long freeBytes;
+
+    StatHistory(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** Changes recorded for the characters currently stored. */
+    long changes() { return changes; }
+
+    /** Bytes of encoded entries, first entries of each block included. */
+    long encodedBytes() { return usedBytes; }
+
+    /** Arena bytes held by blocks, including their unused tails. */
+    long blockBytes() { return top - freeBytes; }
+
+    // --------------------- RECORDING (write lock held) ---------------------
+
+    @Override
+    public void added(int row, Character c) { }
+
+    @Override
+    public void updated(int row, Character before, Character after) {
+        int wl = after.getWantedLevel(), bounty = after.getBountyCents(), rep = after.getReputation();
+        if (wl == before.getWantedLevel() && bounty == before.getBountyCents() && rep == before.getReputation())
+            return;
+        if (row >= series.length) series = Arrays.copyOf(series, Math.max(row + 1, series.length * 2));
+        Series s = series[row];
+        if (s == null) {
+            s = series[row] = new Series();
+            openBlock(s, 0);
+            write(s, 0, ALL, before.getWantedLevel(), before.getBountyCents(), before.getReputation());
+        }
+        long time = Math.max(Math.floorDiv(clock.getAsLong(), 1000), s.lastTime);
+        int mask = (wl != s.wl ? WL : 0) | (bounty != s.bounty ? BOUNTY : 0) | (rep != s.rep ? REP : 0);
+        if (mask == 0) return; // a zero header would read as the end of the block
+        int len = encode(time - s.lastTime, mask, (long) wl - s.wl, (long) bounty - s.bounty, (long) rep - s.rep);
+        if (s.tail + len > blockEnd(s, s.blocks - 1) && s.tailClass < SIZE_CLASSES - 1) growTail(s);
+        if (s.tail + len > blockEnd(s, s.blocks - 1)) {
+            openBlock(s, time);
+            write(s, time, ALL, wl, bounty, rep);
+        } else {
+            append(s, len);
+        }
+        s.lastTime = time;
+        s.wl = wl;
+        s.bounty = bounty;
+        s.rep = rep;
+        s.changes++;
+        changes++;
+    }
+
+    @Override
+    public void removed(int row, Character before) {
+        Series s = row < series.length ? series[row] : null;
+        if (s == null) return;
+        for (int b = 0; b < s.blocks; b++) release(s.offsets[b], sizeClass(s, b));
+        usedBytes -= s.used;
+        changes -= s.changes;
+        series[row] = null;
+    }
+
+    @Override
+    public void cleared() {
+        series = new Series[16];
+        arena = new byte[MIN_BLOCK << 10];
+        top = 0;
+        Arrays.fill(freeCount, 0);
+        changes = usedBytes = freeBytes = 0;
+    }
+
+    /** Write an absolute entry (the first of a block) at the series tail. */
+    private void write(Series s, long time, int mask, int wl, int bounty, int rep) {
+        append(s, encode(0, mask, wl, bounty, rep));
+        s.lastTime = time;
+        s.wl = wl;
+        s.bounty = bounty;
+        s.rep = rep;
+    }
+
+    private void append(Series s, int len) {
+        System.arraycopy(scratch, 0, arena, s.tail, len);
+        s.tail += len;
+        s.used += len;
+        usedBytes += len;
+    }
+
+    private int encode(long dt, int mask, long dwl, long dbounty, long drep) {
+        int pos = putVarint(scratch, 0, dt << 3 | mask);
+        if ((mask & WL) != 0) pos = putVarint(scratch, pos, zigzag(dwl));
+        if ((mask & BOUNTY) != 0) pos = putVarint(scratch, pos, zigzag(dbounty));
+        if ((mask & REP) != 0) pos = putVarint(scratch, pos, zigzag(drep));
+        return pos;
+    }
+
+    private void openBlock(Series s, long start) {
+        if (s.blocks == s.offsets.length) {
+            s.offsets = Arrays.copyOf(s.offsets, s.blocks * 2);
+            s.starts = Arrays.copyOf(s.starts, s.blocks * 2);
+        }
+        int b = s.blocks++;
+        s.tailClass = 0;
+        s.offsets[b] = allocate(0);
+        s.starts[b] = start;
+        s.tail = s.offsets[b];
+    }
+
+    /** Move the last block to one of the next size class. */
+    private void growTail(Series s) {
+        int b = s.blocks - 1;
+        int off = allocate(s.tailClass + 1);
+        int used = s.tail - s.offsets[b];
+        System.arraycopy(arena, s.offsets[b], arena, off, used);
+        release(s.offsets[b], s.tailClass);
+        s.tailClass++;
+        s.offsets[b] = off;
+        s.tail = off + used;
+    }
+
+    private int allocate(int cls) {
+        int size = MIN_BLOCK << cls;
+        if (freeCount[cls] > 0) {
+            int off = free[cls][--freeCount[cls]];
+            Arrays.fill(arena, off, off + size, (byte) 0); // a zero byte ends a block's entries
+            freeBytes -= size;
+            return off;
+        }
+        if (top + size > arena.length) {
+            if (top > Integer.MAX_VALUE - 8 - size) throw new IllegalStateException("stat history is full");
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8L, Math.max(top + size, 2L * arena.length)));
+        }
+        int off = top;
+        top += size;
+        return off;
+    }
+
+    private void release(int off, int cls) {
+        if (freeCount[cls] == free[cls].length) free[cls] = Arrays.copyOf(free[cls], freeCount[cls] * 2);
+        free[cls][freeCount[cls]++] = off;
+        freeBytes += MIN_BLOCK << cls;
+    }
+
+    private static int sizeClass(Series s, int b) { return b == s.blocks - 1 ? s.tailClass : SIZE_CLASSES - 1; }
+
+    private static int blockEnd(Series s, int b) { return s.offsets[b] + (MIN_BLOCK << sizeClass(s, b)); }
+
+    // --------------------- QUERIES (read lock held) ---------------------
+
+    /**
+     * History of the character in row from..to (epoch millis, inclusive): the values in
+     * effect at from, stamped with from, then every change up to to. current supplies the
+     * values when the character has never changed, and its active flag for threat scores
+     * under formula.
+     */
+    List<StatPoint> history(int row, Character current, long from, long to, ScoringFormula formula) {
+        List<StatPoint> out = new ArrayList<>();
+        Series s = row < series.length ? series[row] : null;
+        boolean active = current.isActive();
+        if (s == null) {
+            out.add(point(from, current.getWantedLevel(), current.getBountyCents(), current.getReputation(), active, formula));
+            return out;
+        }
+        Cursor c = new Cursor(arena, s);
+        c.seek(Math.floorDiv(from, 1000));
+        out.add(point(Math.max(c.time * 1000, from), c.wl, c.bounty, c.rep, active, formula));
+        long last = Math.floorDiv(to, 1000);
+        while (c.hasNext() && c.nextTime() <= last) {
+            c.next();
+            out.add(point(c.time * 1000, c.wl, c.bounty, c.rep, active, formula));
+        }
+        return out;
+    }
+
+    private static StatPoint point(long time, int wl, int bounty, int rep, boolean active, ScoringFormula formula) {
+        return new StatPoint(time, wl, bounty, rep, StatPoint.Stat.THREAT.of(wl, bounty, rep, active, formula));
+    }
+
+    /**
+     * The n rows whose stat rose most from from to to, largest rise first (ties by row);
+     * rows whose latest change is not after from are skipped without decoding. Only rises
+     * count. THREAT is scored with formula, using each row's current flag from activeOfRow.
+     * Each mover's id is filled in by idOfRow.
+     */
+    List<StatMover> topMovers(StatPoint.Stat stat, long from, long to, int n, ScoringFormula formula,
+                              IntPredicate activeOfRow, IntUnaryOperator idOfRow) {
+        if (n <= 0) return new ArrayList<>();
+        // Min-heap of the best n seen so far: {change, row, from value, to value}.
+        long first = Math.floorDiv(from, 1000), last = Math.floorDiv(to, 1000);
+        PriorityQueue<long[]> best = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+        for (int row = 0; row < series.length; row++) {
+            Series s = series[row];
+            if (s == null || s.lastTime <= first) continue;
+            Cursor c = new Cursor(arena, s);
+            boolean active = stat == StatPoint.Stat.THREAT && activeOfRow.test(row);
+            c.seek(first);
+            int before = stat.of(c.wl, c.bounty, c.rep, active, formula);
+            c.advance(last);
+            int after = stat.of(c.wl, c.bounty, c.rep, active, formula);
+            long change = (long) after - before;
+            if (change <= 0) continue;
+            if (best.size() < n) best.add(new long[] {change, row, before, after});
+            else if (change > best.peek()[0]) {
+                best.poll();
+                best.add(new long[] {change, row, before, after});
+            }
+        }
+        List<StatMover> out = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            long[] m = best.poll();
+            out.add(new StatMover(idOfRow.applyAsInt((int) m[1]), stat, (int) m[2], (int) m[3]));
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    /** Walks one series' entries in time order, holding the values of the current entry. */
+    private static final class Cursor {
+        private final byte[] arena;
+        private final Series s;
+        private int block;
+        private int pos;
+        private int end;
+        long time;
+        int wl, bounty, rep;
+
+        Cursor(byte[] arena, Series s) {
+            this.arena = arena;
+            this.s = s;
+        }
+
+        /** Move to the last entry at or before t (the first entry if there is none). */
+        void seek(long t) {
+            int lo = 0, hi = s.blocks - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (s.starts[mid] <= t) lo = mid; else hi = mid - 1;
+            }
+            startBlock(lo);
+            next();
+            advance(t);
+        }
+
+        /** Move forward over every entry at or before t. */
+        void advance(long t) {
+            while (hasNext() && nextTime() <= t) next();
+        }
+
+        void startBlock(int b) {
+            block = b;
+            pos = s.offsets[b];
+            end = b == s.blocks - 1 ? s.tail : blockEnd(s, b);
+            time = s.starts[b];
+            wl = bounty = rep = 0;
+        }
+
+        boolean hasNext() {
+            return (pos < end && arena[pos] != 0) || block + 1 < s.blocks;
+        }
+
+        long nextTime() {
+            if (pos < end && arena[pos] != 0) {
+                long header = 0;
+                for (int shift = 0, p = pos; ; shift += 7) {
+                    byte b = arena[p++];
+                    header |= (long) (b & 0x7f) << shift;
+                    if (b >= 0) break;
+                }
+                return time + (header >>> 3);
+            }
+            return s.starts[block + 1];
+        }
+
+        void next() {
+            if (pos >= end || arena[pos] == 0) startBlock(block + 1);
+            long header = varint();
+            time += header >>> 3;
+            if ((header & WL) != 0) wl += (int) unzigzag(varint());
+            if ((header & BOUNTY) != 0) bounty += (int) unzigzag(varint());
+            if ((header & REP) != 0) rep += (int) unzigzag(varint());
+        }
+
+        private long varint() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = arena[pos++];
+                v |= (long) (b & 0x7f) << shift;
+                if (b >= 0) return v;
+            }
+        }
+    }
+
+    private static int putVarint(byte[] buf, int pos, long v) {
+        while ((v & ~0x7fL) != 0) {
+            buf[pos++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
+    private static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+
+    private static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+}
@@ -0,0 +1,33 @@
+package dms;
+
+/**
+ * Class: StatMover
+ * Purpose: One row of a top-movers report: how far a character's stat rose over a
+ * time range (value in effect at the start vs at the end).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class StatMover {
+    private final int id;
+    private final StatPoint.Stat stat;
+    private final int from;
+    private final int to;
+
+    StatMover(int id, StatPoint.Stat stat, int from, int to) {
+        this.id = id;
+        this.stat = stat;
+        this.from = from;
+        this.to = to;
+    }
+
+    public int getId() { return id; }
+    public StatPoint.Stat getStat() { return stat; }
+    public int getFrom() { return from; }
+    public int getTo() { return to; }
+    public long getChange() { return (long) to - from; }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s %d -> %d (%+d)", id, stat, from, to, getChange());
+    }
+}
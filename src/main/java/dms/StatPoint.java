@@ -0,0 +1,61 @@
+package dms;
+
+/**
+ * Class: StatPoint
+ * Purpose: One entry of a character's stat history: the wanted level, bounty and
+ * reputation it had from getTime() (epoch millis) until the next entry, and the threat
+ * score those give under the manager's scoring formula at query time. The history does
+ * not record the active flag, so a formula using active sees the character's current one.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class StatPoint {
+    /** A stat whose history can be queried. */
+    public enum Stat {
+        WANTED_LEVEL, BOUNTY, REPUTATION, THREAT;
+
+        /** This stat's value for the given fields (bounty in cents, threat by DEFAULT). */
+        public int of(int wantedLevel, int bountyCents, int reputation) {
+            return of(wantedLevel, bountyCents, reputation, false, ScoringFormula.DEFAULT);
+        }
+
+        /** This stat's value for the given fields, scoring threat with formula. */
+        public int of(int wantedLevel, int bountyCents, int reputation, boolean active, ScoringFormula formula) {
+            return switch (this) {
+                case WANTED_LEVEL -> wantedLevel;
+                case BOUNTY -> bountyCents;
+                case REPUTATION -> reputation;
+                case THREAT -> formula == ScoringFormula.DEFAULT
+                        ? ReportGenerator.score(wantedLevel, bountyCents, reputation)
+                        : formula.score(wantedLevel, bountyCents, reputation, active);
+            };
+        }
+    }
+
+    private final long time;
+    private final int wantedLevel;
+    private final int bountyCents;
+    private final int reputation;
+    private final int threatScore;
+
+    StatPoint(long time, int wantedLevel, int bountyCents, int reputation, int threatScore) {
+        this.time = time;
+        this.wantedLevel = wantedLevel;
+        this.bountyCents = bountyCents;
+        this.reputation = reputation;
+        this.threatScore = threatScore;
+    }
+
+    public long getTime() { return time; }
+    public int getWantedLevel() { return wantedLevel; }
+    public int getBountyCents() { return bountyCents; }
+    public int getReputation() { return reputation; }
+    public int getThreatScore() { return threatScore; }
+    public int get(Stat stat) { return stat == Stat.THREAT ? threatScore : stat.of(wantedLevel, bountyCents, reputation); }
+
+    @Override
+    public String toString() {
+        return String.format("%tF %<tT WL=%d Bounty=%d Rep=%d Score=%d",
+                time, wantedLevel, bountyCents, reputation, getThreatScore());
+    }
+}
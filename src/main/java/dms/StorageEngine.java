@@ -0,0 +1,13 @@
+package dms;
+
+/**
+ * Enum: StorageEngine
+ * Purpose: Selects how CharacterManager lays out its records.
+ * Values: HEAP (one Character object per record, plus a live leaderboard),
+ *         COLUMNAR (primitive column arrays, Character objects built on demand)
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public enum StorageEngine {
+    HEAP, COLUMNAR
+}
@@ -0,0 +1,99 @@
+package dms;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class: StringDictionary
+ * Purpose: Dictionary that gives every distinct string a small int code, so a value
+ * repeated across many records is stored once and each record keeps only its code.
+ * Values added by encode stay for good. Values added by acquire are reference-counted:
+ * each acquire is matched by a release of the code, and the value is dropped (its code
+ * free for reuse) when the last one goes. A dictionary is used one way or the other,
+ * not both. Each CharacterStore owns a counted one for occupations (see
+ * CharacterStore.occupations), so it holds exactly the values of the stored records and
+ * occupation filters are int compares.
+ * Lookups of known values are lock-free (one hash lookup, or an array read to decode);
+ * adding or dropping a value takes a short lock. Meant for low-cardinality values, not
+ * unique ones like handles. null is encoded as NONE.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public final class StringDictionary {
+    /** Code of null. */
+    public static final int NONE = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    /** References per code (acquire minus release). */
+    private int[] refs = new int[16];
+    private int[] freeCodes = new int[16];
+    private int freeCount;
+    /** Codes handed out so far, live or free. */
+    private int size;
+
+    /** Code for s, adding it if new. */
+    public int encode(String s) {
+        if (s == null) return NONE;
+        Integer code = codes.get(s);
+        return code != null ? code : add(s);
+    }
+
+    /** Code for s, or NONE if s has never been encoded. */
+    public int codeOf(String s) {
+        if (s == null) return NONE;
+        Integer code = codes.get(s);
+        return code == null ? NONE : code;
+    }
+
+    /** The value with this code (null for NONE). */
+    public String decode(int code) {
+        return code == NONE ? null : values[code];
+    }
+
+    /** The dictionary's own instance equal to s. */
+    public String intern(String s) {
+        return decode(encode(s));
+    }
+
+    /** Code for s with one more reference to it, adding it if new; see release. */
+    public synchronized int acquire(String s) {
+        if (s == null) return NONE;
+        int code = encode(s);
+        refs[code]++;
+        return code;
+    }
+
+    /** Drop one reference taken by acquire; the value is removed with its last one. */
+    public synchronized void release(int code) {
+        if (code == NONE || --refs[code] > 0) return;
+        codes.remove(values[code]);
+        values[code] = null;
+        if (freeCount == freeCodes.length) freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+        freeCodes[freeCount++] = code;
+    }
+
+    /** Number of values held. */
+    public synchronized int size() { return size - freeCount; }
+
+    private synchronized int add(String s) {
+        Integer code = codes.get(s);
+        if (code != null) return code;
+        int c;
+        String[] v = values;
+        if (freeCount > 0) {
+            c = freeCodes[--freeCount];
+        } else {
+            c = size++;
+            if (c == v.length) {
+                v = Arrays.copyOf(v, c * 2);
+                refs = Arrays.copyOf(refs, c * 2);
+            }
+        }
+        v[c] = s;
+        refs[c] = 0;
+        values = v; // publish the value before its code becomes visible
+        codes.put(s, c);
+        return c;
+    }
+}
@@ -0,0 +1,41 @@
+package dms;
+
+/**
+ * Class: SyncResult
+ * Purpose: Diff summary of CsvLoader.resync - rows inserted, updated and deleted (ids no
+ * longer in the file), rows left alone because their fingerprint matched, and rows
+ * that could not be applied (unparseable, invalid, or conflicting with another record).
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+public class SyncResult {
+    private int inserted;
+    private int updated;
+    private int deleted;
+    private int unchanged;
+    private int malformed;
+    private int rejected;
+
+    public int getInserted() { return inserted; }
+    public int getUpdated() { return updated; }
+    public int getDeleted() { return deleted; }
+    public int getUnchanged() { return unchanged; }
+    public int getMalformed() { return malformed; }
+    public int getRejected() { return rejected; }
+
+    /** Records that changed in the manager. */
+    public int getChanged() { return inserted + updated + deleted; }
+
+    void insertedOne() { inserted++; }
+    void updatedOne() { updated++; }
+    void deletedOne() { deleted++; }
+    void unchanged(int n) { unchanged += n; }
+    void malformed(int n) { malformed += n; }
+    void rejectedOne() { rejected++; }
+
+    @Override
+    public String toString() {
+        return String.format("%d inserted, %d updated, %d deleted, %d unchanged, %d malformed, %d rejected",
+                inserted, updated, deleted, unchanged, malformed, rejected);
+    }
+}
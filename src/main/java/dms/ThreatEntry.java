@@ -1,13 +1,19 @@
 package dms;
 
+import java.util.Comparator;
+
 /**
  * Class: ThreatEntry
  * Purpose: Represents a ranked entry for a "most wanted" report.
- * Comparable by threatScore to enable sorting.
+ * Comparable by threatScore to enable sorting; RANKING additionally breaks ties by id.
  * Author: Zekia Beyene
  * Date: October 2025
  */
 public class ThreatEntry implements Comparable<ThreatEntry> {
+    /** Leaderboard order: highest score first, ties broken by lowest id. */
+    public static final Comparator<ThreatEntry> RANKING = Comparator.<ThreatEntry>naturalOrder()
+            .thenComparingInt(te -> te.getCharacter().getId());
+
     private final Character character;
     private final int threatScore;
 
@@ -0,0 +1,122 @@
+package dms;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class: ThreatLeaderboard
+ * Purpose: Live "Most Wanted" ordering kept up to date by CharacterManager on every
+ * add, update and remove, so Top-N is a walk over the first N entries instead of a
+ * rescore + full sort. Entries are packed into a single long per character
+ * (inverted score in the high half, id in the low half), which orders by
+ * score descending and breaks ties by id ascending.
+ * One RankedKeySet holds everyone and one more per Server, so rank-of-id, a page of
+ * ranks and count-above-score are O(log n) globally or within a server.
+ * Scores come from the manager's ScoringFormula; rescore rebuilds the board for a new one.
+ * Author: Zekia Beyene
+ * Date: October 2025
+ */
+class ThreatLeaderboard implements CharacterIndex {
+    private final RankedKeySet all = new RankedKeySet();
+    private final RankedKeySet[] byServer = new RankedKeySet[Server.values().length];
+    private final Map<Integer, Long> keyById = new HashMap<>();
+    private ScoringFormula formula = ScoringFormula.DEFAULT;
+
+    ThreatLeaderboard() {
+        for (int i = 0; i < byServer.length; i++) byServer[i] = new RankedKeySet();
+    }
+
+    static long key(int id, int score) {
+        return ((long) ~score << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    static int idOf(long key) { return (int) key; }
+
+    static int scoreOf(long key) { return ~(int) (key >> 32); }
+
+    /** Smallest key of any entry with this score: every key below it has a higher score. */
+    static long firstKeyOf(int score) { return (long) ~score << 32; }
+
+    @Override
+    public void added(int row, Character c) {
+        put(c.getId(), c.getServer(), formula == ScoringFormula.DEFAULT ? ReportGenerator.score(c) : formula.score(c));
+    }
+
+    private void put(int id, Server server, int score) {
+        long k = key(id, score);
+        keyById.put(id, k);
+        all.add(k);
+        byServer[server.ordinal()].add(k);
+    }
+
+    /** Rebuild every entry of store under formula (DEFAULT hardcoded, others a Batch at a time). */
+    void rescore(CharacterStore store, ScoringFormula formula) {
+        cleared();
+        this.formula = formula;
+        if (formula == ScoringFormula.DEFAULT) {
+            for (int r = store.nextRow(0); r >= 0; r = store.nextRow(r + 1)) {
+                put(store.idAt(r), store.serverAt(r),
+                        ReportGenerator.score(store.wantedLevelAt(r), store.bountyCentsAt(r), store.reputationAt(r)));
+            }
+            return;
+        }
+        ScoringFormula.Batch batch = formula.newBatch();
+        int limit = store.rowLimit();
+        for (int base = 0; base < limit; base += ScoringFormula.Batch.SIZE) {
+            store.fillBatch(base, Math.min(base + ScoringFormula.Batch.SIZE, limit), batch);
+            int[] scores = formula.scores(batch);
+            for (int i = 0; i < batch.size; i++) {
+                if (batch.live[i]) put(store.idAt(base + i), store.serverAt(base + i), scores[i]);
+            }
+        }
+    }
+
+    @Override
+    public void updated(int row, Character before, Character after) {
+        removed(row, before);
+        added(row, after);
+    }
+
+    @Override
+    public void removed(int row, Character before) {
+        Long old = keyById.remove(before.getId());
+        if (old == null) return;
+        all.remove(old);
+        byServer[before.getServer().ordinal()].remove(old);
+    }
+
+    @Override
+    public void cleared() {
+        all.clear();
+        for (RankedKeySet s : byServer) s.clear();
+        keyById.clear();
+    }
+
+    int size() { return all.size(); }
+
+    private RankedKeySet of(Server server) {
+        return server == null ? all : byServer[server.ordinal()];
+    }
+
+    /** Keys of the n highest ranked characters, best first. */
+    long[] top(int n) { return all.page(0, n); }
+
+    /** Up to n keys starting at 0-based rank from, within server (null = everyone). */
+    long[] page(Server server, int from, int n) { return of(server).page(from, n); }
+
+    /** 0-based rank of id's key within server, or -1 if id is not on that board. */
+    int rankOf(int id, Server server) {
+        Long k = keyById.get(id);
+        if (k == null) return -1;
+        RankedKeySet set = of(server);
+        int rank = set.countBelow(k);
+        // k belongs to set iff it is the key sitting at that rank.
+        long[] at = set.page(rank, 1);
+        return at.length == 1 && at[0] == k ? rank : -1;
+    }
+
+    /** Characters in server (null = everyone) whose score is strictly above score. */
+    int countAbove(int score, Server server) {
+        return of(server).countBelow(firstKeyOf(score));
+    }
+}
@@ -0,0 +1,113 @@
+package dms;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChangeStream (change events published by CharacterManager)
+ * - A polled subscription sees every mutation after it subscribed, with before/after values.
+ * - A subscriber lapped by the ring gets an OVERFLOW event, then resumes or is disconnected.
+ * - Several asynchronous subscribers each rebuild the manager's exact contents.
+ */
+public class ChangeStreamTest {
+
+    private static Character mk(int id, String handle, int bounty) {
+        return new Character(id, handle, Server.values()[id % 3], "Occ", id % 7, bounty, 0, true);
+    }
+
+    @Test
+    void testPolledSubscriptionSeesEachChange() {
+        CharacterManager m = new CharacterManager();
+        m.add(mk(1, "Before", 10));
+        ChangeStream.Subscription s = m.subscribe(ChangeStream.Policy.OVERWRITE);
+        m.add(mk(2, "Doofnita", 20));
+        m.update(mk(2, "Doofnita", 25));
+        m.remove(1);
+        m.apply(new MutationBatch().add(mk(3, "Zed", 30)).remove(2));
+        m.update(mk(99, "Nobody", 1)); // fails: nothing published
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(5, s.getLag());
+        assertEquals(5, s.poll(e -> seen.add(e.getSequence() + " " + e.getType() + " " + e.getId() + " "
+                + e.getBountyCentsBefore() + "->" + e.getBountyCentsAfter()), 100));
+        assertEquals(List.of("1 ADD 2 0->20", "2 UPDATE 2 20->25", "3 REMOVE 1 10->0", "4 ADD 3 0->30",
+                "5 REMOVE 2 25->0"), seen);
+        assertEquals(0, s.getLag());
+        assertEquals(0, s.poll(e -> fail(), 100));
+
+        Character[] sides = new Character[2];
+        m.update(mk(3, "Zed2", 31));
+        s.poll(e -> { sides[0] = e.before(); sides[1] = e.after(); }, 1);
+        assertEquals("Zed", sides[0].getHandle());
+        assertEquals("Zed2", sides[1].getHandle());
+
+        s.close();
+        assertTrue(s.isClosed());
+        assertEquals(0, m.changes().getSubscriberCount());
+    }
+
+    @Test
+    void testLappedSubscriberOverflows() {
+        ChangeStream stream = new ChangeStream(8);
+        ChangeStream.Subscription overwrite = stream.subscribe(ChangeStream.Policy.OVERWRITE);
+        ChangeStream.Subscription disconnect = stream.subscribe(ChangeStream.Policy.DISCONNECT);
+        for (int i = 1; i <= 20; i++) stream.added(i, mk(i, "p" + i, i));
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(9, overwrite.poll(e -> seen.add(e.getType() + " " + (e.getType() == ChangeEvent.Type.OVERFLOW
+                ? e.getLost() : e.getId())), 100));
+        assertEquals("OVERFLOW 12", seen.get(0));
+        assertEquals("ADD 13", seen.get(1));
+        assertEquals("ADD 20", seen.get(8));
+        assertEquals(12, overwrite.getLost());
+        assertFalse(overwrite.isClosed());
+
+        List<ChangeEvent.Type> types = new ArrayList<>();
+        assertEquals(1, disconnect.poll(e -> types.add(e.getType()), 100));
+        assertEquals(List.of(ChangeEvent.Type.OVERFLOW), types);
+        assertTrue(disconnect.isClosed());
+        assertEquals(0, disconnect.poll(e -> fail(), 100));
+        assertEquals(1, stream.getSubscriberCount());
+    }
+
+    @Test
+    @Timeout(60)
+    void testAsyncSubscribersRebuildContents() throws InterruptedException {
+        CharacterManager m = new CharacterManager();
+        List<Map<Integer, String>> views = new ArrayList<>();
+        List<ChangeStream.Subscription> subs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<Integer, String> view = new HashMap<>();
+            views.add(view);
+            subs.add(m.subscribe(ChangeStream.Policy.DISCONNECT, e -> {
+                switch (e.getType()) {
+                    case ADD, UPDATE -> view.put(e.getId(), e.after().toString());
+                    case REMOVE -> view.remove(e.getId());
+                    default -> fail("unexpected " + e);
+                }
+            }));
+        }
+        Random rnd = new Random(17);
+        for (int i = 0; i < 40_000; i++) {
+            int id = 1 + rnd.nextInt(2_000);
+            switch (rnd.nextInt(3)) {
+                case 0 -> m.add(mk(id, "h" + id, rnd.nextInt(1000)));
+                case 1 -> m.update(mk(id, "h" + id, rnd.nextInt(1000)));
+                default -> m.remove(id);
+            }
+        }
+        long published = m.changes().getPublished();
+        for (ChangeStream.Subscription s : subs) {
+            while (s.getLag() > 0 && !s.isClosed()) Thread.sleep(1);
+            s.close();
+            assertNull(s.getFailure());
+            assertEquals(0, s.getLost());
+            assertEquals(published, s.getDelivered());
+        }
+        Map<Integer, String> expected = new HashMap<>();
+        for (Character c : m.getAll()) expected.put(c.getId(), c.toString());
+        for (Map<Integer, String> view : views) assertEquals(expected, view);
+    }
+}
@@ -0,0 +1,97 @@
+package dms;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests for the concurrent CharacterManager.
+ * - One writer keeps adding, updating and removing while reader threads do point lookups.
+ * - Every record is written with bountyCents = wantedLevel * 1000, so a reader that ever
+ *   sees a half-applied update fails the test.
+ * Reader throughput as threads are added is measured by benchmarks/ReaderScalingBenchmark.
+ */
+public class CharacterManagerConcurrencyTest {
+
+    private static final int IDS = 50_000;
+    private static final long RUN_MILLIS = 400;
+
+    private Character mk(int id, int wl, boolean active) {
+        return new Character(id, "Player" + id, Server.values()[id % 3], "Occ", wl, wl * 1000, -wl, active);
+    }
+
+    @Test
+    void testReadersNeverSeeTornRecords() throws Exception {
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager manager = new CharacterManager(engine);
+            for (int id = 1; id <= IDS; id++) manager.add(mk(id, id % 7, true));
+            long reads = run(manager, Math.max(2, Runtime.getRuntime().availableProcessors()));
+            assertTrue(reads > 0, engine + ": readers made no progress");
+        }
+    }
+
+    /** Run readers against one writer for RUN_MILLIS and return the number of reads done. */
+    private long run(CharacterManager manager, int readers) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        LongAdder reads = new LongAdder();
+        ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+
+        pool.submit(() -> {
+            Random rnd = new Random(1);
+            while (!stop.get()) {
+                int id = 1 + rnd.nextInt(IDS);
+                switch (rnd.nextInt(4)) {
+                    case 0 -> manager.remove(id);
+                    case 1 -> manager.add(mk(id, rnd.nextInt(7), rnd.nextBoolean()));
+                    default -> manager.update(mk(id, rnd.nextInt(7), rnd.nextBoolean()));
+                }
+            }
+            return null;
+        });
+        for (int t = 0; t < readers; t++) {
+            int seed = t;
+            pool.submit(() -> {
+                Random rnd = new Random(seed);
+                long local = 0;
+                try {
+                    while (!stop.get()) {
+                        int id = 1 + rnd.nextInt(IDS);
+                        Optional<Character> c = (local & 1) == 0
+                                ? manager.findById(id) : manager.findByHandle("player" + id);
+                        if (c.isPresent()) {
+                            Character x = c.get();
+                            if (x.getId() != id || x.getBountyCents() != x.getWantedLevel() * 1000
+                                    || x.getReputation() != -x.getWantedLevel()) {
+                                throw new AssertionError("Torn record: " + x);
+                            }
+                        }
+                        if ((++local & 1023) == 0) manager.topThreats(10);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+                reads.add(local);
+                return null;
+            });
+        }
+
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        if (failure.get() != null) fail(failure.get());
+
+        // The indexes must still agree with each other after the storm.
+        for (Character c : manager.getAll()) {
+            assertEquals(c.getId(), manager.findByHandle(c.getHandle()).get().getId());
+        }
+        assertEquals(manager.size(), manager.topThreats(Integer.MAX_VALUE).size());
+        return reads.sum();
+    }
+}
@@ -2,6 +2,7 @@ package dms;
 
 import org.junit.jupiter.api.*;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -47,6 +48,12 @@ public class CharacterManagerTest {
         c.setReputation(99);
         assertTrue(manager.update(c));
         assertEquals(99, manager.findById(2).get().getReputation());
+
+        // Invalid records are refused before anything changes.
+        assertFalse(manager.update(mk(2, " ", Server.NA, "Chef", -3, -100, 0, true)));
+        assertFalse(manager.update(mk(2, "AnitaBath", null, "Chef", 1, 1, 0, true)));
+        assertEquals(c.toString(), manager.findById(2).get().toString());
+        assertEquals(1, manager.query(new CharacterQuery().server(Server.NA)).size());
     }
 
     @Test
@@ -64,6 +71,32 @@ public class CharacterManagerTest {
         assertTrue(manager.findByHandle("Madoogin").isPresent());
     }
 
+    @Test
+    void testDuplicateHandleIgnoresCase() {
+        manager.add(mk(6, "Madoogin", Server.NA, "Streamer", 1, 300, 60, true));
+        assertFalse(manager.add(mk(7, "MADOOGIN", Server.EU, "Thief", 2, 100, 10, true)),
+                "Handles are unique regardless of case");
+        assertFalse(manager.add(mk(6, "Other", Server.EU, "Thief", 2, 100, 10, true)),
+                "Ids are unique");
+        assertEquals(6, manager.findByHandle("madoogin").get().getId());
+    }
+
+    @Test
+    void testUpdateHandleKeepsIndexInSync() {
+        manager.add(mk(8, "Rico", Server.NA, "Dealer", 4, 2200, 60, true));
+        manager.add(mk(9, "Mikey", Server.NA, "Dealer", 2, 1000, 55, true));
+
+        assertFalse(manager.update(mk(8, "mikey", Server.NA, "Dealer", 4, 2200, 60, true)),
+                "Cannot take a handle owned by another id");
+        assertTrue(manager.update(mk(8, "RicoSuave", Server.NA, "Dealer", 4, 2200, 60, true)));
+        assertTrue(manager.findByHandle("Rico").isEmpty(), "Old handle should be released");
+        assertEquals(8, manager.findByHandle("ricosuave").get().getId());
+
+        assertTrue(manager.remove(8));
+        assertTrue(manager.findByHandle("RicoSuave").isEmpty());
+        assertTrue(manager.add(mk(10, "Rico", Server.EU, "Chef", 1, 0, 0, true)));
+    }
+
     @Test
     void testIsActiveStatus() {
         Character c = mk(5, "InactivePlayer", Server.NA, "NPC", 0, 0, 0, false);
@@ -96,6 +129,337 @@ public class CharacterManagerTest {
         assertTrue(Files.size(out) > 0, "Exported CSV should not be empty");
     }
 
+    @Test
+    void testBatchValidatesAgainstItselfAndIsAllOrNothing() {
+        manager.add(new Character(1, "Doofnita", Server.NA, "Troll", 3, 500, 80, true));
+        manager.add(new Character(2, "AnitaBath", Server.EU, "Catfish", 5, 1000, -95, true));
+
+        MutationBatch bad = new MutationBatch()
+                .add(new Character(3, "Zed", Server.AS, "Driver", 1, 1, 1, true))
+                .add(new Character(4, "zed", Server.AS, "Driver", 1, 1, 1, true))       // clashes with op 0
+                .update(new Character(2, "DOOFNITA", Server.EU, "Catfish", 5, 1000, -95, true))
+                .remove(9)
+                .add(new Character(5, "", Server.NA, "x", 0, 0, 0, true));
+        BatchResult r = manager.apply(bad);
+        assertFalse(r.isCommitted());
+        assertEquals(List.of(BatchResult.Outcome.OK, BatchResult.Outcome.DUPLICATE_HANDLE,
+                BatchResult.Outcome.HANDLE_TAKEN, BatchResult.Outcome.NOT_FOUND, BatchResult.Outcome.INVALID),
+                List.of(r.get(0), r.get(1), r.get(2), r.get(3), r.get(4)));
+        assertEquals(0, r.getApplied());
+        assertEquals(2, manager.size());
+        assertTrue(manager.findById(3).isEmpty(), "nothing applied from a failed batch");
+
+        // Handles freed earlier in the batch can be reused later in it; order matters.
+        BatchResult ok = manager.apply(new MutationBatch()
+                .update(new Character(1, "Renamed", Server.NA, "Troll", 6, 500, 80, true))
+                .add(new Character(3, "doofnita", Server.AS, "Driver", 1, 1, 1, true))
+                .remove(2)
+                .add(new Character(2, "AnitaBath", Server.NA, "Chef", 0, 0, 0, false)));
+        assertTrue(ok.isCommitted());
+        assertEquals(4, ok.getApplied());
+        assertEquals(3, manager.findByHandle("DOOFNITA").get().getId());
+        assertEquals("Chef", manager.findById(2).get().getOccupation());
+        assertEquals(1, manager.topThreats(1).get(0).getCharacter().getId());
+
+        // Best effort: the failing operation is skipped, the rest applied.
+        BatchResult partial = manager.apply(MutationBatch.bestEffort()
+                .remove(3)
+                .remove(3)
+                .add(new Character(4, "New", Server.EU, "x", 2, 0, 0, true)));
+        assertEquals(BatchResult.Outcome.NOT_FOUND, partial.get(1));
+        assertEquals(2, partial.getApplied());
+        assertEquals(3, manager.size());
+    }
+
+    @Test
+    void testMetricsCountOperationsAndPublishOverJmx() throws Exception {
+        // Every value lands in a bucket whose upper bound is within ~6% above it.
+        for (long v : new long[]{0, 1, 15, 16, 17, 31, 32, 1_000, 123_456_789, 1L << 39}) {
+            long hi = LatencyHistogram.highest(LatencyHistogram.bucket(v));
+            assertTrue(hi >= v && hi <= v + Math.max(1, v / 16), v + " -> " + hi);
+        }
+
+        OperationMetrics m = manager.metrics();
+        assertEquals(64, m.getSampleEvery());
+        m.setSampleEvery(1); // time every call, so the percentiles below are deterministic
+        for (int i = 1; i <= 100; i++) manager.add(new Character(i, "P" + i, Server.NA, "Occ", i % 7, i, 0, true));
+        manager.add(new Character(1, "dup", Server.NA, "Occ", 0, 0, 0, true));
+        for (int i = 1; i <= 50; i++) manager.findById(i);
+        manager.findByHandle("p3");
+        manager.findByHandlePrefix("p1", 5);
+        manager.addAll(List.of(new Character(1, "x", Server.NA, "Occ", 0, 0, 0, true)));
+        new ReportGenerator().topN(5, manager);
+
+        assertEquals(101, m.getCount(OperationMetrics.Operation.ADD));
+        assertEquals(50, m.getCount(OperationMetrics.Operation.FIND_BY_ID));
+        assertEquals(1, m.getCount(OperationMetrics.Operation.FIND_BY_HANDLE));
+        assertEquals(1, m.getCount(OperationMetrics.Operation.FIND_BY_HANDLE_PREFIX));
+        assertEquals(1, m.getCount(OperationMetrics.Operation.TOP_N));
+        assertEquals(1, m.getRejectedRows());
+        long p50 = m.getPercentileNanos(OperationMetrics.Operation.ADD, 50);
+        long p99 = m.getPercentileNanos(OperationMetrics.Operation.ADD, 99);
+        assertTrue(p50 > 0 && p50 <= p99 && p99 <= m.getMaxNanos(OperationMetrics.Operation.ADD));
+
+        m.register("test");
+        javax.management.MBeanServer jmx = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        assertEquals(100, jmx.getAttribute(new javax.management.ObjectName("dms:type=CharacterManager,name=\"test\""), "Size"));
+        assertEquals(50L, jmx.getAttribute(
+                new javax.management.ObjectName("dms:type=Operation,manager=\"test\",name=find_by_id"), "Count"));
+
+        // Sampled: every call is counted, only some are timed.
+        m.setSampleEvery(1 << 30);
+        for (int i = 1; i <= 50; i++) manager.findById(i);
+        assertEquals(100, m.getCount(OperationMetrics.Operation.FIND_BY_ID));
+        m.setSampleEvery(3);
+        assertEquals(4, m.getSampleEvery(), "rounded up to a power of two");
+        assertThrows(IllegalArgumentException.class, () -> m.setSampleEvery(0));
+
+        m.setEnabled(false);
+        manager.findById(1);
+        assertEquals(100, m.getCount(OperationMetrics.Operation.FIND_BY_ID), "disabled metrics record nothing");
+    }
+
+    @Test
+    void testPartialAndFuzzyHandleSearch() {
+        String[] handles = {"Doofnita", "Doofus", "doof", "BigDoofer", "AnitaBath", "Dafnita", "Zed"};
+        for (int i = 0; i < handles.length; i++) {
+            manager.add(new Character(i + 1, handles[i], Server.NA, "Occ", 1, 1, 1, true));
+        }
+        List<String> found = new ArrayList<>();
+        for (Character c : manager.searchHandles("DOOF", 10)) found.add(c.getHandle());
+        // exact, then prefixes (shortest first), then the substring match
+        assertEquals(List.of("doof", "Doofus", "Doofnita", "BigDoofer"), found.subList(0, 4));
+
+        assertEquals("Doofnita", manager.searchHandles("Dofnita", 1).get(0).getHandle(), "typo tolerated");
+        assertEquals(2, manager.findByHandlePrefix("doof", 2).size());
+        assertTrue(manager.findByHandlePrefix("doof", -1).isEmpty());
+        assertTrue(manager.findByHandlePrefix("doof", 0).isEmpty());
+        assertTrue(manager.searchHandles("qqqq", 5).isEmpty());
+
+        // Index follows updates and removals.
+        manager.update(new Character(1, "Renamed", Server.NA, "Occ", 1, 1, 1, true));
+        manager.remove(2);
+        found.clear();
+        for (Character c : manager.searchHandles("doof", 10)) found.add(c.getHandle());
+        assertEquals(List.of("doof", "BigDoofer"), found.subList(0, 2));
+        assertEquals("Renamed", manager.searchHandles("renam", 3).get(0).getHandle());
+
+        // Random churn: substring hits must equal a brute-force scan.
+        Random rnd = new Random(11);
+        String alphabet = "abcdefgh";
+        for (int op = 0; op < 4_000; op++) {
+            int id = 1 + rnd.nextInt(500);
+            StringBuilder h = new StringBuilder();
+            for (int k = 3 + rnd.nextInt(6); k > 0; k--) h.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+            Character c = new Character(id, h + "" + id, Server.EU, "Occ", 0, 0, 0, true);
+            if (rnd.nextInt(4) == 0) manager.remove(id);
+            else if (!manager.add(c)) manager.update(c);
+        }
+        for (String q : List.of("abc", "hhg", "ded", "bad", "cafe")) {
+            Set<Integer> expected = new TreeSet<>();
+            for (Character c : manager.getAll()) if (c.getHandle().toLowerCase().contains(q)) expected.add(c.getId());
+            Set<Integer> actual = new TreeSet<>();
+            for (Character c : manager.searchHandles(q, Integer.MAX_VALUE)) {
+                if (c.getHandle().toLowerCase().contains(q)) actual.add(c.getId());
+            }
+            assertEquals(expected, actual, q);
+        }
+    }
+
+    @Test
+    void testStreamingCsvExportMatchesToCsv() throws IOException {
+        manager.add(new Character(1, "Doofnita", Server.NA, "Troll", 3, 500, 80, true));
+        manager.add(new Character(2, "Ånita\u00dfBath\ud83d\ude00", Server.EU, "Catfish", 0, Integer.MAX_VALUE, -100, false));
+        manager.add(new Character(3, "Zed", Server.AS, "Getaway Driver", 6, 0, 0, true));
+        String expected = String.join("\n",
+                "1,Doofnita,NA,Troll,3,500,80,true",
+                "2,Ånita\u00dfBath\ud83d\ude00,EU,Catfish,0,2147483647,-100,false",
+                "3,Zed,AS,Getaway Driver,6,0,0,true");
+        assertEquals(expected, manager.toCsv());
+
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        manager.writeCsv(bytes);
+        assertEquals(expected, bytes.toString(java.nio.charset.StandardCharsets.UTF_8));
+
+        ReportGenerator rg = new ReportGenerator();
+        List<ThreatEntry> top = rg.topN(2, manager);
+        StringWriter report = new StringWriter();
+        rg.writeCsv(top, report);
+        assertEquals(ReportGenerator.CSV_HEADER + "\n2,Ånita\u00dfBath\ud83d\ude00,EU,Catfish,0,2147483647,-100,21474936"
+                + "\n3,Zed,AS,Getaway Driver,6,0,0,600", report.toString());
+        assertEquals(ReportGenerator.CSV_HEADER + "\n", rg.toCsv(List.of()));
+    }
+
+    @Test
+    void testBulkLoaderCountsRejectedRows() throws IOException {
+        Path tmp = Files.createTempFile("characters_bulk", ".csv");
+        Files.write(tmp, List.of(
+                "1,Doofnita,NA,Troll,3,500,80,true",
+                " 2 , AnitaBath , eu , Catfish , 5 , 1000 , -95 , TRUE ",
+                "",
+                "3,doofnita,AS,Troll,1,1,1,true",       // duplicate handle
+                "1,Other,AS,Troll,1,1,1,false",         // duplicate id
+                "4,Broken,XX,Troll,1,1,1,true",         // bad server
+                "5,Short,NA",                           // too few fields
+                "6,Neg,NA,Troll,-1,1,1,true"            // fails validation
+        ));
+
+        LoadResult r = new CsvLoader(2).load(tmp, manager);
+        assertEquals(2, r.getAdded());
+        assertEquals(2, r.getMalformed());
+        assertEquals(1, r.getInvalid());
+        assertEquals(2, r.getDuplicate());
+
+        Character c = manager.findById(2).get();
+        assertEquals("AnitaBath", c.getHandle());
+        assertEquals(Server.EU, c.getServer());
+        assertEquals(-95, c.getReputation());
+        assertTrue(c.isActive());
+    }
+
+    @Test
+    void testBulkLoaderSpansChunks() throws IOException {
+        Path tmp = Files.createTempFile("characters_big", ".csv");
+        StringBuilder sb = new StringBuilder();
+        int rows = 60_000; // several CsvLoader chunks
+        for (int i = 1; i <= rows; i++) {
+            sb.append(i).append(",Handle").append(i).append(",NA,Chef,")
+                    .append(i % 7).append(',').append(i).append(",0,true\n");
+        }
+        Files.writeString(tmp, sb.toString());
+
+        LoadResult r = new CsvLoader(4).load(tmp, manager);
+        assertEquals(rows, r.getAdded());
+        assertEquals(0, r.getRejected());
+        assertEquals("Handle" + rows, manager.findById(rows).get().getHandle());
+    }
+
+    @Test
+    void testResyncAppliesOnlyChangedRows() throws IOException {
+        Path before = Files.createTempFile("characters_v1", ".csv");
+        Path after = Files.createTempFile("characters_v2", ".csv");
+        Files.write(before, List.of(
+                "1,Doofnita,NA,Troll,3,500,80,true",
+                "2,Zoë,AS,Troll,6,0,-40,false",
+                "3,AnitaBath,EU,Catfish,5,1000,-95,true",
+                "4,Gone,NA,Chef,1,1,1,true"));
+        Files.write(after, List.of(
+                " 1 , Doofnita , na , Troll , 3 , 500 , 80 , TRUE ",  // same values, other spelling
+                "2,Zoë,AS,Troll,6,0,-40,false",
+                "3,AnitaBath,EU,Catfish,7,1000,-95,true",             // changed
+                "5,Newbie,EU,Chef,0,0,0,true",                        // new
+                "6,Broken,XX,Chef,1,1,1,true",                        // malformed
+                "7,Bad,NA,Chef,-1,1,1,true"));                        // fails validation
+
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            new CsvLoader(2).load(before, m);
+            SyncResult r = new CsvLoader(2).resync(after, m);
+            assertEquals(1, r.getInserted(), engine.name());
+            assertEquals(1, r.getUpdated(), engine.name());
+            assertEquals(1, r.getDeleted(), engine.name());
+            assertEquals(2, r.getUnchanged(), engine.name());
+            assertEquals(1, r.getMalformed(), engine.name());
+            assertEquals(1, r.getRejected(), engine.name());
+
+            CharacterManager fresh = new CharacterManager(engine);
+            new CsvLoader(2).load(after, fresh);
+            assertEquals(sorted(fresh.getAll()).toString(), sorted(m.getAll()).toString(), engine.name());
+
+            SyncResult again = new CsvLoader(2).resync(after, m);
+            assertEquals(0, again.getChanged(), engine.name());
+            assertEquals(4, again.getUnchanged(), engine.name());
+        }
+    }
+
+    @Test
+    void testResyncNeverDeletesOnMalformedLines() throws IOException {
+        Path before = Files.createTempFile("characters_v1", ".csv");
+        Path after = Files.createTempFile("characters_v2", ".csv");
+        Files.write(before, List.of("1,Keep,NA,Chef,1,1,1,true", "2,Corrupt,EU,Chef,2,2,2,true",
+                "3,Gone,AS,Chef,3,3,3,true"));
+        Files.write(after, List.of("1,Keep,NA,Chef,1,1,1,true", "2,Corrupt,EUX,Chef,2,2,2,true"));
+        Path unreadable = Files.createTempFile("characters_v3", ".csv");
+        Files.write(unreadable, List.of("1,Keep,NA,Chef,1,1,1,true", "x2,Corrupt,EU,Chef,2,2,2,true"));
+
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            new CsvLoader(2).load(before, m);
+            SyncResult r = new CsvLoader(2).resync(after, m);
+            assertEquals(1, r.getMalformed(), engine.name());
+            assertEquals(1, r.getDeleted(), engine.name());
+            assertEquals("Corrupt", m.findById(2).orElseThrow().getHandle(), engine.name());
+            assertFalse(m.findById(3).isPresent(), engine.name());
+
+            // The id of a malformed line cannot be read: nothing at all is deleted.
+            m.add(mk(3, "Gone", Server.AS, "Chef", 3, 3, 3, true));
+            r = new CsvLoader(2).resync(unreadable, m);
+            assertEquals(0, r.getDeleted(), engine.name());
+            assertEquals(3, m.size(), engine.name());
+        }
+    }
+
+    @Test
+    void testResyncReusesAndSwapsHandles() throws IOException {
+        Path before = Files.createTempFile("characters_v1", ".csv");
+        Path after = Files.createTempFile("characters_v2", ".csv");
+        Files.write(before, List.of("1,Alpha,NA,Chef,1,1,1,true", "2,Beta,EU,Chef,2,2,2,true",
+                "3,Gone,AS,Chef,3,3,3,true", "8,Gamma,AS,Chef,3,3,3,true", "9,Delta,AS,Chef,3,3,3,true"));
+        // 1 and 2 swap handles, new id 4 takes the handle of dropped id 3, 8 takes the handle 9
+        // gives up later in the file, and 6 and 7 both claim one new handle (7 is rejected).
+        Files.write(after, List.of("1,Beta,NA,Chef,1,1,1,true", "2,alpha,EU,Chef,2,2,2,true",
+                "4,Gone,AS,Chef,4,4,4,true", "6,Dup,NA,Chef,1,1,1,true", "7,dup,NA,Chef,1,1,1,true",
+                "8,Delta,AS,Chef,3,3,3,true", "9,Epsilon,AS,Chef,3,3,3,true"));
+
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            new CsvLoader(2).load(before, m);
+            SyncResult r = new CsvLoader(2).resync(after, m);
+            assertEquals(2, r.getInserted(), engine + " " + r);
+            assertEquals(4, r.getUpdated(), engine + " " + r);
+            assertEquals(1, r.getDeleted(), engine + " " + r);
+            assertEquals(1, r.getRejected(), engine + " " + r);
+            assertEquals(2, m.findByHandle("ALPHA").orElseThrow().getId(), engine.name());
+            assertEquals(1, m.findByHandle("beta").orElseThrow().getId(), engine.name());
+            assertEquals(4, m.findByHandle("Gone").orElseThrow().getId(), engine.name());
+            assertEquals(6, m.findByHandle("Dup").orElseThrow().getId(), engine.name());
+            assertEquals(8, m.findByHandle("Delta").orElseThrow().getId(), engine.name());
+            assertEquals(9, m.findByHandle("Epsilon").orElseThrow().getId(), engine.name());
+            assertEquals(List.of(1, 2, 4, 6, 8, 9), sorted(m.getAll()).stream().map(Character::getId).toList());
+        }
+    }
+
+    private static List<Character> sorted(List<Character> all) {
+        List<Character> out = new ArrayList<>(all);
+        out.sort(Comparator.comparingInt(Character::getId));
+        return out;
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        manager.add(mk(1, "Doofnita", Server.NA, "Troll", 3, 500, 80, true));
+        manager.add(mk(2, "Zoë", Server.AS, "Troll", 6, 0, -40, false));
+        manager.add(mk(3, "Drifter", Server.EU, null, 1, 10, 0, true)); // occupation is optional
+        Path snap = Files.createTempFile("characters", ".snap");
+        manager.saveSnapshot(snap);
+
+        CharacterManager restored = new CharacterManager();
+        assertEquals(3, restored.loadSnapshot(snap));
+        assertNull(restored.findById(3).get().getOccupation());
+        Character c = restored.findByHandle("zoë").get();
+        assertEquals(2, c.getId());
+        assertEquals(Server.AS, c.getServer());
+        assertEquals(-40, c.getReputation());
+        assertFalse(c.isActive());
+        assertEquals(manager.toCsv(), restored.toCsv());
+
+        // Flip one byte in the record area: the checksum must catch it.
+        byte[] raw = Files.readAllBytes(snap);
+        raw[SnapshotFile.HEADER_BYTES + 1] ^= 1;
+        Files.write(snap, raw);
+        assertThrows(IOException.class, () -> restored.loadSnapshot(snap));
+    }
+
     @Test
     void testReportGeneratorTopN() {
         Character c1 = mk(10, "Anita",   Server.NA, "Catfish", 5, 1000, 90, true);
@@ -109,6 +473,488 @@ public class CharacterManagerTest {
         assertEquals(2, top.size(), "Should return top 2 characters by threat score");
         assertTrue(top.get(0).getThreatScore() >= top.get(1).getThreatScore());
     }
-}
 
+    @Test
+    void testLeaderboardMatchesFullSort() {
+        Random rnd = new Random(42);
+        for (int i = 1; i <= 500; i++) {
+            manager.add(mk(i, "h" + i, Server.NA, "Occ", rnd.nextInt(7), rnd.nextInt(5000),
+                    rnd.nextInt(201) - 100, true));
+        }
+        for (int i = 0; i < 300; i++) {
+            int id = 1 + rnd.nextInt(500);
+            if (rnd.nextBoolean()) {
+                manager.update(mk(id, "h" + id, Server.EU, "Occ", rnd.nextInt(7), rnd.nextInt(5000),
+                        rnd.nextInt(201) - 100, true));
+            } else {
+                manager.remove(id);
+            }
+        }
+
+        ReportGenerator rg = new ReportGenerator();
+        List<ThreatEntry> live = rg.topN(25, manager);
+        List<ThreatEntry> adHoc = rg.topN(25, manager.getAll());
+        assertEquals(25, live.size());
+        for (int i = 0; i < live.size(); i++) {
+            assertEquals(adHoc.get(i).getCharacter().getId(), live.get(i).getCharacter().getId());
+            assertEquals(adHoc.get(i).getThreatScore(), live.get(i).getThreatScore());
+        }
+        assertEquals(manager.size(), rg.topN(Integer.MAX_VALUE, manager).size());
+    }
+
+    @Test
+    void testColumnarEngineMatchesHeapEngine() {
+        CharacterManager heap = new CharacterManager(StorageEngine.HEAP);
+        CharacterManager cols = new CharacterManager(StorageEngine.COLUMNAR);
+        Random rnd = new Random(7);
+        Server[] servers = Server.values();
+        for (int i = 0; i < 40_000; i++) {
+            int id = 1 + rnd.nextInt(5_000);
+            int op = rnd.nextInt(4);
+            if (op == 3) {
+                assertEquals(heap.remove(id), cols.remove(id));
+                continue;
+            }
+            Character c = mk(id, "Player_" + rnd.nextInt(6_000) + "_Handle", servers[rnd.nextInt(3)],
+                    "Occupation" + rnd.nextInt(20), rnd.nextInt(7), rnd.nextInt(100_000),
+                    rnd.nextInt(201) - 100, rnd.nextBoolean());
+            if (op == 2) {
+                assertEquals(heap.update(c), cols.update(copy(c)));
+            } else {
+                assertEquals(heap.add(c), cols.add(copy(c)));
+            }
+        }
+
+        assertEquals(heap.size(), cols.size());
+        for (Character c : heap.getAll()) {
+            assertEquals(c.toString(), cols.findById(c.getId()).get().toString());
+            assertEquals(c.getId(), cols.findByHandle(c.getHandle().toUpperCase()).get().getId());
+        }
+        assertEquals(heap.listActive().size(), cols.listActive().size());
+
+        List<ThreatEntry> a = heap.topThreats(50), b = cols.topThreats(50);
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) assertEquals(a.get(i).toString(), b.get(i).toString());
+    }
+
+    private Character copy(Character c) {
+        return mk(c.getId(), c.getHandle(), c.getServer(), c.getOccupation(), c.getWantedLevel(),
+                c.getBountyCents(), c.getReputation(), c.isActive());
+    }
+
+    @Test
+    void testQueryMatchesBruteForce() {
+        Random rnd = new Random(11);
+        Server[] servers = Server.values();
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            for (int i = 0; i < 20_000; i++) {
+                int id = 1 + rnd.nextInt(4_000);
+                Character c = mk(id, "h" + id, servers[rnd.nextInt(3)], "Occ", rnd.nextInt(9),
+                        rnd.nextInt(10_000), rnd.nextInt(201) - 100, rnd.nextBoolean());
+                switch (rnd.nextInt(3)) {
+                    case 0 -> m.add(c);
+                    case 1 -> m.update(c);
+                    default -> m.remove(id);
+                }
+            }
+
+            List<CharacterQuery> queries = List.of(
+                    new CharacterQuery().server(Server.EU).active(true).minWantedLevel(4).maxReputation(-1),
+                    new CharacterQuery().active(false).minBountyCents(2_000).maxBountyCents(2_500),
+                    new CharacterQuery().minWantedLevel(7),
+                    new CharacterQuery().minWantedLevel(3).maxWantedLevel(7).minReputation(90),
+                    new CharacterQuery().server(Server.AS).minReputation(0).maxReputation(0),
+                    new CharacterQuery());
+            for (CharacterQuery q : queries) {
+                Set<Integer> expected = new TreeSet<>();
+                for (Character c : m.getAll()) {
+                    if (q.matches(c.getServer(), c.isActive(), c.getWantedLevel(), c.getBountyCents(),
+                            c.getReputation())) expected.add(c.getId());
+                }
+                Set<Integer> actual = new TreeSet<>();
+                for (Character c : m.query(q)) actual.add(c.getId());
+                assertEquals(expected, actual, engine + " " + q);
+                assertEquals(expected.size(), m.count(q));
+            }
+        }
+    }
+
+    @Test
+    void testServerAggregatesMatchBruteForce() {
+        Random rnd = new Random(15);
+        Server[] servers = Server.values();
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            for (int i = 0; i < 20_000; i++) {
+                int id = 1 + rnd.nextInt(3_000);
+                Character c = mk(id, "h" + id, servers[rnd.nextInt(servers.length)], "Occ", rnd.nextInt(10),
+                        rnd.nextInt(10_000), rnd.nextInt(201) - 100, rnd.nextBoolean());
+                switch (rnd.nextInt(4)) {
+                    case 0 -> m.add(c);
+                    case 1 -> m.update(c);
+                    case 2 -> m.apply(MutationBatch.bestEffort().update(c).remove(id + 1));
+                    default -> m.remove(id);
+                }
+            }
+
+            List<AggregateStats> all = m.aggregates();
+            assertEquals(servers.length + 1, all.size());
+            for (AggregateStats s : all) {
+                long count = 0, active = 0, bounty = 0, rep = 0;
+                long[] wanted = new long[8];
+                for (Character c : m.getAll()) {
+                    if (s.getServer() != null && c.getServer() != s.getServer()) continue;
+                    count++;
+                    if (c.isActive()) active++;
+                    bounty += c.getBountyCents();
+                    rep += c.getReputation();
+                    wanted[Math.min(c.getWantedLevel(), 7)]++;
+                }
+                assertEquals(count, s.getCount(), engine + " " + s);
+                assertEquals(active, s.getActive(), engine + " " + s);
+                assertEquals(bounty, s.getTotalBountyCents(), engine + " " + s);
+                assertEquals(rep, s.getReputationSum(), engine + " " + s);
+                assertArrayEquals(wanted, s.getWantedLevelCounts(), engine + " " + s);
+                assertEquals(s.toString(), m.aggregate(s.getServer()).toString());
+            }
+        }
+        assertTrue(new ReportGenerator().serverSummary(manager).contains("ALL"));
+    }
+
+    @Test
+    void testRankQueriesMatchFullSort() {
+        Random rnd = new Random(16);
+        Server[] servers = Server.values();
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            for (int i = 0; i < 12_000; i++) {
+                int id = 1 + rnd.nextInt(2_000);
+                // Few distinct scores, so ties (broken by id) are common.
+                Character c = mk(id, "h" + id, servers[rnd.nextInt(servers.length)], "Occ", rnd.nextInt(4),
+                        rnd.nextInt(4) * 100, 0, true);
+                switch (rnd.nextInt(3)) {
+                    case 0 -> m.add(c);
+                    case 1 -> m.update(c);
+                    default -> m.remove(id);
+                }
+            }
+            List<Server> scopes = new ArrayList<>(Arrays.asList(servers));
+            scopes.add(null);
+            for (Server server : scopes) {
+                List<ThreatEntry> sorted = new ArrayList<>();
+                for (Character c : m.getAll()) {
+                    if (server == null || c.getServer() == server) sorted.add(new ThreatEntry(c, ReportGenerator.score(c)));
+                }
+                sorted.sort(ThreatEntry.RANKING);
+                for (int r = 0; r < sorted.size(); r += 37) {
+                    assertEquals(r + 1, m.rankOf(sorted.get(r).getCharacter().getId(), server), engine + " " + server);
+                }
+                List<ThreatEntry> page = m.rankPage(101, 50, server);
+                assertEquals(50, page.size());
+                for (int i = 0; i < page.size(); i++) {
+                    assertEquals(sorted.get(100 + i).toString(), page.get(i).toString(), engine + " " + server);
+                }
+                assertTrue(m.rankPage(sorted.size() + 1, 5, server).isEmpty());
+                for (int score = -1; score <= 700; score += 50) {
+                    int s = score;
+                    assertEquals(sorted.stream().filter(te -> te.getThreatScore() > s).count(),
+                            m.countAbove(score, server), engine + " " + server + " " + score);
+                }
+            }
+            assertEquals(-1, m.rankOf(999_999, null));
+            Character any = m.getAll().get(0);
+            Server other = servers[(any.getServer().ordinal() + 1) % servers.length];
+            assertEquals(-1, m.rankOf(any.getId(), other));
+        }
+    }
+
+    @Test
+    void testSnapshotIsStableWhileWritersContinue() throws Exception {
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            for (int i = 1; i <= 5_000; i++) m.add(mk(i, "p" + i, Server.values()[i % 3], "Occ", i % 7, i, 0, true));
+            String before = m.toCsv();
+            List<ThreatEntry> top = m.topThreats(10);
+
+            try (CharacterSnapshot snap = m.snapshot()) {
+                // A writer rewrites everything while the snapshot is being read.
+                Thread writer = new Thread(() -> {
+                    for (int i = 1; i <= 5_000; i++) {
+                        if (i % 2 == 0) m.remove(i);
+                        else m.update(mk(i, "q" + i, Server.NA, "Occ", 6, 0, 0, false));
+                    }
+                    for (int i = 5_001; i <= 6_000; i++) m.add(mk(i, "n" + i, Server.EU, "Occ", 1, 1, 0, true));
+                });
+                writer.start();
+                StringWriter csv = new StringWriter();
+                snap.writeCsv(csv);
+                assertEquals(before, csv.toString(), engine.toString());
+                writer.join();
+
+                assertEquals(5_000, snap.size());
+                assertEquals(top.toString(), snap.topThreats(10).toString());
+                assertEquals(top.toString(), new ReportGenerator().topN(10, snap).toString());
+                snap.getAll().get(0).setHandle("mutated"); // copies: the snapshot is unaffected
+                assertEquals(before, csvOf(snap));
+            }
+            assertEquals(3_500, m.size());
+            try (CharacterSnapshot now = m.snapshot()) {
+                assertEquals(m.toCsv(), csvOf(now));
+            }
+
+            CharacterSnapshot closed = m.snapshot();
+            closed.close();
+            assertThrows(IllegalStateException.class, closed::getAll);
+
+            // The columnar engine drops its snapshot view at the first write with none open,
+            // and exports never build it.
+            java.lang.reflect.Field versions = CharacterManager.class.getDeclaredField("versions");
+            versions.setAccessible(true);
+            m.add(mk(9_000, "late", Server.NA, "Occ", 1, 1, 0, true));
+            m.saveSnapshot(Files.createTempFile("characters", ".snap"));
+            m.toCsv();
+            assertEquals(engine == StorageEngine.COLUMNAR, versions.get(m) == null, engine.toString());
+        }
+
+        // Writers copy only while a snapshot is open, and the old version survives only in it.
+        RowVersions v = new RowVersions();
+        for (int r = 0; r < 100; r++) v.set(r, mk(r + 1, "p" + r, Server.NA, "Occ", 0, 0, 0, true));
+        CharacterSnapshot s1 = v.snapshot();
+        v.set(3, null);
+        v.set(5_000, mk(9_999, "far", Server.NA, "Occ", 0, 0, 0, true));
+        assertEquals(1, v.openSnapshots());
+        assertEquals(100, s1.size());
+        assertEquals(100, s1.getAll().size());
+        s1.close();
+        assertEquals(0, v.openSnapshots());
+        try (CharacterSnapshot s2 = v.snapshot()) {
+            assertEquals(100, s2.size());
+            assertEquals(9_999, s2.getAll().get(99).getId());
+        }
+    }
+
+    private static String csvOf(CharacterSnapshot s) throws IOException {
+        StringWriter out = new StringWriter();
+        s.writeCsv(out);
+        return out.toString();
+    }
 
+    @Test
+    void testOccupationsAreDictionaryEncoded() throws Exception {
+        Character a = Character.fromCsv("1,Doofnita,NA,Getaway Driver,3,500,80,true");
+        Character b = Character.fromCsv("2,AnitaBath,EU, Getaway Driver ,5,1000,-95,false");
+        b.setOccupation("Chef");
+
+        String folded = "already folded";
+        assertSame(folded, CharacterManager.handleKey(folded));
+        assertEquals("mixedcase", CharacterManager.handleKey("MixedCase"));
+
+        java.lang.reflect.Field storeField = CharacterManager.class.getDeclaredField("store");
+        storeField.setAccessible(true);
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            StringDictionary occupations = ((CharacterStore) storeField.get(m)).occupations();
+            m.add(a);
+            m.add(b);
+            m.add(mk(3, "Zed", Server.AS, new String("Getaway Driver"), 1, 1, 1, false));
+            assertSame(m.findById(1).orElseThrow().getOccupation(), m.findById(3).orElseThrow().getOccupation(),
+                    engine.toString());
+            assertEquals(List.of(1, 3), m.query(new CharacterQuery().occupation("Getaway Driver"))
+                    .stream().map(Character::getId).toList(), engine.toString());
+            assertEquals(1, m.count(new CharacterQuery().occupation("Getaway Driver").active(false)));
+            assertEquals(0, m.count(new CharacterQuery().occupation("getaway driver")));
+            assertEquals("Chef", m.findById(2).orElseThrow().getOccupation());
+            assertEquals(List.of(1), m.findByHandlePrefix("doof", 5).stream().map(Character::getId).toList());
+
+            // Only stored records feed the store's dictionary: rejected or unstored input never does.
+            int size = occupations.size();
+            assertFalse(m.add(mk(4, "Bad", Server.NA, "Rejected Job", -1, 1, 1, true)));
+            assertFalse(m.update(mk(9, "Nobody", Server.NA, "Missing Job", 1, 1, 1, true)));
+            Character.fromCsv("5,Parsed,NA,Parsed Only,1,1,1,true");
+            assertEquals(size, occupations.size(), engine.toString());
+            assertEquals(StringDictionary.NONE, occupations.codeOf("Rejected Job"));
+            assertEquals(0, m.count(new CharacterQuery().occupation("Rejected Job")));
+
+            // Reference-counted: an occupation no stored record holds any more is dropped.
+            for (int i = 0; i < 50; i++) m.update(mk(2, "AnitaBath", Server.EU, "Job" + i, 5, 1000, -95, false));
+            assertEquals(2, occupations.size(), engine.toString());
+            assertEquals(StringDictionary.NONE, occupations.codeOf("Chef"));
+            assertEquals(List.of(2), m.query(new CharacterQuery().occupation("Job49"))
+                    .stream().map(Character::getId).toList(), engine.toString());
+            m.remove(1);
+            m.remove(3);
+            assertEquals(StringDictionary.NONE, occupations.codeOf("Getaway Driver"), engine.toString());
+            assertTrue(m.add(mk(5, "Back", Server.NA, "Getaway Driver", 1, 1, 1, true)));
+            assertEquals("Getaway Driver", m.findById(5).orElseThrow().getOccupation());
+            assertEquals("Job49", m.findById(2).orElseThrow().getOccupation());
+            assertEquals(1, m.count(new CharacterQuery().occupation("Getaway Driver")), engine.toString());
+        }
+    }
+
+    @Test
+    void testStatHistoryMatchesBruteForce() {
+        for (StorageEngine engine : StorageEngine.values()) {
+            long[] now = {1_700_000_000_000L};
+            CharacterManager m = new CharacterManager(engine, () -> now[0]);
+            int chars = 200;
+            // Per id: every state it has had, as {time, wl, bounty, rep}; time 0 = before any change.
+            List<List<long[]>> states = new ArrayList<>();
+            states.add(null);
+            for (int id = 1; id <= chars; id++) {
+                m.add(mk(id, "H" + id, Server.NA, "Chef", 1, 100, 0, true));
+                states.add(new ArrayList<>(List.of(new long[] {0, 1, 100, 0})));
+            }
+            Random rnd = new Random(7);
+            int changes = 0;
+            for (int i = 0; i < 20_000; i++) {
+                now[0] += rnd.nextInt(10) == 0 ? rnd.nextInt(86_400_000) : rnd.nextInt(600_000);
+                int id = 1 + rnd.nextInt(chars);
+                Character c = m.findById(id).orElseThrow();
+                switch (rnd.nextInt(4)) {
+                    case 0 -> c.setWantedLevel(rnd.nextInt(6));
+                    case 1 -> c.setBountyCents(rnd.nextInt(1_000_000));
+                    case 2 -> c.setReputation(rnd.nextInt(201) - 100);
+                    default -> { c.setWantedLevel(rnd.nextInt(6)); c.setBountyCents(c.getBountyCents() + 500); }
+                }
+                long[] last = states.get(id).get(states.get(id).size() - 1);
+                if (c.getWantedLevel() == last[1] && c.getBountyCents() == last[2] && c.getReputation() == last[3]) continue;
+                assertTrue(m.update(c));
+                states.get(id).add(new long[] {now[0] / 1000 * 1000, c.getWantedLevel(), c.getBountyCents(), c.getReputation()});
+                changes++;
+            }
+            StatHistory h = m.statHistory();
+            assertEquals(changes, h.changes(), engine.name());
+            assertTrue(h.encodedBytes() <= 8L * changes, "bytes per change: " + (double) h.encodedBytes() / changes);
+
+            long t0 = 1_700_000_000_000L;
+            for (int q = 0; q < 200; q++) {
+                long from = t0 + (long) (rnd.nextDouble() * (now[0] - t0));
+                long to = from + rnd.nextInt(200_000_000);
+                int id = 1 + rnd.nextInt(chars);
+                List<String> expected = new ArrayList<>();
+                long[] atFrom = null;
+                for (long[] st : states.get(id)) if (st[0] <= from) atFrom = st;
+                expected.add(from + ":" + atFrom[1] + "/" + atFrom[2] + "/" + atFrom[3]);
+                for (long[] st : states.get(id)) {
+                    if (st[0] > from && st[0] <= to) expected.add(st[0] + ":" + st[1] + "/" + st[2] + "/" + st[3]);
+                }
+                List<String> actual = m.history(id, from, to).stream().map(p -> p.getTime() + ":"
+                        + p.getWantedLevel() + "/" + p.getBountyCents() + "/" + p.getReputation()).toList();
+                assertEquals(expected, actual, engine + " id " + id);
+
+                StatPoint.Stat stat = StatPoint.Stat.values()[q % 4];
+                List<String> movers = new ArrayList<>();
+                List<long[]> rises = new ArrayList<>();
+                for (int i = 1; i <= chars; i++) {
+                    long[] a = null, b = null;
+                    for (long[] st : states.get(i)) {
+                        if (st[0] <= from) a = st;
+                        if (st[0] <= to) b = st;
+                    }
+                    int va = stat.of((int) a[1], (int) a[2], (int) a[3]), vb = stat.of((int) b[1], (int) b[2], (int) b[3]);
+                    if (vb > va) rises.add(new long[] {vb - va, i, va, vb});
+                }
+                rises.sort((x, y) -> x[0] != y[0] ? Long.compare(y[0], x[0]) : Long.compare(x[1], y[1]));
+                for (long[] r : rises.subList(0, Math.min(10, rises.size()))) movers.add(r[1] + ":" + r[2] + "->" + r[3]);
+                assertEquals(movers, m.topMovers(stat, from, to, 10).stream()
+                        .map(mv -> mv.getId() + ":" + mv.getFrom() + "->" + mv.getTo()).toList(), engine + " " + stat);
+            }
+
+            assertEquals(1, m.history(chars, now[0] + 1, now[0] + 2).size());
+            assertTrue(m.history(9_999, 0, now[0]).isEmpty());
+            long before = h.changes();
+            int dropped = states.get(1).size() - 1;
+            assertTrue(m.remove(1));
+            assertEquals(before - dropped, h.changes());
+        }
+    }
+
+    @Test
+    void testScoringFormulaMatchesBuiltInAndRanksConsistently() {
+        Random rnd = new Random(23);
+        ScoringFormula.Batch batch = ScoringFormula.DEFAULT.newBatch();
+        int[] expected = new int[ScoringFormula.Batch.SIZE];
+        for (int i = 0; i < ScoringFormula.Batch.SIZE; i++) {
+            Character c = mk(i + 1, "s" + i, Server.NA, "Occ", rnd.nextInt(7), rnd.nextInt(50_000_000),
+                    rnd.nextInt(201) - 100, rnd.nextBoolean());
+            expected[i] = ReportGenerator.score(c);
+            assertEquals(expected[i], ScoringFormula.DEFAULT.score(c));
+            batch.set(i, c.getWantedLevel(), c.getBountyCents(), c.getReputation(), c.isActive());
+        }
+        batch.setSize(ScoringFormula.Batch.SIZE);
+        assertArrayEquals(expected, ScoringFormula.DEFAULT.scores(batch));
+
+        ScoringFormula f = ScoringFormula.parse("wantedLevel * (2 + 3) - bountyCents % 7 + max(reputation, 0) / 0 + active * 4");
+        assertEquals(3 * 5 - 10 % 7 + 4, f.score(3, 10, 50, true));
+        assertThrows(IllegalArgumentException.class, () -> ScoringFormula.parse("wantedLevel *"));
+        assertThrows(IllegalArgumentException.class, () -> ScoringFormula.parse("speed + 1"));
+
+        Server[] servers = Server.values();
+        for (StorageEngine engine : StorageEngine.values()) {
+            CharacterManager m = new CharacterManager(engine);
+            for (int id = 1; id <= 3_000; id++) {
+                m.add(mk(id, "f" + id, servers[id % 3], "Occ", rnd.nextInt(6), rnd.nextInt(100_000),
+                        rnd.nextInt(201) - 100, rnd.nextBoolean()));
+            }
+            m.setScoringFormula(f);
+            for (int id = 1; id <= 300; id++) m.remove(id);
+            m.add(mk(4_000, "late", Server.EU, "Occ", 5, 0, 100, true));
+            for (Server server : new Server[] {null, Server.EU}) {
+                List<ThreatEntry> sorted = new ArrayList<>();
+                for (Character c : m.getAll()) {
+                    if (server == null || c.getServer() == server) sorted.add(new ThreatEntry(c, f.score(c)));
+                }
+                sorted.sort(ThreatEntry.RANKING);
+                assertEquals(sorted.subList(0, 20).toString(), m.rankPage(1, 20, server).toString(), engine + " " + server);
+                for (int r = 0; r < sorted.size(); r += 53) {
+                    assertEquals(r + 1, m.rankOf(sorted.get(r).getCharacter().getId(), server), engine + " " + server);
+                }
+            }
+            assertEquals(m.topThreats(15).toString(), m.rankPage(1, 15, null).toString());
+            try (CharacterSnapshot snap = m.snapshot()) {
+                assertEquals(m.topThreats(15).toString(), snap.topThreats(15).toString(), engine.name());
+            }
+            // DEFAULT takes the hardcoded path; an equal parsed formula takes the Batch one.
+            m.setScoringFormula(ScoringFormula.parse(ScoringFormula.DEFAULT.getExpression()));
+            String batched = m.rankPage(1, 40, Server.NA).toString();
+            int batchedRank = m.rankOf(500, null);
+            m.setScoringFormula(ScoringFormula.DEFAULT);
+            assertEquals(batched, m.rankPage(1, 40, Server.NA).toString(), engine.name());
+            assertEquals(batchedRank, m.rankOf(500, null), engine.name());
+        }
+    }
+
+    @Test
+    void testThreatHistoryFollowsScoringFormula() {
+        for (StorageEngine engine : StorageEngine.values()) {
+            long[] now = {1_700_000_000_000L};
+            CharacterManager m = new CharacterManager(engine, () -> now[0]);
+            // Under DEFAULT id 1 rises most (+400); under f only reputation counts, so id 2 does.
+            m.add(mk(1, "a", Server.NA, "Chef", 1, 0, 0, true));
+            m.add(mk(2, "b", Server.NA, "Chef", 1, 0, 0, false));
+            long from = now[0];
+            now[0] += 60_000;
+            Character a = m.findById(1).orElseThrow();
+            a.setWantedLevel(5);
+            assertTrue(m.update(a));
+            Character b = m.findById(2).orElseThrow();
+            b.setReputation(50);
+            assertTrue(m.update(b));
+            long to = now[0];
+            assertEquals(1, m.topMovers(StatPoint.Stat.THREAT, from, to, 1).get(0).getId(), engine.name());
+
+            ScoringFormula f = ScoringFormula.parse("reputation * 10 + active * 1000");
+            m.setScoringFormula(f);
+            List<StatMover> movers = m.topMovers(StatPoint.Stat.THREAT, from, to, 2);
+            assertEquals(1, movers.size(), engine.name());
+            assertEquals(2, movers.get(0).getId());
+            assertEquals(0, movers.get(0).getFrom());
+            assertEquals(500, movers.get(0).getTo());
+            List<StatPoint> points = m.history(1, from, to);
+            assertEquals(1000, points.get(points.size() - 1).getThreatScore(), engine.name());
+            assertEquals(1000, points.get(0).get(StatPoint.Stat.THREAT));
+            assertEquals(f.score(m.findById(1).orElseThrow()), points.get(points.size() - 1).getThreatScore());
+        }
+    }
+}
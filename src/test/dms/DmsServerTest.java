@@ -0,0 +1,165 @@
+package dms;
+
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TCP service mode (DmsServer).
+ * - Protocol round trip for every command over a real localhost socket.
+ * - Pipelined requests come back complete and in order.
+ * - A failed journal write is answered with ERR and the connection stays usable.
+ * Throughput and latency under load are measured by benchmarks/ServerLoad.
+ */
+@Timeout(60)
+public class DmsServerTest {
+
+    private CharacterManager manager;
+    private DmsServer server;
+
+    @BeforeEach
+    void setup() throws IOException {
+        manager = new CharacterManager();
+        server = DmsServer.start(manager, 0);
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        server.close();
+    }
+
+    /** Minimal blocking client for the line protocol. */
+    private static final class Client implements Closeable {
+        final Socket socket;
+        final BufferedReader in;
+        final Writer out;
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void send(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+        }
+
+        /** Read one reply: the status line plus any rows it announces. */
+        List<String> reply() throws IOException {
+            List<String> lines = new ArrayList<>();
+            String status = in.readLine();
+            lines.add(status);
+            if (status != null && status.startsWith("OK ")) {
+                int n = Integer.parseInt(status.substring(3));
+                for (int i = 0; i < n; i++) lines.add(in.readLine());
+            }
+            return lines;
+        }
+
+        List<String> call(String line) throws IOException {
+            send(line);
+            out.flush();
+            return reply();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    void testCommands() throws IOException {
+        try (Client c = new Client(server.getPort())) {
+            assertEquals(List.of("OK"), c.call("PING"));
+            assertEquals(List.of("OK"), c.call("ADD 1,Doofnita,NA,Troll,3,500,80,true"));
+            assertEquals(List.of("OK"), c.call("add 2,AnitaBath,EU,Catfish,5,1000,-95,false"));
+            assertEquals("ERR invalid or duplicate", c.call("ADD 3,doofnita,AS,Troll,1,1,1,true").get(0));
+            assertTrue(c.call("ADD garbage").get(0).startsWith("ERR malformed"));
+            assertEquals(List.of("OK 1", "2"), c.call("SIZE"));
+
+            assertEquals(List.of("OK 1", "1,Doofnita,NA,Troll,3,500,80,true"), c.call("GET 1"));
+            assertEquals(List.of("OK 1", "2,AnitaBath,EU,Catfish,5,1000,-95,false"), c.call("HANDLE anitabath"));
+            assertEquals(List.of("OK 0"), c.call("GET 99"));
+            assertEquals(List.of("OK 1", "1,Doofnita,NA,Troll,3,500,80,true"), c.call("ACTIVE"));
+            assertEquals(List.of("OK 1", "2,AnitaBath,EU,Catfish,5,1000,-95,false"),
+                    c.call("QUERY server=eu minWanted=4"));
+            assertEquals(List.of("OK 2", "2,AnitaBath,EU,Catfish,5,1000,-95,605",
+                    "1,Doofnita,NA,Troll,3,500,80,305"), c.call("TOP 5"));
+            assertEquals(List.of("OK 1", "2"), c.call("RANK 1"));
+            assertEquals(List.of("OK 1", "1"), c.call("RANK 1 na"));
+            assertEquals(List.of("OK 1", "-1"), c.call("RANK 1 EU"));
+            assertEquals(List.of("OK 1", "1,Doofnita,NA,Troll,3,500,80,305"), c.call("PAGE 2 10"));
+            assertEquals("ERR unknown server: XX", c.call("PAGE 1 1 XX").get(0));
+            assertEquals(List.of("OK 1", "1,Doofnita,NA,Troll,3,500,80,true,305"), c.call("LEADERS 5 NA"));
+            assertEquals(List.of("OK 1", "2,1,1500,-15,0,0,0,1,0,1,0,0"), c.call("AGG"));
+
+            assertEquals(List.of("OK"), c.call("UPDATE 1,Doofnita,NA,Troll,6,500,80,false"));
+            assertEquals("ERR not found, invalid or handle taken", c.call("UPDATE 1,AnitaBath,NA,Troll,6,500,80,false").get(0));
+            assertEquals(List.of("OK"), c.call("REMOVE 2"));
+            assertEquals(List.of("ERR not found"), c.call("REMOVE 2"));
+            assertEquals(List.of("ERR not found, invalid or handle taken"), c.call("UPDATE 1,Doofnita,NA,Troll,-1,500,80,false"));
+            assertEquals(List.of("ERR limit must not be negative: -1"), c.call("QUERY limit=-1"));
+            assertEquals(List.of("OK 0"), c.call("QUERY limit=0"));
+            assertEquals(List.of("OK 0"), c.call("TOP -1"));
+            assertEquals(List.of("OK 0"), c.call("LEADERS -1"));
+            assertEquals(List.of("ERR bad number: x"), c.call("GET x"));
+            assertEquals(List.of("ERR unknown command: FLY"), c.call("FLY away"));
+            assertEquals(List.of("OK 1", "1"), c.call("SIZE"));
+        }
+        assertEquals(6, manager.findById(1).orElseThrow().getWantedLevel());
+    }
+
+    @Test
+    void testJournalFailureRepliesErrAndKeepsConnection() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("dms-server-journal");
+        try (CharacterManager durable = CharacterManager.open(dir, StorageEngine.HEAP, new JournalConfig(1, 0, 0));
+             DmsServer s = DmsServer.start(durable, 0);
+             Client c = new Client(s.getPort())) {
+            assertEquals(List.of("OK"), c.call("ADD 1,Doofnita,NA,Troll,3,500,80,true"));
+            // Break the journal's file underneath it: every later write fails.
+            java.lang.reflect.Field f = CharacterManager.class.getDeclaredField("journal");
+            f.setAccessible(true);
+            java.lang.reflect.Field ch = MutationJournal.class.getDeclaredField("channel");
+            ch.setAccessible(true);
+            ((java.nio.channels.FileChannel) ch.get(f.get(durable))).close();
+
+            assertEquals(List.of("ERR journal write failed"), c.call("ADD 2,AnitaBath,EU,Catfish,5,1000,-95,false"));
+            assertEquals(List.of("ERR journal write failed"), c.call("REMOVE 1"));
+            assertEquals(List.of("OK"), c.call("PING"));
+            assertEquals(List.of("OK 1", "1"), c.call("SIZE"));
+        }
+    }
+
+    @Test
+    void testPipelinedRequestsAnsweredInOrder() throws Exception {
+        int n = 5_000;
+        try (Client c = new Client(server.getPort())) {
+            // Send everything without waiting for replies (from another thread, so neither side
+            // can stall on a full socket buffer).
+            Thread sender = Thread.ofVirtual().start(() -> {
+                try {
+                    for (int id = 1; id <= n; id++) c.send("ADD " + id + ",P" + id + ",NA,Occ," + (id % 7) + ",0,0,true");
+                    for (int id = 1; id <= n; id++) c.send("GET " + id);
+                    c.out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (int id = 1; id <= n; id++) assertEquals(List.of("OK"), c.reply());
+            for (int id = 1; id <= n; id++) {
+                List<String> r = c.reply();
+                assertEquals("OK 1", r.get(0));
+                assertTrue(r.get(1).startsWith(id + ",P" + id + ","), r.get(1));
+            }
+            sender.join();
+        }
+        assertEquals(n, manager.size());
+    }
+}
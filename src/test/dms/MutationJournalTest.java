@@ -0,0 +1,146 @@
+package dms;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the durable CharacterManager (MutationJournal + snapshot checkpoints)
+ * - Recovery replays the journal, drops a torn tail, and survives checkpoints.
+ * - A MutationBatch is recovered as a unit.
+ * - A failed journal write throws and leaves memory unchanged (write-ahead).
+ * Throughput with durability on is measured by benchmarks/DurabilityBenchmark.
+ */
+public class MutationJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private Character mk(int id, String handle, int wl, int bounty, int rep, boolean active) {
+        return new Character(id, handle, Server.values()[id % 3], "Occ" + (id % 5), wl, bounty, rep, active);
+    }
+
+    @Test
+    void testRecoveryReplaysJournal() throws IOException {
+        String expected;
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            for (int i = 1; i <= 100; i++) m.add(mk(i, "p" + i, i % 7, i * 10, -i, true));
+            m.update(mk(5, "renamed", 6, 9999, 0, false));
+            m.remove(7);
+            LoadResult bulk = m.addAll(List.of(mk(101, "bulk1", 1, 1, 0, true), mk(101, "bulk1b", 1, 1, 0, true),
+                    mk(102, "BULK1", 1, 1, 0, true), mk(103, "bulk3", 1, 1, 0, true)));
+            assertEquals(2, bulk.getAdded());
+            expected = m.toCsv();
+        }
+
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            assertEquals(expected, m.toCsv());
+            assertEquals(101, m.size());
+            assertEquals(5, m.findByHandle("RENAMED").get().getId());
+        }
+    }
+
+    @Test
+    void testTornTailIsDropped() throws IOException {
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            m.add(mk(1, "a", 1, 100, 0, true));
+            m.add(mk(2, "b", 2, 200, 0, true));
+            m.add(mk(3, "c", 3, 300, 0, true));
+        }
+        // Simulate a crash half-way through writing the last record.
+        Path journal = MutationJournal.file(dir, 1);
+        long size = Files.size(journal);
+        try (var ch = java.nio.channels.FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3);
+        }
+
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            assertEquals(2, m.size());
+            assertTrue(m.findById(3).isEmpty());
+            assertTrue(m.add(mk(4, "d", 4, 400, 0, true)), "journal should be appendable after recovery");
+        }
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            assertEquals(3, m.size());
+            assertTrue(m.findById(4).isPresent());
+        }
+    }
+
+    @Test
+    void testBatchIsRecoveredWholeOrNotAtAll() throws IOException {
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            m.add(mk(1, "a", 1, 100, 0, true));
+            BatchResult r = m.apply(new MutationBatch()
+                    .add(mk(2, "b", 2, 200, 0, true))
+                    .update(mk(1, "a2", 6, 100, 0, false))
+                    .remove(2));
+            assertTrue(r.isCommitted());
+        }
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            assertEquals(1, m.size());
+            assertEquals("a2", m.findById(1).get().getHandle());
+        }
+
+        // Crash inside the batch's last record: none of the batch may survive.
+        Path journal = MutationJournal.file(dir, 1);
+        try (var ch = java.nio.channels.FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            ch.truncate(Files.size(journal) - 2);
+        }
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            assertEquals(1, m.size());
+            assertEquals("a", m.findById(1).get().getHandle());
+            assertTrue(m.findById(2).isEmpty());
+        }
+    }
+
+    @Test
+    void testFailedJournalWriteLeavesMemoryUnchanged() throws Exception {
+        String before;
+        try (CharacterManager m = CharacterManager.open(dir, StorageEngine.HEAP, new JournalConfig(1, 0, 0))) {
+            m.add(mk(1, "a", 1, 100, 0, true));
+            m.add(mk(2, "b", 2, 200, 0, true));
+            before = m.toCsv();
+            // Break the journal's file underneath it: every later write fails.
+            java.lang.reflect.Field f = CharacterManager.class.getDeclaredField("journal");
+            f.setAccessible(true);
+            java.lang.reflect.Field ch = MutationJournal.class.getDeclaredField("channel");
+            ch.setAccessible(true);
+            ((java.nio.channels.FileChannel) ch.get(f.get(m))).close();
+
+            assertThrows(java.io.UncheckedIOException.class, () -> m.add(mk(3, "c", 3, 300, 0, true)));
+            assertThrows(java.io.UncheckedIOException.class, () -> m.update(mk(1, "a2", 6, 100, 0, true)));
+            assertThrows(java.io.UncheckedIOException.class, () -> m.remove(2));
+            assertThrows(java.io.UncheckedIOException.class, () -> m.apply(new MutationBatch()
+                    .add(mk(4, "d", 1, 1, 0, true)).remove(1)));
+            assertThrows(java.io.UncheckedIOException.class, () -> m.addAll(List.of(
+                    mk(5, "e", 1, 1, 0, true), mk(6, "f", 2, 2, 0, true))));
+            assertEquals(before, m.toCsv());
+            assertEquals(0, m.topThreats(10).stream().filter(te -> te.getCharacter().getId() > 2).count());
+        }
+        try (CharacterManager m = CharacterManager.open(dir)) {
+            assertEquals(before, m.toCsv());
+        }
+    }
+
+    @Test
+    void testCheckpointCompactsJournal() throws IOException {
+        String expected;
+        JournalConfig config = new JournalConfig(64, 0, 8 * 1024);
+        try (CharacterManager m = CharacterManager.open(dir, StorageEngine.HEAP, config)) {
+            for (int i = 1; i <= 2_000; i++) m.add(mk(i, "p" + i, i % 7, i, 0, i % 2 == 0));
+            for (int i = 1; i <= 2_000; i += 3) m.remove(i);
+            expected = m.toCsv();
+        }
+        assertTrue(Files.exists(dir.resolve(MutationJournal.SNAPSHOT)));
+        assertEquals(1, MutationJournal.generations(dir).size(), "older journals should be deleted");
+
+        try (CharacterManager m = CharacterManager.open(dir, StorageEngine.COLUMNAR, config)) {
+            assertEquals(expected, m.toCsv());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package dms;
+
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for batch mode (ScriptRunner).
+ * - A script loads, mutates, lists and exports with the same results as the manager API.
+ * - Failed and unknown commands, and journal write failures, are logged and counted, and the
+ *   script carries on.
+ */
+public class ScriptRunnerTest {
+
+    @Test
+    void testScriptRunsEveryCommandAndLogsTimings() throws IOException {
+        Path dir = Files.createTempDirectory("dms-script");
+        Path export = dir.resolve("all.csv"), report = dir.resolve("top.csv");
+        String script = String.join("\n",
+                "# nightly job",
+                "load src/test/dms/characters.txt",
+                "add 100,Newbie,EU,Chef,1,50,0,false",
+                "update 1,Zekia,NA,Chef,0,0,10,false",
+                "remove 2",
+                "remove 2",
+                "",
+                "list-active",
+                "top 3 AS",
+                "frobnicate",
+                "export " + export,
+                "export-top 5 " + report);
+        CharacterManager m = new CharacterManager();
+        StringWriter data = new StringWriter(), log = new StringWriter();
+        int failed = new ScriptRunner(m, CsvWriter.to(data), log).run(new BufferedReader(new StringReader(script)));
+
+        assertEquals(2, failed);
+        String[] lines = log.toString().split("\\R");
+        assertEquals(10, lines.length);
+        assertTrue(lines[0].startsWith("OK   2: load") && lines[0].contains("23 added"), lines[0]);
+        assertTrue(lines[4].startsWith("FAIL 6: remove 2 -> not found"), lines[4]);
+        assertTrue(lines[7].startsWith("FAIL 10: frobnicate"), lines[7]);
+        for (String line : lines) assertTrue(line.matches(".* \\(\\d+[.,]\\d ms\\)"), line);
+
+        StringWriter expected = new StringWriter();
+        CsvWriter w = CsvWriter.to(expected);
+        for (Character c : m.listActive()) w.character(c).endRow();
+        for (ThreatEntry te : m.rankPage(1, 3, Server.AS)) {
+            ReportGenerator.writeRow(te, w);
+            w.endRow();
+        }
+        w.flush();
+        assertEquals(expected.toString(), data.toString());
+        assertEquals(23, m.size());
+        assertFalse(m.findById(2).isPresent());
+        assertEquals(m.toCsv().strip(), Files.readString(export).strip());
+        ReportGenerator reporter = new ReportGenerator();
+        assertEquals(reporter.toCsv(reporter.topN(5, m)), Files.readString(report));
+    }
+
+    @Test
+    void testJournalFailureIsLoggedAsFail() throws Exception {
+        Path dir = Files.createTempDirectory("dms-script-journal");
+        try (CharacterManager m = CharacterManager.open(dir, StorageEngine.HEAP, new JournalConfig(1, 0, 0))) {
+            // Break the journal's file underneath it: every later write fails.
+            java.lang.reflect.Field f = CharacterManager.class.getDeclaredField("journal");
+            f.setAccessible(true);
+            java.lang.reflect.Field ch = MutationJournal.class.getDeclaredField("channel");
+            ch.setAccessible(true);
+            ((java.nio.channels.FileChannel) ch.get(f.get(m))).close();
+
+            StringWriter log = new StringWriter();
+            int failed = new ScriptRunner(m, CsvWriter.to(new StringWriter()), log)
+                    .run(List.of("add 1,Doofnita,NA,Troll,3,500,80,true", "list-active"));
+            assertEquals(1, failed);
+            String[] lines = log.toString().split("\\R");
+            assertTrue(lines[0].startsWith("FAIL 1: add") && lines[0].contains("Journal write failed"), lines[0]);
+            assertTrue(lines[1].startsWith("OK   2: list-active -> 0 rows"), lines[1]);
+            assertEquals(0, m.size());
+        }
+    }
+}
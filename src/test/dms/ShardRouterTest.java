@@ -0,0 +1,67 @@
+package dms;
+
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the sharded deployment: three shard JVMs on localhost behind a ShardRouter,
+ * checked against a single CharacterManager holding the same data.
+ */
+@Timeout(120)
+public class ShardRouterTest {
+
+    @Test
+    void testRouterMatchesSingleManager() throws IOException {
+        try (LocalShards shards = LocalShards.start(3, "-Xmx256m");
+             ShardRouter router = shards.router()) {
+            CharacterManager single = new CharacterManager();
+            Random rnd = new Random(3);
+            Server[] servers = Server.values();
+            for (int id = 1; id <= 3_000; id++) {
+                Character c = new Character(id, "Shard" + id, servers[rnd.nextInt(servers.length)], "Chef",
+                        rnd.nextInt(6), rnd.nextInt(100_000), rnd.nextInt(201) - 100, rnd.nextBoolean());
+                assertTrue(router.add(c));
+                single.add(c);
+            }
+            assertEquals(3_000, router.size());
+
+            // Every id lives on the shard that owns it, and only there; all shards get some.
+            int[] perShard = new int[3];
+            for (int s = 0; s < 3; s++) {
+                try (ShardRouter one = ShardRouter.connect(shards.getPorts()[s])) {
+                    perShard[s] = one.size();
+                    for (int id = 1; id <= 3_000; id += 97) {
+                        assertEquals(router.shardOf(id) == s, one.findById(id).isPresent(), "id " + id);
+                    }
+                }
+            }
+            assertEquals(3_000, Arrays.stream(perShard).sum());
+            assertTrue(Arrays.stream(perShard).allMatch(n -> n > 800), Arrays.toString(perShard));
+
+            // Handles stay unique across shards, whatever their case.
+            assertFalse(router.add(new Character(5_000, "SHARD7", Server.NA, "Chef", 1, 1, 1, true)));
+            Character moved = router.findById(8).orElseThrow();
+            moved.setHandle("shard9");
+            assertFalse(router.update(moved));
+            moved.setHandle("Renamed8");
+            moved.setWantedLevel(6);
+            assertTrue(router.update(moved));
+            single.update(moved);
+            assertEquals(8, router.findByHandle("renamed8").orElseThrow().getId());
+            assertTrue(router.remove(9));
+            single.remove(9);
+            assertFalse(router.remove(9));
+
+            ReportGenerator rg = new ReportGenerator();
+            assertEquals(rg.topN(25, single).toString(), router.topN(25, null).toString());
+            for (Server s : servers) {
+                assertEquals(single.rankPage(1, 10, s).toString(), router.topN(10, s).toString());
+                assertEquals(single.aggregate(s).toString(), router.aggregate(s).toString());
+            }
+            assertEquals(single.aggregate(null).toString(), router.aggregate(null).toString());
+        }
+    }
+}